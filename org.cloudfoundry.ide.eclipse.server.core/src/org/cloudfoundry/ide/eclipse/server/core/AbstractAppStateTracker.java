@@ -20,6 +20,9 @@
 
 package org.cloudfoundry.ide.eclipse.server.core;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import org.cloudfoundry.ide.eclipse.server.core.internal.client.CloudFoundryApplicationModule;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.wst.server.core.IServer;
@@ -32,6 +35,15 @@ import org.eclipse.wst.server.core.IServer;
 public abstract class AbstractAppStateTracker {
 	
 	protected IServer server;
+
+	/**
+	 * Interval in milliseconds at which the application state is checked
+	 * while waiting, for trackers that do not call
+	 * {@link #applicationStateChanged()}
+	 */
+	protected static final long STATE_CHECK_INTERVAL = 200;
+
+	private volatile CountDownLatch stateChange = new CountDownLatch(1);
 	
 	/**
 	 * Get the current application state
@@ -49,6 +61,42 @@ public abstract class AbstractAppStateTracker {
 		server = curServer;
 	}
 
+	/**
+	 * Notifies threads waiting in {@link #waitWhileStarting(ICloudFoundryApplicationModule, IProgressMonitor)}
+	 * that the application state may have changed. Trackers that detect state changes through events,
+	 * e.g. console output, should call this so that waiting threads are released without delay.
+	 */
+	protected void applicationStateChanged() {
+		CountDownLatch changed = stateChange;
+		stateChange = new CountDownLatch(1);
+		changed.countDown();
+	}
+
+	/**
+	 * Waits until the application is no longer in the starting state, or the monitor is cancelled.
+	 * @param appModule the application to wait for
+	 * @param monitor The progress monitor to allow for canceling the wait
+	 * @return the last application state, e.g. IServer.STATE_STARTED.
+	 */
+	public int waitWhileStarting(ICloudFoundryApplicationModule appModule, IProgressMonitor monitor) {
+		while (true) {
+			// Get the latch before checking the state, so that a change
+			// signalled in between is not missed
+			CountDownLatch changed = stateChange;
+			int state = getApplicationState(appModule);
+			if (state != IServer.STATE_STARTING || (monitor != null && monitor.isCanceled())) {
+				return state;
+			}
+			try {
+				changed.await(STATE_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return state;
+			}
+		}
+	}
+
 	/**
 	 * Start tracking the given application module and this can also be used to start the initialization
 	 * of the tracking, e.g. start monitoring the console output.
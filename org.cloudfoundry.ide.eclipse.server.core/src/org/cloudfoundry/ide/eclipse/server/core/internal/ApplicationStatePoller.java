@@ -0,0 +1,354 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cloudfoundry.ide.eclipse.server.core.internal.client.CloudBehaviourOperations;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.wst.server.core.IModule;
+import org.eclipse.wst.server.core.IServer;
+
+/**
+ * Periodically refreshes the state of the applications of a Cloud Foundry
+ * server in the background, so that state changes that are not the result of
+ * an operation in the IDE still show up.
+ * <p/>
+ * The polling interval adapts to what is happening: applications that are
+ * starting are refreshed at a short interval, while the server wide refresh
+ * backs off exponentially as long as no application is starting. Polling is
+ * paused while the server is not connected, while no server editor is open,
+ * or if there was no activity for {@link #IDLE_TIMEOUT}. It resumes on the
+ * next activity.
+ * <p/>
+ * All pollers share a global budget of client requests per minute, so that
+ * many connected servers do not overload their Cloud controllers, nor the
+ * IDE. Each refresh is charged the number of client requests it sends, so a
+ * refresh of all modules costs more the more applications are started.
+ * Refreshes are performed in the background through the server's
+ * {@link RefreshModulesHandler}, which coalesces them with any other pending
+ * refresh.
+ */
+public class ApplicationStatePoller {
+
+	/**
+	 * Interval in milliseconds at which starting applications are refreshed
+	 */
+	public static final long STARTING_INTERVAL = 750;
+
+	/**
+	 * Initial interval in milliseconds of the server wide refresh, once no
+	 * application is starting
+	 */
+	public static final long MIN_STABLE_INTERVAL = 5000;
+
+	public static final long MAX_STABLE_INTERVAL = 5 * 60 * 1000;
+
+	/**
+	 * Time in milliseconds without activity after which polling is paused
+	 */
+	public static final long IDLE_TIMEOUT = 10 * 60 * 1000;
+
+	/**
+	 * Maximum number of client requests sent by polling per minute across all
+	 * servers
+	 */
+	public static final int REQUESTS_PER_MINUTE = 120;
+
+	/**
+	 * Client requests sent by a refresh of all modules, which fetches the
+	 * applications and the services
+	 */
+	public static final int REFRESH_ALL_REQUESTS = 2;
+
+	/**
+	 * Client requests sent to refresh the instances and stats of a started
+	 * application as part of a refresh of all modules
+	 */
+	public static final int INSTANCES_REQUESTS = 2;
+
+	/**
+	 * Client requests sent by the refresh of a single application, which
+	 * fetches the application, its instances and its stats
+	 */
+	public static final int APPLICATION_REQUESTS = 3;
+
+	private static final RequestBudget BUDGET = new RequestBudget(REQUESTS_PER_MINUTE, 60 * 1000);
+
+	private final CloudFoundryServer cloudServer;
+
+	private final PollJob job;
+
+	private int viewers;
+
+	private long lastActivity;
+
+	private long stableInterval = MIN_STABLE_INTERVAL;
+
+	public ApplicationStatePoller(CloudFoundryServer cloudServer) {
+		this.cloudServer = cloudServer;
+		this.job = new PollJob(NLS.bind(Messages.RefreshModulesHandler_REFRESH_JOB, cloudServer.getServer().getId()));
+		this.job.setSystem(true);
+		this.lastActivity = System.currentTimeMillis();
+	}
+
+	/**
+	 * Notifies the poller that a view of the server's applications, like the
+	 * server editor, was opened. Polling only takes place while at least one
+	 * view is open.
+	 */
+	public synchronized void addViewer() {
+		viewers++;
+		activity();
+	}
+
+	/**
+	 * Notifies the poller that a view of the server's applications was closed.
+	 */
+	public synchronized void removeViewer() {
+		if (viewers > 0) {
+			viewers--;
+		}
+		if (viewers == 0) {
+			job.cancel();
+		}
+	}
+
+	/**
+	 * Notifies the poller of user activity or of an operation on the server's
+	 * applications. Resets the polling interval, and resumes polling if it was
+	 * paused.
+	 */
+	public synchronized void activity() {
+		lastActivity = System.currentTimeMillis();
+		stableInterval = MIN_STABLE_INTERVAL;
+		if (isActive()) {
+			// Replaces any poll scheduled further in the future
+			job.cancel();
+			job.schedule(STARTING_INTERVAL);
+		}
+	}
+
+	/**
+	 * Stops polling until the next activity.
+	 */
+	public synchronized void stop() {
+		job.cancel();
+	}
+
+	protected synchronized boolean isActive() {
+		return viewers > 0 && System.currentTimeMillis() - lastActivity < IDLE_TIMEOUT
+				&& cloudServer.getServer().getServerState() == IServer.STATE_STARTED;
+	}
+
+	/**
+	 * Refreshes the applications, and returns the delay until the next poll.
+	 * @return delay in milliseconds until the next poll, or -1 if polling
+	 * should pause
+	 */
+	protected long poll() {
+		synchronized (this) {
+			if (!isActive()) {
+				return -1;
+			}
+		}
+
+		RefreshModulesHandler handler = cloudServer.getBehaviour().getRefreshHandler();
+		List<IModule> startingModules = getModules(IServer.STATE_STARTING);
+		int requests = !startingModules.isEmpty() ? getApplicationsRequests(startingModules.size())
+				: getRefreshAllRequests(getModules(IServer.STATE_STARTED).size(),
+						CloudBehaviourOperations.getRefreshConcurrency());
+
+		long now = System.currentTimeMillis();
+		if (!BUDGET.tryAcquire(now, requests)) {
+			return Math.max(BUDGET.getWaitTime(now, requests), STARTING_INTERVAL);
+		}
+
+		if (!startingModules.isEmpty()) {
+			for (IModule module : startingModules) {
+				handler.scheduleBackgroundRefreshApplication(module);
+			}
+			synchronized (this) {
+				stableInterval = MIN_STABLE_INTERVAL;
+			}
+			return STARTING_INTERVAL;
+		}
+
+		handler.scheduleBackgroundRefreshAll();
+		synchronized (this) {
+			long interval = stableInterval;
+			stableInterval = getNextStableInterval(stableInterval);
+			return interval;
+		}
+	}
+
+	/**
+	 * 
+	 * @param state module state, as defined by {@link IServer}
+	 * @return modules of the server in the given state
+	 */
+	protected List<IModule> getModules(int state) {
+		List<IModule> modules = new ArrayList<IModule>();
+		IServer server = cloudServer.getServer();
+		for (IModule module : server.getModules()) {
+			if (server.getModuleState(new IModule[] { module }) == state) {
+				modules.add(module);
+			}
+		}
+		return modules;
+	}
+
+	/**
+	 * 
+	 * @param startedApplications number of started applications
+	 * @param refreshConcurrency see
+	 * {@link CloudBehaviourOperations#getRefreshConcurrency()}
+	 * @return number of client requests sent by a refresh of all modules
+	 */
+	public static int getRefreshAllRequests(int startedApplications, int refreshConcurrency) {
+		// Instances are only refreshed for started applications if enabled
+		return REFRESH_ALL_REQUESTS + (refreshConcurrency > 0 ? startedApplications * INSTANCES_REQUESTS : 0);
+	}
+
+	/**
+	 * 
+	 * @param applications number of applications refreshed
+	 * @return number of client requests sent by refreshing the given number
+	 * of single applications
+	 */
+	public static int getApplicationsRequests(int applications) {
+		return applications * APPLICATION_REQUESTS;
+	}
+
+	/**
+	 * 
+	 * @param interval
+	 * @return interval after backing off from the given interval
+	 */
+	public static long getNextStableInterval(long interval) {
+		return Math.min(Math.max(interval, MIN_STABLE_INTERVAL) * 2, MAX_STABLE_INTERVAL);
+	}
+
+	private class PollJob extends Job {
+
+		PollJob(String label) {
+			super(label);
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			if (monitor.isCanceled()) {
+				return Status.CANCEL_STATUS;
+			}
+			long delay = poll();
+			if (delay >= 0 && !monitor.isCanceled()) {
+				schedule(delay);
+			}
+			return Status.OK_STATUS;
+		}
+	}
+
+	/**
+	 * Limits the number of requests in a sliding time window.
+	 */
+	public static class RequestBudget {
+
+		private final int maxRequests;
+
+		private final long window;
+
+		private final long[] requestTimes;
+
+		private int next;
+
+		/**
+		 * 
+		 * @param maxRequests maximum number of requests in any time window
+		 * @param window length of the time window in milliseconds
+		 */
+		public RequestBudget(int maxRequests, long window) {
+			this.maxRequests = maxRequests;
+			this.window = window;
+			this.requestTimes = new long[maxRequests];
+			for (int i = 0; i < requestTimes.length; i++) {
+				requestTimes[i] = Long.MIN_VALUE / 2;
+			}
+		}
+
+		/**
+		 * Takes a request from the budget, if available.
+		 * @param now current time in milliseconds
+		 * @return true if the request may be performed
+		 */
+		public boolean tryAcquire(long now) {
+			return tryAcquire(now, 1);
+		}
+
+		/**
+		 * Takes the given number of requests from the budget, if all are
+		 * available. A number of requests larger than the budget is taken once
+		 * the whole budget is available.
+		 * @param now current time in milliseconds
+		 * @param requests number of requests
+		 * @return true if the requests may be performed
+		 */
+		public synchronized boolean tryAcquire(long now, int requests) {
+			if (maxRequests <= 0 || getWaitTime(now, requests) > 0) {
+				return false;
+			}
+			// Request times are ordered from the oldest at next
+			for (int i = 0; i < Math.min(Math.max(requests, 1), maxRequests); i++) {
+				requestTimes[next] = now;
+				next = (next + 1) % maxRequests;
+			}
+			return true;
+		}
+
+		/**
+		 * 
+		 * @param now current time in milliseconds
+		 * @return time in milliseconds until a request is available again, or 0
+		 * if one is available now
+		 */
+		public long getWaitTime(long now) {
+			return getWaitTime(now, 1);
+		}
+
+		/**
+		 * 
+		 * @param now current time in milliseconds
+		 * @param requests number of requests
+		 * @return time in milliseconds until the given number of requests is
+		 * available, or 0 if they are available now
+		 */
+		public synchronized long getWaitTime(long now, int requests) {
+			if (maxRequests <= 0) {
+				return window;
+			}
+			int last = (next + Math.min(Math.max(requests, 1), maxRequests) - 1) % maxRequests;
+			return Math.max(0, requestTimes[last] + window - now);
+		}
+	}
+}
@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+
+/**
+ * Decides how entries are compressed when building application archives.
+ * Content that is already compressed, like jars, images or other archives,
+ * gains next to nothing from being deflated again, so such entries are
+ * written as {@link java.util.zip.ZipEntry#STORED} instead. Entries are
+ * recognised either by their file extension, or by sampling the start of the
+ * file and checking whether its byte entropy is close to that of random
+ * data.
+ * <p/>
+ * All other entries are deflated at the configured level.
+ */
+public class ArchiveCompressionPolicy {
+
+	public static final String DEFLATE_LEVEL_PREFERENCE = CloudFoundryPlugin.PLUGIN_ID + ".archive.deflate.level"; //$NON-NLS-1$
+
+	public static final int DEFAULT_DEFLATE_LEVEL = Deflater.DEFAULT_COMPRESSION;
+
+	public static final String STORE_COMPRESSED_PREFERENCE = CloudFoundryPlugin.PLUGIN_ID
+			+ ".archive.store.compressed"; //$NON-NLS-1$
+
+	public static final boolean DEFAULT_STORE_COMPRESSED = true;
+
+	/**
+	 * Extensions of content that is known to already be compressed.
+	 */
+	public static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<String>(Arrays.asList(new String[] {
+			"jar", "war", "ear", "zip", "gz", "tgz", "bz2", "xz", "7z", "rar", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$ //$NON-NLS-9$ //$NON-NLS-10$
+			"png", "jpg", "jpeg", "gif", "webp", "ico", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+			"mp3", "mp4", "ogg", "webm", "woff", "woff2", "pdf" })); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$
+
+	/**
+	 * Files smaller than this are always deflated, as sampling them costs more
+	 * than it saves.
+	 */
+	public static final int MIN_SAMPLE_SIZE = 4096;
+
+	private static final int SAMPLE_SIZE = 8192;
+
+	/**
+	 * Entropy in bits per byte above which sampled content is considered
+	 * already compressed. Random data is close to 8.
+	 */
+	private static final double HIGH_ENTROPY_THRESHOLD = 7.5;
+
+	private final int deflateLevel;
+
+	private final boolean storeCompressed;
+
+	/**
+	 *
+	 * @param deflateLevel deflate level between {@link Deflater#NO_COMPRESSION}
+	 * and {@link Deflater#BEST_COMPRESSION}, or
+	 * {@link Deflater#DEFAULT_COMPRESSION}
+	 * @param storeCompressed true if already compressed content should be
+	 * stored rather than deflated
+	 */
+	public ArchiveCompressionPolicy(int deflateLevel, boolean storeCompressed) {
+		this.deflateLevel = isValidLevel(deflateLevel) ? deflateLevel : DEFAULT_DEFLATE_LEVEL;
+		this.storeCompressed = storeCompressed;
+	}
+
+	/**
+	 *
+	 * @return policy configured in the plugin preferences, or a default policy
+	 * if the plugin is not available.
+	 */
+	public static ArchiveCompressionPolicy getDefault() {
+		int level = DEFAULT_DEFLATE_LEVEL;
+		boolean storeCompressed = DEFAULT_STORE_COMPRESSED;
+		CloudFoundryPlugin plugin = CloudFoundryPlugin.getDefault();
+		if (plugin != null) {
+			IEclipsePreferences prefs = plugin.getPreferences();
+			level = prefs.getInt(DEFLATE_LEVEL_PREFERENCE, DEFAULT_DEFLATE_LEVEL);
+			storeCompressed = prefs.getBoolean(STORE_COMPRESSED_PREFERENCE, DEFAULT_STORE_COMPRESSED);
+		}
+		return new ArchiveCompressionPolicy(level, storeCompressed);
+	}
+
+	public int getDeflateLevel() {
+		return deflateLevel;
+	}
+
+	/**
+	 *
+	 * @param entryName zip relative name of the entry
+	 * @param file local file with the entry's content
+	 * @return true if the entry should be stored without compression. False
+	 * if it should be deflated.
+	 */
+	public boolean isStored(String entryName, File file) {
+		if (!storeCompressed || deflateLevel == Deflater.NO_COMPRESSION) {
+			// With no compression, deflating is already cheap and storing
+			// would only cost an extra CRC pass
+			return false;
+		}
+		if (COMPRESSED_EXTENSIONS.contains(getExtension(entryName))) {
+			return true;
+		}
+		return file != null && file.length() >= MIN_SAMPLE_SIZE && isHighEntropy(file);
+	}
+
+	protected boolean isHighEntropy(File file) {
+		byte[] sample = new byte[SAMPLE_SIZE];
+		int length = 0;
+		InputStream input = null;
+		try {
+			input = new FileInputStream(file);
+			int read;
+			while (length < sample.length && (read = input.read(sample, length, sample.length - length)) != -1) {
+				length += read;
+			}
+		}
+		catch (IOException e) {
+			// Deflate if the file cannot be sampled. Any error reading it will
+			// be reported when the entry is written.
+			return false;
+		}
+		finally {
+			if (input != null) {
+				try {
+					input.close();
+				}
+				catch (IOException e) {
+					// Ignore
+				}
+			}
+		}
+		return getEntropy(sample, length) > HIGH_ENTROPY_THRESHOLD;
+	}
+
+	/**
+	 *
+	 * @param data
+	 * @param length number of bytes in the data to consider
+	 * @return Shannon entropy of the given bytes, in bits per byte, between 0
+	 * and 8.
+	 */
+	public static double getEntropy(byte[] data, int length) {
+		if (length <= 0) {
+			return 0;
+		}
+		int[] counts = new int[256];
+		for (int i = 0; i < length; i++) {
+			counts[data[i] & 0xff]++;
+		}
+		double entropy = 0;
+		for (int count : counts) {
+			if (count > 0) {
+				double p = (double) count / length;
+				entropy -= p * Math.log(p);
+			}
+		}
+		return entropy / Math.log(2);
+	}
+
+	protected static String getExtension(String entryName) {
+		if (entryName == null) {
+			return null;
+		}
+		int slash = entryName.lastIndexOf('/');
+		int dot = entryName.lastIndexOf('.');
+		return dot > slash ? entryName.substring(dot + 1).toLowerCase() : null;
+	}
+
+	protected static boolean isValidLevel(int level) {
+		return level == Deflater.DEFAULT_COMPRESSION
+				|| (level >= Deflater.NO_COMPRESSION && level <= Deflater.BEST_COMPRESSION);
+	}
+}
@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * Manages the working folders where application archives are staged before
+ * they are pushed to a Cloud Foundry server. Rather than creating a new temp
+ * folder for every push, each module reuses its own working folder, whose
+ * previous contents are removed when the folder is requested again.
+ * <p/>
+ * Folders are in use from the time they are requested until they are
+ * released, typically when the archive that was built in the folder is
+ * closed. Released folders are emptied immediately, so the space used by the
+ * staging area is mostly that of the folders in use. The quota therefore
+ * counts all folders. When a folder is requested and the staging area exceeds
+ * its quota, folders that are not in use, like those left over from a
+ * previous session, are deleted first, least recently used first. If the
+ * folders in use alone exceed the quota, which happens if archives are not
+ * closed, this is reported in the log.
+ */
+public class ArchiveStagingArea {
+
+	public static final String QUOTA_PREFERENCE = CloudFoundryPlugin.PLUGIN_ID + ".staging.quota"; //$NON-NLS-1$
+
+	/**
+	 * Default quota in bytes
+	 */
+	public static final long DEFAULT_QUOTA = 1024L * 1024L * 1024L;
+
+	private final File root;
+
+	private final long quota;
+
+	private final Set<File> inUse = new HashSet<File>();
+
+	/**
+	 * True once exceeding the quota was reported, until the staging area is
+	 * within its quota again, so that it is only reported once
+	 */
+	private boolean quotaExceededReported;
+
+	/**
+	 *
+	 * @param root folder containing the working folders. Created if it does
+	 * not exist.
+	 * @param quota maximum size in bytes of the staging area, including
+	 * folders that are in use
+	 */
+	public ArchiveStagingArea(File root, long quota) {
+		this.root = root.getAbsoluteFile();
+		this.quota = quota;
+	}
+
+	/**
+	 * Returns an empty working folder for the given key, typically a module
+	 * ID. The same folder is reused across requests for the same key, unless
+	 * it is still in use, in which case a separate folder is returned. The
+	 * folder remains in use until it is released.
+	 * @param key
+	 * @return empty working folder. Never null.
+	 * @throws IOException if the folder could not be created
+	 */
+	public synchronized File getWorkingFolder(String key) throws IOException {
+		String baseName = toFolderName(key);
+		File folder = new File(root, baseName);
+		for (int i = 1; inUse.contains(folder); i++) {
+			folder = new File(root, baseName + '-' + i);
+		}
+
+		deleteContents(folder);
+		folder.mkdirs();
+		if (!folder.isDirectory()) {
+			throw new IOException("Unable to create staging folder " + folder); //$NON-NLS-1$
+		}
+		// Used to order folders for eviction
+		folder.setLastModified(System.currentTimeMillis());
+		inUse.add(folder);
+
+		evict();
+		return folder;
+	}
+
+	/**
+	 * Releases the working folder containing the given file, and deletes its
+	 * contents. Files that are not in a working folder of this staging area
+	 * are left untouched.
+	 * @param file working folder, or file in a working folder
+	 */
+	public synchronized void release(File file) {
+		File folder = getWorkingFolderFor(file);
+		if (folder != null && inUse.remove(folder)) {
+			deleteContents(folder);
+		}
+	}
+
+	/**
+	 *
+	 * @param file
+	 * @return true if the given file is a working folder of this staging area
+	 * or is contained in one.
+	 */
+	public boolean contains(File file) {
+		return getWorkingFolderFor(file) != null;
+	}
+
+	/**
+	 * Deletes the least recently used folders that are not in use until the
+	 * staging area is within its quota. Reports in the log if the folders in
+	 * use alone exceed the quota.
+	 * @return true if the staging area is within its quota
+	 */
+	public synchronized boolean evict() {
+		File[] folders = root.listFiles();
+		if (folders == null) {
+			return true;
+		}
+
+		long size = 0;
+		for (File folder : folders) {
+			size += getSize(folder);
+		}
+		if (size <= quota) {
+			quotaExceededReported = false;
+			return true;
+		}
+
+		Arrays.sort(folders, new Comparator<File>() {
+			public int compare(File folder1, File folder2) {
+				long diff = folder1.lastModified() - folder2.lastModified();
+				return diff < 0 ? -1 : diff > 0 ? 1 : 0;
+			}
+		});
+		for (int i = 0; i < folders.length && size > quota; i++) {
+			if (!inUse.contains(folders[i])) {
+				size -= getSize(folders[i]);
+				delete(folders[i]);
+			}
+		}
+
+		if (size <= quota) {
+			quotaExceededReported = false;
+			return true;
+		}
+		if (!quotaExceededReported) {
+			quotaExceededReported = true;
+			CloudFoundryPlugin.logWarning(NLS.bind(Messages.ArchiveStagingArea_QUOTA_EXCEEDED, new Object[] {
+					size / (1024 * 1024), quota / (1024 * 1024), inUse.size(), root }));
+		}
+		return false;
+	}
+
+	/**
+	 * Deletes all folders that are not in use.
+	 */
+	public synchronized void clean() {
+		File[] folders = root.listFiles();
+		if (folders != null) {
+			for (File folder : folders) {
+				if (!inUse.contains(folder)) {
+					delete(folder);
+				}
+			}
+		}
+	}
+
+	protected File getWorkingFolderFor(File file) {
+		if (file == null) {
+			return null;
+		}
+		for (File current = file.getAbsoluteFile(); current != null; current = current.getParentFile()) {
+			if (root.equals(current.getParentFile())) {
+				return current;
+			}
+		}
+		return null;
+	}
+
+	protected static String toFolderName(String key) {
+		StringBuilder name = new StringBuilder(key.length());
+		for (char c : key.toCharArray()) {
+			name.append(Character.isLetterOrDigit(c) || c == '-' || c == '.' ? c : '_');
+		}
+		// Keep keys that only differ in replaced characters apart
+		name.append('_').append(Integer.toHexString(key.hashCode()));
+		return name.toString();
+	}
+
+	protected static long getSize(File file) {
+		File[] children = file.listFiles();
+		if (children == null) {
+			return file.length();
+		}
+		long size = 0;
+		for (File child : children) {
+			size += getSize(child);
+		}
+		return size;
+	}
+
+	protected static void deleteContents(File folder) {
+		File[] children = folder.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+	}
+
+	protected static void delete(File file) {
+		deleteContents(file);
+		file.delete();
+	}
+}
@@ -0,0 +1,313 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.wst.server.core.model.IModuleFile;
+import org.eclipse.wst.server.core.model.IModuleFolder;
+import org.eclipse.wst.server.core.model.IModuleResource;
+
+/**
+ * Writes module resources into a zip archive. Each writer owns its own zip
+ * stream, and copy buffers are held per thread rather than shared, so
+ * archives for different modules can be built concurrently.
+ * <p/>
+ * Whether file entries are deflated or stored is decided by an
+ * {@link ArchiveCompressionPolicy}.
+ * <p/>
+ * In reproducible mode, the archive only depends on the content and paths of
+ * its entries: entries are written in sorted order, all entries are given
+ * the same fixed time, and no extra fields or comments are written. Building
+ * the same content twice therefore produces byte identical archives, which
+ * the Cloud Foundry server recognises through resource matching. As entries
+ * lose their modification times, servers that derive caching headers from
+ * them, like the ETags of static files, would not see changes, so the mode
+ * is only used where stable bytes are needed.
+ * <p/>
+ * A writer instance itself is not thread safe and should only be used by one
+ * thread at a time.
+ */
+public class ArchiveWriter {
+
+	private static final int BUFFER_SIZE = 65536;
+
+	private static final ThreadLocal<byte[]> BUFFER = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[BUFFER_SIZE];
+		}
+	};
+
+	private final ZipOutputStream out;
+
+	private final WritableByteChannel outChannel;
+
+	private final ArchiveCompressionPolicy compressionPolicy;
+
+	/**
+	 * Time given to all entries in reproducible mode. Zip entry times are
+	 * stored as local date and time, so the time is computed in the default
+	 * time zone to give the same stored value everywhere. Zip entry times
+	 * cannot represent dates before 1980.
+	 */
+	public static final long NORMALISED_TIME_STAMP = new GregorianCalendar(1980, Calendar.FEBRUARY, 1)
+			.getTimeInMillis();
+
+	private static final Comparator<IModuleResource> ENTRY_ORDER = new Comparator<IModuleResource>() {
+		public int compare(IModuleResource resource1, IModuleResource resource2) {
+			return CloudUtil.getZipRelativeName(resource1).compareTo(CloudUtil.getZipRelativeName(resource2));
+		}
+	};
+
+	private final boolean reproducible;
+
+	public ArchiveWriter(OutputStream out) {
+		this(out, ArchiveCompressionPolicy.getDefault(), false);
+	}
+
+	public ArchiveWriter(OutputStream out, ArchiveCompressionPolicy compressionPolicy) {
+		this(out, compressionPolicy, false);
+	}
+
+	/**
+	 * 
+	 * @param out
+	 * @param compressionPolicy
+	 * @param reproducible true if identical content should always produce a
+	 * byte identical archive. Entries then lose their modification times, so
+	 * this should only be used for archives whose bytes must be stable, like
+	 * jars that are matched as resources by the server.
+	 */
+	public ArchiveWriter(OutputStream out, ArchiveCompressionPolicy compressionPolicy, boolean reproducible) {
+		this.reproducible = reproducible;
+		this.out = new ZipOutputStream(out);
+		this.outChannel = Channels.newChannel(this.out);
+		this.compressionPolicy = compressionPolicy;
+		this.out.setLevel(compressionPolicy.getDeflateLevel());
+	}
+
+	/**
+	 * Adds the given module resources, recursing into folders. All folders are
+	 * added, but only those files contained in the filter in set. In
+	 * reproducible mode, the members of each folder are added in order of
+	 * their zip relative names.
+	 * @param resources
+	 * @param filterInFiles files to add. If null, all files are added.
+	 * @throws IOException if failed to write an entry
+	 * @throws CoreException if failed to read the contents of a workspace file
+	 */
+	public void addModuleResources(List<IModuleResource> resources, Set<IModuleResource> filterInFiles)
+			throws IOException, CoreException {
+		if (resources == null) {
+			return;
+		}
+
+		if (reproducible) {
+			resources = new ArrayList<IModuleResource>(resources);
+			Collections.sort(resources, ENTRY_ORDER);
+		}
+
+		for (IModuleResource resource : resources) {
+			if (resource instanceof IModuleFolder) {
+				long timeStamp = 0;
+				IContainer folder = (IContainer) resource.getAdapter(IContainer.class);
+				if (folder != null) {
+					timeStamp = folder.getLocalTimeStamp();
+				}
+
+				addFolder(CloudUtil.getZipRelativeName(resource), timeStamp);
+				addModuleResources(Arrays.asList(((IModuleFolder) resource).members()), filterInFiles);
+			}
+			else if (resource instanceof IModuleFile) {
+				if (filterInFiles == null || filterInFiles.contains(resource)) {
+					addModuleFile((IModuleFile) resource);
+				}
+			}
+		}
+	}
+
+	protected void addModuleFile(IModuleFile moduleFile) throws IOException, CoreException {
+		String entryPath = CloudUtil.getZipRelativeName(moduleFile);
+		IFile iFile = (IFile) moduleFile.getAdapter(IFile.class);
+		if (iFile != null) {
+			// Prefer the local file, if available, as it can be copied
+			// through a channel
+			File file = iFile.getLocation() != null ? iFile.getLocation().toFile() : null;
+			if (file != null && file.isFile()) {
+				addFile(entryPath, file, iFile.getLocalTimeStamp());
+			}
+			else {
+				addEntry(entryPath, iFile.getContents(), iFile.getLocalTimeStamp());
+			}
+		}
+		else {
+			File file = (File) moduleFile.getAdapter(File.class);
+			if (file == null) {
+				throw new IOException("No local file found for " + entryPath); //$NON-NLS-1$
+			}
+			addFile(entryPath, file, file.lastModified());
+		}
+	}
+
+	/**
+	 * Adds a folder entry.
+	 * @param entryPath zip relative name of the folder, ending in '/'
+	 * @param timeStamp time of the entry, or 0 or
+	 * {@link IResource#NULL_STAMP} if not known
+	 * @throws IOException
+	 */
+	public void addFolder(String entryPath, long timeStamp) throws IOException {
+		out.putNextEntry(createEntry(entryPath, timeStamp));
+		out.closeEntry();
+	}
+
+	/**
+	 * Adds a file entry, transferring the file's contents through a file
+	 * channel. If the compression policy indicates the file is already
+	 * compressed, the entry is stored rather than deflated.
+	 * @param entryPath zip relative name of the file
+	 * @param file
+	 * @param timeStamp time of the entry, or 0 or
+	 * {@link IResource#NULL_STAMP} if not known
+	 * @throws IOException
+	 */
+	public void addFile(String entryPath, File file, long timeStamp) throws IOException {
+		ZipEntry zipEntry = createEntry(entryPath, timeStamp);
+		if (compressionPolicy.isStored(entryPath, file)) {
+			setStored(zipEntry, file);
+		}
+		out.putNextEntry(zipEntry);
+		FileInputStream input = new FileInputStream(file);
+		try {
+			FileChannel channel = input.getChannel();
+			long size = channel.size();
+			long position = 0;
+			while (position < size) {
+				long transferred = channel.transferTo(position, size - position, outChannel);
+				if (transferred <= 0) {
+					break;
+				}
+				position += transferred;
+			}
+		}
+		finally {
+			input.close();
+		}
+		out.closeEntry();
+	}
+
+	/**
+	 * Adds a file entry with the contents of the given stream. The stream is
+	 * closed once read.
+	 * @param entryPath zip relative name of the file
+	 * @param input
+	 * @param timeStamp time of the entry, or 0 or
+	 * {@link IResource#NULL_STAMP} if not known
+	 * @throws IOException
+	 */
+	public void addEntry(String entryPath, InputStream input, long timeStamp) throws IOException {
+		out.putNextEntry(createEntry(entryPath, timeStamp));
+		byte[] buf = BUFFER.get();
+		try {
+			int n;
+			while ((n = input.read(buf)) != -1) {
+				out.write(buf, 0, n);
+			}
+		}
+		finally {
+			input.close();
+		}
+		out.closeEntry();
+	}
+
+	/**
+	 * Stored entries require the size and CRC before the entry is written, so
+	 * they are computed in a separate pass over the file. This is still much
+	 * cheaper than deflating the file.
+	 */
+	protected void setStored(ZipEntry zipEntry, File file) throws IOException {
+		CRC32 crc = new CRC32();
+		byte[] buf = BUFFER.get();
+		long size = 0;
+		InputStream input = new FileInputStream(file);
+		try {
+			int n;
+			while ((n = input.read(buf)) != -1) {
+				crc.update(buf, 0, n);
+				size += n;
+			}
+		}
+		finally {
+			input.close();
+		}
+		zipEntry.setMethod(ZipEntry.STORED);
+		zipEntry.setSize(size);
+		zipEntry.setCompressedSize(size);
+		zipEntry.setCrc(crc.getValue());
+	}
+
+	protected ZipEntry createEntry(String entryPath, long timeStamp) {
+		ZipEntry zipEntry = new ZipEntry(entryPath);
+		if (reproducible) {
+			zipEntry.setTime(NORMALISED_TIME_STAMP);
+			zipEntry.setExtra(null);
+			zipEntry.setComment(null);
+		}
+		else if (timeStamp != IResource.NULL_STAMP && timeStamp != 0) {
+			zipEntry.setTime(timeStamp);
+		}
+		return zipEntry;
+	}
+
+	public boolean isReproducible() {
+		return reproducible;
+	}
+
+	/**
+	 * Finishes the archive and closes the underlying stream.
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		out.close();
+	}
+}
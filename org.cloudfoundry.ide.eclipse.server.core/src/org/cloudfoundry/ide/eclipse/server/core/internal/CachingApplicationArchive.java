@@ -19,24 +19,19 @@
  ********************************************************************************/
 package org.cloudfoundry.ide.eclipse.server.core.internal;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipException;
-import java.util.zip.ZipFile;
 
 import org.cloudfoundry.client.lib.archive.ApplicationArchive;
 import org.cloudfoundry.ide.eclipse.server.core.internal.DeployedResourceCache.CachedDeployedApplication;
 import org.cloudfoundry.ide.eclipse.server.core.internal.DeployedResourceCache.DeployedResourceEntry;
 import org.cloudfoundry.ide.eclipse.server.core.internal.application.AbstractModuleResourceArchive;
+import org.cloudfoundry.ide.eclipse.server.core.internal.application.CloudApplicationArchive;
+import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.wst.server.core.IModule;
 import org.eclipse.wst.server.core.model.IModuleFile;
@@ -66,10 +61,15 @@ import org.eclipse.wst.server.core.model.IModuleResource;
  * <p/>
  * 2) The second phase involves handling the list of resources that the server
  * indicates have not changed. This is done through a callback handler, which
- * then builds the partial war file with only those resources that have changed.
+ * then restricts the archive entries to only those resources that have
+ * changed. Their contents are streamed directly from the workspace files when
+ * the payload is uploaded.
+ * <p/>
+ * Jars of child modules included in the archive are released to the
+ * {@link ChildModuleJarCache} when the archive is closed.
  * 
  */
-public class CachingApplicationArchive extends AbstractModuleResourceArchive {
+public class CachingApplicationArchive extends AbstractModuleResourceArchive implements CloudApplicationArchive {
 
 	private final Set<String> changedResources;
 
@@ -77,11 +77,27 @@ public class CachingApplicationArchive extends AbstractModuleResourceArchive {
 
 	private final CachedDeployedApplication appID;
 
+	private final List<IModuleFile> childJars;
+
+	private boolean closed;
+
 	public CachingApplicationArchive(List<IModuleResource> allResources, List<IModuleResource> changedResources,
 			IModule module, String appName) {
+		this(allResources, changedResources, module, appName, new ArrayList<IModuleFile>());
+	}
+
+	/**
+	 * 
+	 * @param childJars jars obtained from the {@link ChildModuleJarCache}
+	 * for the child modules of the application, which are released when the
+	 * archive is closed.
+	 */
+	public CachingApplicationArchive(List<IModuleResource> allResources, List<IModuleResource> changedResources,
+			IModule module, String appName, List<IModuleFile> childJars) {
 		super(module, allResources);
 		this.appID = new CachedDeployedApplication(appName);
 		this.changedResources = changedResourcesAsZipNames(changedResources);
+		this.childJars = childJars;
 	}
 
 	protected Set<String> changedResourcesAsZipNames(List<IModuleResource> changedResources) {
@@ -96,6 +112,19 @@ public class CachingApplicationArchive extends AbstractModuleResourceArchive {
 		return fileName;
 	}
 
+	public synchronized void close() throws CoreException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		CloudFoundryPlugin plugin = CloudFoundryPlugin.getDefault();
+		if (plugin != null) {
+			for (IModuleFile jar : childJars) {
+				plugin.getChildModuleJarCache().release(jar);
+			}
+		}
+	}
+
 	protected ModuleFolderEntryAdapter getModuleFolderAdapter(IModuleFolder folder) {
 		return new ZipModuleFolderEntryAdapter(folder);
 	}
@@ -106,114 +135,27 @@ public class CachingApplicationArchive extends AbstractModuleResourceArchive {
 		return new ZipModuleFileEntryAdapter(file, appID, changed);
 	}
 
+	/**
+	 * Restricts the archive entries to those resources that the server
+	 * indicates are missing or have changed, as well as all folders. Entries
+	 * stream their content directly from the workspace files when the CF
+	 * client builds the upload payload, so no intermediate partial war file is
+	 * written to disk.
+	 * @param knownResourceNames names of resources that the server already
+	 * has
+	 */
 	public void generatePartialWarFile(Set<String> knownResourceNames) {
 		Iterable<Entry> localEntries = getEntries();
-		Map<String, AbstractModuleResourceEntryAdapter> missingChangedEntries = new HashMap<String, AbstractModuleResourceEntryAdapter>();
-		Set<IModuleResource> missingChangedResources = new HashSet<IModuleResource>();
+		List<Entry> toDeploy = new ArrayList<ApplicationArchive.Entry>();
 
 		for (Entry entry : localEntries) {
-
-			if (entry.isDirectory() || !knownResourceNames.contains(entry.getName())) {
-				missingChangedEntries.put(entry.getName(), (AbstractModuleResourceEntryAdapter) entry);
-				missingChangedResources.add(((AbstractModuleResourceEntryAdapter) entry).getResource());
-			}
-		}
-
-		// Build war file with changed/missing resources
-		try {
-
-			File partialWar = CloudUtil.createWarFile(getModuleResources(), getModule(), missingChangedResources, null);
-
-			if (partialWar.exists()) {
-				fileName = partialWar.getName();
-				ZipFile zipPartialWar = new ZipFile(partialWar);
-				Enumeration<? extends ZipEntry> zipEntries = zipPartialWar.entries();
-				List<Entry> toDeploy = new ArrayList<ApplicationArchive.Entry>();
-				while (zipEntries.hasMoreElements()) {
-					ZipEntry zipEntry = zipEntries.nextElement();
-
-					AbstractModuleResourceEntryAdapter archiveEntry = missingChangedEntries.get(zipEntry.getName());
-					if (archiveEntry != null) {
-						DeployedResourceEntry deployedResourcesEntry = archiveEntry instanceof ZipModuleFileEntryAdapter ? ((ZipModuleFileEntryAdapter) archiveEntry)
-								.getDeployedResourcesEntry() : null;
-						toDeploy.add(new PartialZipEntryAdapter(deployedResourcesEntry, zipEntry, zipPartialWar));
-
-					}
-
-				}
-				entries = toDeploy;
-			}
-		}
-		catch (CoreException e) {
-			// Failed to create partial war
-			CloudFoundryPlugin.log(e);
-		}
-		catch (ZipException e) {
-			// Failed to create partial war
-			CloudFoundryPlugin.logError(e);
-		}
-		catch (IOException e) {
-			// Failed to create partial war
-			CloudFoundryPlugin.logError(e);
-		}
-	}
-
-	/**
-	 * Entry to be used to access actual payload files. Sha1 entries should be
-	 * computed prior to creating the entry, ideally without uncompressing the
-	 * archive file, and possibly using a cache
-	 * 
-	 */
-	public class PartialZipEntryAdapter implements ApplicationArchive.Entry {
-		private final DeployedResourceEntry deployedResourcesEntry;
-
-		private final ZipEntry zipEntry;
-
-		private final ZipFile zipFile;
-
-		public PartialZipEntryAdapter(DeployedResourceEntry deployedResourcesEntry, ZipEntry zipEntry, ZipFile zipFile) {
-			this.zipFile = zipFile;
-			this.zipEntry = zipEntry;
-			this.deployedResourcesEntry = deployedResourcesEntry;
-		}
-
-		public boolean isDirectory() {
-			return zipEntry.isDirectory();
-		}
-
-		public String getName() {
-			return zipEntry.getName();
-		}
-
-		/**
-		 * 
-		 * @return deployed resource, or null if not defined for this zip entry.
-		 * Note that for directory cases, there won't be a deployed resource so
-		 * this would be one case where null is returned
-		 */
-		protected DeployedResourceEntry getDeployedResourceEntry() {
-			return deployedResourcesEntry;
-		}
-
-		public long getSize() {
-			return getDeployedResourceEntry() != null ? getDeployedResourceEntry().getFileSize()
-					: AbstractModuleResourceEntryAdapter.UNDEFINED_SIZE;
-		}
-
-		public byte[] getSha1Digest() {
-			// Do not obtain it from the zip Entry to avoid unzipping the
-			// archive.
-			return getDeployedResourceEntry() != null ? getDeployedResourceEntry().getSha1() : null;
-		}
-
-		public InputStream getInputStream() throws IOException {
-			if (isDirectory()) {
-				return null;
+			if (entry.isDirectory() || knownResourceNames == null || !knownResourceNames.contains(entry.getName())) {
+				toDeploy.add(entry);
 			}
-
-			return zipFile.getInputStream(zipEntry);
 		}
 
+		fileName = getModule().getName() + ".war"; //$NON-NLS-1$
+		entries = toDeploy;
 	}
 
 	public class ZipModuleFolderEntryAdapter extends ModuleFolderEntryAdapter {
@@ -255,14 +197,23 @@ public class CachingApplicationArchive extends AbstractModuleResourceArchive {
 
 		public DeployedResourceEntry getDeployedResourcesEntry() {
 
-			DeployedResourceEntry deployedResourcesEntry = CloudFoundryPlugin.getDefault().getDeployedResourcesCache()
-					.getEntry(appName, getName());
+			DeployedResourceCache cache = CloudFoundryPlugin.getDefault().getDeployedResourcesCache();
+
+			if (!canComputeResourceEntry()) {
+				return cache.getEntry(appName, getName());
+			}
 
-			if (canComputeResourceEntry() && (recalculate || deployedResourcesEntry == null)) {
+			// Only reuse a cached entry if the local file has not changed since
+			// the entry was computed, which may have been in a previous session
+			long lastModified = file.lastModified();
+			DeployedResourceEntry deployedResourcesEntry = cache.getEntry(appName, getName(), file.length(),
+					lastModified);
+
+			if (recalculate || deployedResourcesEntry == null) {
 				byte[] sha1 = super.getSha1Digest();
 				long fileSize = super.getSize();
-				deployedResourcesEntry = new DeployedResourceEntry(sha1, fileSize, getName());
-				CloudFoundryPlugin.getDefault().getDeployedResourcesCache().add(appName, deployedResourcesEntry);
+				deployedResourcesEntry = new DeployedResourceEntry(sha1, fileSize, getName(), lastModified);
+				cache.add(appName, deployedResourcesEntry);
 			}
 
 			return deployedResourcesEntry;
@@ -273,6 +224,36 @@ public class CachingApplicationArchive extends AbstractModuleResourceArchive {
 			return entry != null ? entry.getSha1() : null;
 		}
 
+		@Override
+		public InputStream getInputStream() throws IOException {
+			InputStream input = super.getInputStream();
+			if (input == null) {
+				// Resource may not be backed by a local file
+				IFile iFile = (IFile) getResource().getAdapter(IFile.class);
+				if (iFile != null) {
+					try {
+						input = iFile.getContents();
+					}
+					catch (CoreException e) {
+						throw new IOException(e.getMessage(), e);
+					}
+				}
+			}
+			return input;
+		}
+
+		@Override
+		protected boolean requiresDigest() {
+			if (!super.requiresDigest()) {
+				return false;
+			}
+			// Unchanged files with an up to date cached entry need not be
+			// hashed again
+			return recalculate
+					|| CloudFoundryPlugin.getDefault().getDeployedResourcesCache()
+							.getEntry(appName, getName(), file.length(), file.lastModified()) == null;
+		}
+
 		protected String computeName(IModuleResource resource) {
 			return CloudUtil.getZipRelativeName(resource);
 		}
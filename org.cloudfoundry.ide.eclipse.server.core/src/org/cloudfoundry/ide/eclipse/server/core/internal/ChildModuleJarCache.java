@@ -0,0 +1,544 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.jst.server.core.IJ2EEModule;
+import org.eclipse.jst.server.core.IWebModule;
+import org.eclipse.wst.server.core.IModule;
+import org.eclipse.wst.server.core.model.IModuleFile;
+import org.eclipse.wst.server.core.model.IModuleFolder;
+import org.eclipse.wst.server.core.model.IModuleResource;
+import org.eclipse.wst.server.core.util.ModuleFile;
+
+/**
+ * Content addressed cache of the jars assembled for child modules of a web
+ * module. Jars are keyed by a fingerprint of the paths and content of the
+ * child module's resources, so identical child jars are reused across
+ * publishes, applications and servers. Jars of child modules with resources
+ * whose content cannot be read are always rebuilt, and deleted once
+ * released.
+ * <p/>
+ * Jars are built by a reproducible {@link ArchiveWriter}, so a jar rebuilt
+ * from the same content has the same sha1, and is recognised by the Cloud Foundry
+ * server's resource matching rather than being uploaded again.
+ * <p/>
+ * To avoid computing fingerprints on every publish, the jar last used for a
+ * child module of a particular application is remembered, and reused as long
+ * as the child module has not changed.
+ * <p/>
+ * Binary child modules are not copied, and instead refer to the original jar
+ * directly.
+ * <p/>
+ * Jars returned by the cache are in use until they are released, typically
+ * when the archive containing them is closed. When the cache is full, the
+ * least recently used jars that are not in use are removed.
+ * <p/>
+ * The cache is only locked while its bookkeeping is updated. Fingerprints are
+ * computed and jars are built outside the lock, so child jars of different
+ * publishes are built concurrently, while a jar with a given fingerprint is
+ * only built once.
+ */
+public class ChildModuleJarCache {
+
+	private static final String DEFAULT_LIB_PATH = "WEB-INF/lib/"; //$NON-NLS-1$
+
+	private static final String JAR_EXTENSION = ".jar"; //$NON-NLS-1$
+
+	private static final String TEMP_EXTENSION = ".tmp"; //$NON-NLS-1$
+
+	/**
+	 * Included in fingerprints so that jars built by an earlier version of
+	 * the cache, with a different archive format, are not reused.
+	 */
+	private static final int FORMAT_VERSION = 2;
+
+	/**
+	 * Number of cached jars above which the least recently used jars are
+	 * removed.
+	 */
+	public static final int MAX_JARS = 200;
+
+	private final File cacheFolder;
+
+	private final Map<String, File> lastUsedJars = new HashMap<String, File>();
+
+	/**
+	 * Number of publishes using each jar
+	 */
+	private final Map<File, Integer> inUse = new HashMap<File, Integer>();
+
+	/**
+	 * Jars that are not content addressed, and are deleted once released
+	 */
+	private final Set<File> unaddressedJars = new HashSet<File>();
+
+	/**
+	 * Guards of the jars being built, by fingerprint
+	 */
+	private final Map<String, BuildGuard> buildGuards = new HashMap<String, BuildGuard>();
+
+	/**
+	 *
+	 * @param cacheFolder folder where child jars are kept. Created if it does
+	 * not exist.
+	 */
+	public ChildModuleJarCache(File cacheFolder) {
+		this.cacheFolder = cacheFolder;
+	}
+
+	/**
+	 * Returns a module file for the jar of the given child module, located at
+	 * the child's URI in the parent web module. The jar is rebuilt if it has
+	 * changed, or if no jar was previously built for the child. The jar of a
+	 * child module that is not binary is in use until it is released through
+	 * {@link #release(IModuleResource)}.
+	 * @param cacheKey identifies the server and application the jar is
+	 * published to. May be null if the child jar is not published
+	 * incrementally.
+	 * @param webModule parent web module
+	 * @param child child module
+	 * @param childResources resources of the child module
+	 * @param changed true if the child module may have changed since it was
+	 * last published
+	 * @param monitor
+	 * @return module file for the child jar, or null if the jar for a binary
+	 * child module cannot be resolved to a local file.
+	 * @throws CoreException if failed to build the jar
+	 */
+	public IModuleFile getChildJar(String cacheKey, IWebModule webModule, IModule child,
+			IModuleResource[] childResources, boolean changed, IProgressMonitor monitor) throws CoreException {
+		IJ2EEModule childModule = (IJ2EEModule) child.loadAdapter(IJ2EEModule.class, monitor);
+		boolean isBinary = childModule != null && childModule.isBinary();
+
+		String childUri = webModule.getURI(child);
+		if (childUri == null) {
+			childUri = isBinary ? DEFAULT_LIB_PATH + child.getName() : DEFAULT_LIB_PATH + child.getName()
+					+ JAR_EXTENSION;
+		}
+		IPath jarPath = new Path(childUri);
+		String jarName = jarPath.lastSegment();
+		IPath jarFolderPath = jarPath.removeLastSegments(1);
+
+		if (isBinary) {
+			File binaryJar = getBinaryJar(childResources);
+			return binaryJar != null ? new ModuleFile(binaryJar, jarName, jarFolderPath) : null;
+		}
+
+		String lastUsedKey = cacheKey != null ? cacheKey + '/' + child.getId() : null;
+		File jarFile;
+		synchronized (this) {
+			jarFile = lastUsedKey != null && !changed ? lastUsedJars.get(lastUsedKey) : null;
+			if (jarFile != null && jarFile.exists()) {
+				acquire(jarFile);
+				return new ModuleFile(jarFile, jarName, jarFolderPath);
+			}
+		}
+
+		cacheFolder.mkdirs();
+		String fingerprint = getFingerprint(childResources);
+		if (fingerprint != null) {
+			jarFile = new File(cacheFolder, fingerprint + JAR_EXTENSION);
+			BuildGuard guard = acquireBuildGuard(fingerprint);
+			try {
+				// Publishes needing the same jar wait for the first one to build
+				// it, rather than building it again
+				synchronized (guard) {
+					synchronized (this) {
+						// In use before it is built, so that it is not evicted
+						// right after
+						acquire(jarFile);
+					}
+					try {
+						if (!jarFile.exists()) {
+							buildJar(jarFile, childResources);
+						}
+					}
+					catch (CoreException e) {
+						releaseJar(jarFile);
+						throw e;
+					}
+				}
+			}
+			finally {
+				releaseBuildGuard(fingerprint, guard);
+			}
+			synchronized (this) {
+				if (lastUsedKey != null) {
+					lastUsedJars.put(lastUsedKey, jarFile);
+				}
+				evict();
+			}
+		}
+		else {
+			// Changes to the child module cannot be detected, so its jar
+			// is always rebuilt
+			try {
+				jarFile = File.createTempFile("child", JAR_EXTENSION, cacheFolder); //$NON-NLS-1$
+			}
+			catch (IOException e) {
+				throw new CoreException(new Status(IStatus.ERROR, CloudFoundryPlugin.PLUGIN_ID,
+						"Failed to create child module jar for " + child.getName() + ": " + e.getMessage(), e)); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			synchronized (this) {
+				unaddressedJars.add(jarFile);
+				acquire(jarFile);
+				if (lastUsedKey != null) {
+					lastUsedJars.remove(lastUsedKey);
+				}
+			}
+			try {
+				buildJar(jarFile, childResources);
+			}
+			catch (CoreException e) {
+				// Deleted as it is unaddressed
+				releaseJar(jarFile);
+				throw e;
+			}
+			synchronized (this) {
+				evict();
+			}
+		}
+
+		return new ModuleFile(jarFile, jarName, jarFolderPath);
+	}
+
+	/**
+	 * Releases a jar returned by
+	 * {@link #getChildJar(String, IWebModule, IModule, IModuleResource[], boolean, IProgressMonitor)}
+	 * , so that it can be removed when the cache is full. Other resources are
+	 * ignored.
+	 * @param jar
+	 */
+	public void release(IModuleResource jar) {
+		File file = jar != null ? getLocalFile(jar) : null;
+		if (file != null) {
+			releaseJar(file);
+		}
+	}
+
+	/**
+	 * Releases a jar of the cache. Jars that are not content addressed are
+	 * deleted once no longer in use.
+	 * @param file
+	 */
+	protected synchronized void releaseJar(File file) {
+		Integer count = inUse.get(file);
+		if (count == null) {
+			return;
+		}
+		if (count > 1) {
+			inUse.put(file, count - 1);
+		}
+		else {
+			inUse.remove(file);
+			if (unaddressedJars.remove(file)) {
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	 * Marks the given jar as in use and as most recently used. Must be called
+	 * while holding the cache lock.
+	 */
+	protected void acquire(File jarFile) {
+		Integer count = inUse.get(jarFile);
+		inUse.put(jarFile, count != null ? count + 1 : 1);
+		jarFile.setLastModified(System.currentTimeMillis());
+	}
+
+	/**
+	 * 
+	 * @param file jar, or file a jar is being built into, in the cache folder
+	 * @return true if the given jar is in use, or is being built. Must be
+	 * called while holding the cache lock.
+	 */
+	protected boolean isInUse(File file) {
+		String name = file.getName();
+		if (name.endsWith(TEMP_EXTENSION)) {
+			file = new File(file.getParentFile(), name.substring(0, name.length() - TEMP_EXTENSION.length()));
+		}
+		return inUse.containsKey(file);
+	}
+
+	protected synchronized BuildGuard acquireBuildGuard(String fingerprint) {
+		BuildGuard guard = buildGuards.get(fingerprint);
+		if (guard == null) {
+			guard = new BuildGuard();
+			buildGuards.put(fingerprint, guard);
+		}
+		guard.users++;
+		return guard;
+	}
+
+	protected synchronized void releaseBuildGuard(String fingerprint, BuildGuard guard) {
+		if (--guard.users == 0) {
+			buildGuards.remove(fingerprint);
+		}
+	}
+
+	/**
+	 * Removes all cached jars.
+	 */
+	public synchronized void clear() {
+		lastUsedJars.clear();
+		File[] jars = cacheFolder.listFiles();
+		if (jars != null) {
+			for (File jar : jars) {
+				if (!isInUse(jar)) {
+					delete(jar);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @param resources
+	 * @return hex encoded sha1 of the paths and content of the given resources
+	 * and their members, or null if the content of a file cannot be read.
+	 * @throws CoreException if the content of a file failed to be read
+	 */
+	public static String getFingerprint(IModuleResource[] resources) throws CoreException {
+		List<String> descriptors = new ArrayList<String>();
+		if (!collectDescriptors(resources, descriptors)) {
+			return null;
+		}
+		// Resource order is not significant
+		Collections.sort(descriptors);
+
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+			digest.update(("v" + FORMAT_VERSION).getBytes("UTF-8")); //$NON-NLS-1$ //$NON-NLS-2$
+			for (String descriptor : descriptors) {
+				digest.update(descriptor.getBytes("UTF-8")); //$NON-NLS-1$
+				digest.update((byte) 0);
+			}
+			return CloudUtil.toHex(digest.digest());
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * 
+	 * @return false if the content of a file cannot be read
+	 */
+	protected static boolean collectDescriptors(IModuleResource[] resources, List<String> descriptors)
+			throws CoreException {
+		if (resources == null) {
+			return true;
+		}
+		for (IModuleResource resource : resources) {
+			String name = resource.getModuleRelativePath().makeRelative().append(resource.getName())
+					.toPortableString();
+			if (resource instanceof IModuleFolder) {
+				descriptors.add(name + '/');
+				if (!collectDescriptors(((IModuleFolder) resource).members(), descriptors)) {
+					return false;
+				}
+			}
+			else {
+				String contentDigest = getContentDigest(resource);
+				if (contentDigest == null) {
+					return false;
+				}
+				descriptors.add(name + ':' + contentDigest);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 
+	 * @param resource
+	 * @return hex encoded sha1 of the content of the given file resource, or
+	 * null if its content cannot be read
+	 * @throws CoreException if the content failed to be read
+	 */
+	protected static String getContentDigest(IModuleResource resource) throws CoreException {
+		InputStream content = null;
+		try {
+			File file = getLocalFile(resource);
+			if (file != null && file.isFile()) {
+				content = new FileInputStream(file);
+			}
+			else {
+				IFile iFile = (IFile) resource.getAdapter(IFile.class);
+				if (iFile == null || !iFile.exists()) {
+					return null;
+				}
+				content = iFile.getContents();
+			}
+			MessageDigest digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = content.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+			return CloudUtil.toHex(digest.digest());
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		catch (IOException e) {
+			throw new CoreException(new Status(IStatus.ERROR, CloudFoundryPlugin.PLUGIN_ID,
+					"Failed to read " + resource.getName() + ": " + e.getMessage(), e)); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		finally {
+			if (content != null) {
+				try {
+					content.close();
+				}
+				catch (IOException e) {
+					// Ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes the least recently used jars that are not in use if the cache
+	 * holds more than {@link #MAX_JARS} jars. Must be called while holding
+	 * the cache lock.
+	 */
+	protected void evict() {
+		File[] jars = cacheFolder.listFiles();
+		if (jars == null || jars.length <= MAX_JARS) {
+			return;
+		}
+		Arrays.sort(jars, new Comparator<File>() {
+			public int compare(File file1, File file2) {
+				long diff = file1.lastModified() - file2.lastModified();
+				return diff < 0 ? -1 : diff > 0 ? 1 : 0;
+			}
+		});
+		int excess = jars.length - MAX_JARS;
+		for (int i = 0; i < jars.length && excess > 0; i++) {
+			if (!isInUse(jars[i])) {
+				delete(jars[i]);
+				excess--;
+			}
+		}
+	}
+
+	protected void buildJar(File jarFile, IModuleResource[] childResources) throws CoreException {
+		List<IModuleResource> resources = new ArrayList<IModuleResource>();
+		if (childResources != null) {
+			for (IModuleResource resource : childResources) {
+				resources.add(CloudUtil.processModuleResource(resource));
+			}
+		}
+
+		// Write to a separate file first, and rename it once complete, so that
+		// a failed build does not leave a partial jar that would be reused on
+		// the next publish, and a jar is never found while it is written
+		File tempJar = new File(jarFile.getParentFile(), jarFile.getName() + TEMP_EXTENSION);
+		try {
+			ArchiveWriter writer = new ArchiveWriter(new BufferedOutputStream(new FileOutputStream(tempJar)),
+					ArchiveCompressionPolicy.getDefault(), true);
+			try {
+				writer.addModuleResources(resources, null);
+			}
+			finally {
+				writer.close();
+			}
+			if (jarFile.exists() && !jarFile.delete()) {
+				throw new IOException("Unable to replace " + jarFile); //$NON-NLS-1$
+			}
+			if (!tempJar.renameTo(jarFile)) {
+				throw new IOException("Unable to rename " + tempJar + " to " + jarFile); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+		catch (IOException e) {
+			tempJar.delete();
+			throw new CoreException(new Status(IStatus.ERROR, CloudFoundryPlugin.PLUGIN_ID,
+					"Failed to create child module jar " + jarFile.getName() + ": " + e.getMessage(), e)); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	protected File getBinaryJar(IModuleResource[] childResources) {
+		if (childResources == null || childResources.length != 1 || !(childResources[0] instanceof IModuleFile)) {
+			return null;
+		}
+		File file = getLocalFile(childResources[0]);
+		return file != null && file.isFile() ? file : null;
+	}
+
+	protected static File getLocalFile(IModuleResource resource) {
+		File file = (File) resource.getAdapter(File.class);
+		if (file == null) {
+			IFile iFile = (IFile) resource.getAdapter(IFile.class);
+			if (iFile != null && iFile.getLocation() != null) {
+				file = iFile.getLocation().toFile();
+			}
+		}
+		return file;
+	}
+
+	protected static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * Locked while a jar is built. Counts the publishes needing the jar, so
+	 * that the guard is discarded once none does.
+	 */
+	protected static class BuildGuard {
+
+		private int users;
+	}
+}
@@ -26,6 +26,7 @@ import java.net.UnknownHostException;
 import javax.net.ssl.SSLPeerUnverifiedException;
 
 import org.cloudfoundry.client.lib.CloudFoundryException;
+import org.cloudfoundry.client.lib.NotFinishedStagingException;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
@@ -181,6 +182,17 @@ public class CloudErrorUtil {
 		return false;
 	}
 
+	/**
+	 * 
+	 * @param t
+	 * @return true if the error, or its cause, indicates that the application
+	 * has not finished staging. False otherwise
+	 */
+	public static boolean isNotFinishedStagingError(Throwable t) {
+		return t instanceof NotFinishedStagingException
+				|| (t != null && t.getCause() instanceof NotFinishedStagingException);
+	}
+
 	public static String getHostTakenError(Exception e) {
 		HttpClientErrorException badRequestException = getBadRequestException(e);
 		if (badRequestException != null) {
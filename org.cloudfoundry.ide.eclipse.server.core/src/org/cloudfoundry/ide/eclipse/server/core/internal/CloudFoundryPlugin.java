@@ -20,14 +20,19 @@
  ********************************************************************************/
 package org.cloudfoundry.ide.eclipse.server.core.internal;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.StringTokenizer;
 
 import org.cloudfoundry.ide.eclipse.server.core.AbstractAppStateTracker;
+import org.cloudfoundry.ide.eclipse.server.core.internal.application.ModuleResourceDigester;
+import org.cloudfoundry.ide.eclipse.server.core.internal.client.ClientRequestExecutor;
 import org.cloudfoundry.ide.eclipse.server.core.internal.client.CloudFoundryApplicationModule;
 import org.cloudfoundry.ide.eclipse.server.core.internal.client.CloudFoundryClientFactory;
+import org.cloudfoundry.ide.eclipse.server.core.internal.client.DeployedContentDigests;
 import org.cloudfoundry.ide.eclipse.server.core.internal.client.DeploymentConfiguration;
+import org.cloudfoundry.ide.eclipse.server.core.internal.client.PushStatisticsHistory;
 import org.eclipse.core.net.proxy.IProxyService;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IConfigurationElement;
@@ -269,6 +274,12 @@ public class CloudFoundryPlugin extends Plugin {
 
 	public static final boolean DEFAULT_INCREMENTAL_PUBLISH_PREFERENCE_VAL = true;
 
+	private static final String DEPLOYED_RESOURCES_CACHE_FILE = "deployedResources.cache"; //$NON-NLS-1$
+
+	private static final String CHILD_MODULE_JARS_FOLDER = "childModuleJars"; //$NON-NLS-1$
+
+	private static final String STAGING_FOLDER = "staging"; //$NON-NLS-1$
+
 	private static CloudFoundryCallback callback;
 
 	// Cached copy of app state tracker
@@ -280,7 +291,15 @@ public class CloudFoundryPlugin extends Plugin {
 
 	private static IProxyService proxyService;
 
-	private DeployedResourceCache sha1Cache = new DeployedResourceCache();
+	private DeployedResourceCache sha1Cache;
+
+	private ChildModuleJarCache childModuleJarCache;
+
+	private ArchiveStagingArea stagingArea;
+
+	private final PushStatisticsHistory pushStatisticsHistory = new PushStatisticsHistory();
+
+	private final DeployedContentDigests deployedContentDigests = new DeployedContentDigests();
 
 	private InstanceScope INSTANCE_SCOPE = new InstanceScope();
 
@@ -348,9 +367,63 @@ public class CloudFoundryPlugin extends Plugin {
 	}
 
 	public synchronized DeployedResourceCache getDeployedResourcesCache() {
+		if (sha1Cache == null) {
+			File storeFile = null;
+			try {
+				storeFile = getStateLocation().append(DEPLOYED_RESOURCES_CACHE_FILE).toFile();
+			}
+			catch (IllegalStateException e) {
+				// No state location available (e.g. plugin not started).
+				// Use an in-memory cache only.
+				logError(e);
+			}
+			sha1Cache = new DeployedResourceCache(storeFile, DeployedResourceCache.DEFAULT_MAX_ENTRIES);
+		}
 		return sha1Cache;
 	}
 
+	public synchronized ChildModuleJarCache getChildModuleJarCache() {
+		if (childModuleJarCache == null) {
+			File cacheFolder;
+			try {
+				cacheFolder = getStateLocation().append(CHILD_MODULE_JARS_FOLDER).toFile();
+			}
+			catch (IllegalStateException e) {
+				logError(e);
+				cacheFolder = new File(System.getProperty("java.io.tmpdir"), PLUGIN_ID + '.' + CHILD_MODULE_JARS_FOLDER); //$NON-NLS-1$
+			}
+			childModuleJarCache = new ChildModuleJarCache(cacheFolder);
+		}
+		return childModuleJarCache;
+	}
+
+	public PushStatisticsHistory getPushStatisticsHistory() {
+		return pushStatisticsHistory;
+	}
+
+	public DeployedContentDigests getDeployedContentDigests() {
+		return deployedContentDigests;
+	}
+
+	public synchronized ArchiveStagingArea getArchiveStagingArea() {
+		if (stagingArea == null) {
+			File stagingFolder;
+			try {
+				stagingFolder = getStateLocation().append(STAGING_FOLDER).toFile();
+			}
+			catch (IllegalStateException e) {
+				logError(e);
+				stagingFolder = new File(System.getProperty("java.io.tmpdir"), PLUGIN_ID + '.' + STAGING_FOLDER); //$NON-NLS-1$
+			}
+			long quota = getPreferences().getLong(ArchiveStagingArea.QUOTA_PREFERENCE,
+					ArchiveStagingArea.DEFAULT_QUOTA);
+			stagingArea = new ArchiveStagingArea(stagingFolder, quota);
+			// Remove anything left over from a previous session
+			stagingArea.clean();
+		}
+		return stagingArea;
+	}
+
 	public static synchronized void setCallback(CloudFoundryCallback callback) {
 		CloudFoundryPlugin.callback = callback;
 	}
@@ -420,6 +493,21 @@ public class CloudFoundryPlugin extends Plugin {
 			moduleCache = null;
 		}
 
+		synchronized (this) {
+			if (sha1Cache != null) {
+				sha1Cache.save();
+				sha1Cache = null;
+			}
+			if (stagingArea != null) {
+				stagingArea.clean();
+				stagingArea = null;
+			}
+		}
+
+		ModuleResourceDigester.shutdown();
+		ClientRequestExecutor.shutdown();
+		HttpConnectionPool.shutdownDefault();
+
 		plugin = null;
 		super.stop(context);
 	}
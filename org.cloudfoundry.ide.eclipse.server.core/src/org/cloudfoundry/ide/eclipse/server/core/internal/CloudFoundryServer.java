@@ -31,13 +31,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.cloudfoundry.client.lib.domain.ApplicationStats;
 import org.cloudfoundry.client.lib.domain.CloudApplication;
 import org.cloudfoundry.client.lib.domain.CloudSpace;
+import org.cloudfoundry.client.lib.domain.InstancesInfo;
 import org.cloudfoundry.ide.eclipse.server.core.ICloudFoundryApplicationModule;
 import org.cloudfoundry.ide.eclipse.server.core.internal.ModuleCache.ServerData;
 import org.cloudfoundry.ide.eclipse.server.core.internal.application.ApplicationRegistry;
 import org.cloudfoundry.ide.eclipse.server.core.internal.client.CloudFoundryApplicationModule;
 import org.cloudfoundry.ide.eclipse.server.core.internal.client.CloudFoundryServerBehaviour;
+import org.cloudfoundry.ide.eclipse.server.core.internal.client.ExternalClientCache;
 import org.cloudfoundry.ide.eclipse.server.core.internal.client.SelfSignedStore;
 import org.cloudfoundry.ide.eclipse.server.core.internal.spaces.CloudFoundrySpace;
 import org.eclipse.core.runtime.CoreException;
@@ -707,6 +710,9 @@ public class CloudFoundryServer extends ServerDelegate implements IURLProvider {
 		this.secureStoreDirty = true;
 		this.password = password;
 
+		// Clients logged in with the previous password must not be reused
+		ExternalClientCache.getDefault().invalidate(getUrl(), getUsername());
+
 		// remove password in case an earlier version stored it in server
 		// properties
 		if (getServerWorkingCopy() != null) {
@@ -814,6 +820,25 @@ public class CloudFoundryServer extends ServerDelegate implements IURLProvider {
 	 * @throws CoreException
 	 */
 	public void updateModules(Map<String, CloudApplication> deployedApplications) throws CoreException {
+		updateModules(deployedApplications, null, null);
+	}
+
+	/**
+	 * Update the local (WST) ( {@link IModule} ) and corresponding cloud module
+	 * ( {@link CloudFoundryApplicationModule} ) such that they are in synch
+	 * with the actual deployed applications, as well as the stats and
+	 * instances of the applications, in a single pass.
+	 * @param deployedApplications
+	 * @param applicationStats stats by application name. May be null. Only
+	 * modules whose application has stats in the map are updated.
+	 * @param instancesInfo instances by application name. May be null. Only
+	 * modules whose application has instances in the map are updated.
+	 * @throws CoreException
+	 * @see #updateModules(Map)
+	 */
+	public void updateModules(Map<String, CloudApplication> deployedApplications,
+			Map<String, ApplicationStats> applicationStats, Map<String, InstancesInfo> instancesInfo)
+			throws CoreException {
 		Server server = (Server) getServer();
 
 		final Set<CloudFoundryApplicationModule> allModules = new HashSet<CloudFoundryApplicationModule>();
@@ -868,6 +893,7 @@ public class CloudFoundryServer extends ServerDelegate implements IURLProvider {
 
 				// the modules maps to an existing application
 				if (actualApplication != null) {
+					updateInstances(cloudModule, applicationStats, instancesInfo);
 					if (cloudModule.isExternal()) {
 						externalModules.add(cloudModule);
 					}
@@ -887,6 +913,7 @@ public class CloudFoundryServer extends ServerDelegate implements IURLProvider {
 			if (getData() != null) {
 				for (CloudApplication application : deployedApplications.values()) {
 					CloudFoundryApplicationModule appModule = getData().createModule(application);
+					updateInstances(appModule, applicationStats, instancesInfo);
 					externalModules.add(appModule);
 					allModules.add(appModule);
 				}
@@ -925,6 +952,17 @@ public class CloudFoundryServer extends ServerDelegate implements IURLProvider {
 		}
 	}
 
+	private void updateInstances(CloudFoundryApplicationModule appModule,
+			Map<String, ApplicationStats> applicationStats, Map<String, InstancesInfo> instancesInfo) {
+		String appName = appModule.getDeployedApplicationName();
+		if (applicationStats != null && applicationStats.containsKey(appName)) {
+			appModule.setApplicationStats(applicationStats.get(appName));
+		}
+		if (instancesInfo != null && instancesInfo.containsKey(appName)) {
+			appModule.setInstancesInfo(instancesInfo.get(appName));
+		}
+	}
+
 	/**
 	 * Updates the {@link IModule} and {@link ICloudFoundryApplicationModule}
 	 * associated with the given {@link CloudApplication}. If a null
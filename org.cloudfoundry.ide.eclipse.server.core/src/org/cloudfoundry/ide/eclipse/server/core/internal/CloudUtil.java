@@ -21,21 +21,14 @@ package org.cloudfoundry.ide.eclipse.server.core.internal;
 
 import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 import org.cloudfoundry.client.lib.domain.CloudService;
-import org.eclipse.core.resources.IContainer;
-import org.eclipse.core.resources.IFile;
-import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -102,15 +95,17 @@ public class CloudUtil {
 			return null;
 		}
 		List<IStatus> result = new ArrayList<IStatus>();
+		File tempDirectory = null;
+		boolean created = false;
 		try {
-			File tempDirectory = getTempFolder(module);
+			tempDirectory = getTempFolder(module);
 			// tempFile needs to be in the same location as the war file
 			// otherwise PublishHelper will fail
 			String fileName = module.getName() + ".war"; //$NON-NLS-1$
 
 			File warFile = new File(tempDirectory, fileName);
 			warFile.createNewFile();
-			warFile.deleteOnExit();
+			deleteOnExit(warFile);
 			List<IModuleResource> newResources = new ArrayList<IModuleResource>();
 			for (IModuleResource mr : allResources) {
 				newResources.add(processModuleResource(mr));
@@ -120,22 +115,31 @@ public class CloudUtil {
 			merge(result, status);
 			throwException(result, "Publishing of : " + module.getName() + " failed"); //$NON-NLS-1$ //$NON-NLS-2$
 
+			created = true;
 			return warFile;
 		}
 		catch (IOException e) {
 			throw new CoreException(new Status(IStatus.ERROR, CloudFoundryPlugin.PLUGIN_ID,
 					"Failed to create war file: " + e.getMessage(), e)); //$NON-NLS-1$
 		}
+		finally {
+			if (!created) {
+				releaseTemporaryFile(tempDirectory);
+			}
+		}
 	}
 
 	public static File createWarFile(IModule[] modules, Server server, IProgressMonitor monitor) throws CoreException {
 		List<IStatus> result = new ArrayList<IStatus>();
+		File tempFile = null;
+		boolean created = false;
+		List<IModuleResource> childJars = new ArrayList<IModuleResource>();
 		try {
-			File tempFile = getTempFolder(modules[0]);
+			tempFile = getTempFolder(modules[0]);
 			// tempFile needs to be in the same location as the war file
 			// otherwise PublishHelper will fail
 			File targetFile = new File(tempFile, modules[0].getName() + ".war"); //$NON-NLS-1$
-			targetFile.deleteOnExit();
+			deleteOnExit(targetFile);
 			PublishHelper helper = new PublishHelper(tempFile);
 
 			ArrayList<IModuleResource> resources = new ArrayList<IModuleResource>(Arrays.asList(server
@@ -173,6 +177,15 @@ public class CloudUtil {
 							merge(result, status);
 							resources.add(new ModuleFile(jarFile, jarFile.getName(), jarPath));
 						}
+						else if (CloudFoundryPlugin.getDefault() != null) {
+							// Reuse a previously assembled jar for the same
+							// child module content, if available
+							IModuleResource[] mr = server.getResources(new IModule[] { child });
+							IModuleFile childJar = CloudFoundryPlugin.getDefault().getChildModuleJarCache()
+									.getChildJar(null, webModule, child, mr, true, monitor);
+							childJars.add(childJar);
+							resources.add(childJar);
+						}
 						else {
 							// other modules are assembled into a jar
 							if (childUri == null) {
@@ -196,21 +209,40 @@ public class CloudUtil {
 				newResources.add(processModuleResource(mr));
 			}
 
-			IStatus[] status = helper.publishZip(newResources.toArray(new IModuleResource[0]),
-					new Path(targetFile.getAbsolutePath()), monitor);
+			// Written by the archive writer rather than the publish helper so
+			// that already compressed content like child jars is stored
+			IStatus[] status = publishZip(newResources, targetFile, null, monitor);
 			merge(result, status);
 			throwException(result, "Publishing of " + modules[0].getName() + " failed"); //$NON-NLS-1$ //$NON-NLS-2$
 
+			created = true;
 			return targetFile;
 		}
 		catch (IOException e) {
 			throw new CoreException(new Status(IStatus.ERROR, CloudFoundryPlugin.PLUGIN_ID,
 					"Failed to create war file: " + e.getMessage(), e)); //$NON-NLS-1$
 		}
+		finally {
+			// The folder is otherwise released when the archive of the war
+			// file is closed
+			if (!created) {
+				releaseTemporaryFile(tempFile);
+			}
+			// Child jars are copied into the war file
+			for (IModuleResource childJar : childJars) {
+				CloudFoundryPlugin.getDefault().getChildModuleJarCache().release(childJar);
+			}
+		}
 
 	}
 
-	private static IModuleResource processModuleResource(IModuleResource or) {
+	/**
+	 * 
+	 * @param or
+	 * @return copy of the given resource, if a folder, with its module
+	 * relative path, and the paths of its members, made relative.
+	 */
+	public static IModuleResource processModuleResource(IModuleResource or) {
 		if (or instanceof IModuleFolder) {
 			IModuleFolder of = (IModuleFolder) or;
 			IPath p = of.getModuleRelativePath();
@@ -228,13 +260,49 @@ public class CloudUtil {
 		return or;
 	}
 
+	/**
+	 * 
+	 * @param module
+	 * @return empty working folder for the module in the archive staging area,
+	 * which is reused across publishes of the module, or a new temp folder if
+	 * the staging area is not available.
+	 * @throws IOException
+	 */
 	private static File getTempFolder(IModule module) throws IOException {
+		CloudFoundryPlugin plugin = CloudFoundryPlugin.getDefault();
+		if (plugin != null) {
+			return plugin.getArchiveStagingArea().getWorkingFolder(module.getId());
+		}
 		File tempFile = File.createTempFile("tempFileForWar", null); //$NON-NLS-1$
 		tempFile.delete();
 		tempFile.mkdirs();
 		return tempFile;
 	}
 
+	/**
+	 * Releases the working folder of the archive staging area that contains
+	 * the given file, and deletes its contents. Files outside of the staging
+	 * area are left untouched.
+	 * @param file temporary file or folder. May be null.
+	 */
+	public static void releaseTemporaryFile(File file) {
+		CloudFoundryPlugin plugin = CloudFoundryPlugin.getDefault();
+		if (plugin != null && file != null) {
+			plugin.getArchiveStagingArea().release(file);
+		}
+	}
+
+	/**
+	 * Files in the archive staging area are cleaned up when the archive is
+	 * closed, so only files outside of it are deleted on exit.
+	 */
+	private static void deleteOnExit(File file) {
+		CloudFoundryPlugin plugin = CloudFoundryPlugin.getDefault();
+		if (plugin == null || !plugin.getArchiveStagingArea().contains(file)) {
+			file.deleteOnExit();
+		}
+	}
+
 	protected static void throwException(List<IStatus> status, String message) throws CoreException {
 		if (status == null || status.size() == 0) {
 			return;
@@ -243,16 +311,49 @@ public class CloudUtil {
 				message, null));
 	}
 
+	/**
+	 * Writes the given resources to a zip file, compressing entries according
+	 * to the configured {@link ArchiveCompressionPolicy}. Entries keep the
+	 * modification times of the resources.
+	 * @see ArchiveWriter
+	 * @param allResources
+	 * @param tempFile
+	 * @param filterInFiles files to include. If null, all files are included.
+	 * @param monitor
+	 * @return error statuses, or empty array if successful
+	 */
 	public static IStatus[] publishZip(List<IModuleResource> allResources, File tempFile,
 			Set<IModuleResource> filterInFiles, IProgressMonitor monitor) {
+		return publishZip(allResources, tempFile, filterInFiles, false, monitor);
+	}
+
+	/**
+	 * Writes the given resources to a zip file, compressing entries according
+	 * to the configured {@link ArchiveCompressionPolicy}.
+	 * @see ArchiveWriter
+	 * @param allResources
+	 * @param tempFile
+	 * @param filterInFiles files to include. If null, all files are included.
+	 * @param reproducible true if unchanged resources should always produce an
+	 * identical file, in which case entries do not keep the modification times
+	 * of the resources
+	 * @param monitor
+	 * @return error statuses, or empty array if successful
+	 */
+	public static IStatus[] publishZip(List<IModuleResource> allResources, File tempFile,
+			Set<IModuleResource> filterInFiles, boolean reproducible, IProgressMonitor monitor) {
 
 		monitor = ProgressUtil.getMonitorFor(monitor);
 
 		try {
-			BufferedOutputStream bout = new BufferedOutputStream(new FileOutputStream(tempFile));
-			ZipOutputStream zout = new ZipOutputStream(bout);
-			addZipEntries(zout, allResources, filterInFiles);
-			zout.close();
+			ArchiveWriter writer = new ArchiveWriter(new BufferedOutputStream(new FileOutputStream(tempFile)),
+					ArchiveCompressionPolicy.getDefault(), reproducible);
+			try {
+				writer.addModuleResources(allResources, filterInFiles);
+			}
+			finally {
+				writer.close();
+			}
 
 		}
 		catch (CoreException e) {
@@ -265,15 +366,11 @@ public class CloudUtil {
 		}
 		finally {
 			if (tempFile != null && tempFile.exists())
-				tempFile.deleteOnExit();
+				deleteOnExit(tempFile);
 		}
 		return EMPTY_STATUS;
 	}
 
-	private static final int BUFFER = 65536;
-
-	private static byte[] buf = new byte[BUFFER];
-
 	public static String getZipRelativeName(IModuleResource resource) {
 		IPath path = resource.getModuleRelativePath().append(resource.getName());
 		String entryPath = path.toPortableString();
@@ -285,83 +382,6 @@ public class CloudUtil {
 
 	}
 
-	private static void addZipEntries(ZipOutputStream out, List<IModuleResource> allResources,
-			Set<IModuleResource> filterInFiles) throws Exception {
-		if (allResources == null)
-			return;
-
-		for (IModuleResource resource : allResources) {
-			if (resource instanceof IModuleFolder) {
-
-				IModuleResource[] folderResources = ((IModuleFolder) resource).members();
-
-				String entryPath = getZipRelativeName(resource);
-
-				ZipEntry zipEntry = new ZipEntry(entryPath);
-
-				long timeStamp = 0;
-				IContainer folder = (IContainer) resource.getAdapter(IContainer.class);
-				if (folder != null) {
-					timeStamp = folder.getLocalTimeStamp();
-				}
-
-				if (timeStamp != IResource.NULL_STAMP && timeStamp != 0) {
-					zipEntry.setTime(timeStamp);
-				}
-
-				out.putNextEntry(zipEntry);
-				out.closeEntry();
-
-				addZipEntries(out, Arrays.asList(folderResources), filterInFiles);
-				continue;
-			}
-
-			IModuleFile moduleFile = (IModuleFile) resource;
-			// Only add files that are in the filterInList
-			if (!filterInFiles.contains(moduleFile)) {
-				continue;
-			}
-
-			String entryPath = getZipRelativeName(resource);
-
-			ZipEntry zipEntry = new ZipEntry(entryPath);
-
-			InputStream input = null;
-			long timeStamp = 0;
-			IFile iFile = (IFile) moduleFile.getAdapter(IFile.class);
-			if (iFile != null) {
-				timeStamp = iFile.getLocalTimeStamp();
-				input = iFile.getContents();
-			}
-			else {
-				File file = (File) moduleFile.getAdapter(File.class);
-				timeStamp = file.lastModified();
-				input = new FileInputStream(file);
-			}
-
-			if (timeStamp != IResource.NULL_STAMP && timeStamp != 0) {
-				zipEntry.setTime(timeStamp);
-			}
-
-			out.putNextEntry(zipEntry);
-
-			try {
-				int n = 0;
-				while (n > -1) {
-					n = input.read(buf);
-					if (n > 0) {
-						out.write(buf, 0, n);
-					}
-				}
-			}
-			finally {
-				input.close();
-			}
-
-			out.closeEntry();
-		}
-	}
-
 	/**
 	 * @param cloudService
 	 * @return
@@ -372,7 +392,11 @@ public class CloudUtil {
 	}
 
 	/**
-	 * Creates a temporary folder and file with the given names. It is the
+	 * Creates a temporary folder and file with the given names. The folder is
+	 * a working folder in the archive staging area, if available, in which
+	 * case the caller should release it through
+	 * {@link #releaseTemporaryFile(File)} once done, whether or not the file
+	 * was successfully written. Otherwise it is the
 	 * responsibility of the caller to properly dispose the folder and file
 	 * after it is created
 	 * @param folderName
@@ -381,11 +405,17 @@ public class CloudUtil {
 	 * @throws IOException
 	 */
 	public static File createTemporaryFile(String folderName, String fileName) throws IOException {
-		File tempFolder = File.createTempFile(folderName, null);
-		// Delete an existing one
-		tempFolder.delete();
-
-		tempFolder.mkdirs();
+		File tempFolder;
+		CloudFoundryPlugin plugin = CloudFoundryPlugin.getDefault();
+		if (plugin != null) {
+			tempFolder = plugin.getArchiveStagingArea().getWorkingFolder(folderName);
+		}
+		else {
+			tempFolder = File.createTempFile(folderName, null);
+			// Delete an existing one
+			tempFolder.delete();
+			tempFolder.mkdirs();
+		}
 		tempFolder.setExecutable(true);
 
 		File targetFile = new File(tempFolder, fileName);
@@ -410,4 +440,18 @@ public class CloudUtil {
 			result.add(status[i]);
 		}
 	}
+
+	/**
+	 * 
+	 * @param bytes
+	 * @return lower case hex encoding of the given bytes, for example of a
+	 * content digest
+	 */
+	public static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
 }
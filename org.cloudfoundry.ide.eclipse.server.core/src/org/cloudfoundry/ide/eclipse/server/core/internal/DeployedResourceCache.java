@@ -19,35 +19,353 @@
  ********************************************************************************/
 package org.cloudfoundry.ide.eclipse.server.core.internal;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
 /**
  * Cache for sha1 hash entries and file sizes for incremental publishing of
  * deployed resources. This avoid recalculating hash entries for resources that
  * have not changed in the server. A server poll may still required to obtain a
  * list of unchanged resources.
+ * <p/>
+ * If the cache is created with a store file, entries are also persisted to
+ * disk so that they survive IDE restarts. Entries are validated against the
+ * file size and last modified time of the local resource, therefore an entry
+ * for a resource that changed while the IDE was not running is never reused.
+ * The store is an append-only log of records that is periodically compacted
+ * into a snapshot of only the live entries, and the total number of cached
+ * entries is bounded, with least recently used applications evicted first.
  * 
  */
 public class DeployedResourceCache {
-	private final Map<CachedDeployedApplication, Map<String, DeployedResourceEntry>> cacheMap = new HashMap<CachedDeployedApplication, Map<String, DeployedResourceEntry>>();
+
+	/**
+	 * Default maximum number of entries across all applications.
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 200000;
+
+	private static final int STORE_MAGIC = 0x43464452;
+
+	/**
+	 * Increment whenever the store record format changes. Stores with a
+	 * different version are discarded on load.
+	 */
+	private static final int STORE_VERSION = 1;
+
+	private static final byte RECORD_ENTRY = 1;
+
+	private static final byte RECORD_REMOVE_APP = 2;
+
+	/*
+	 * Compact the store when the number of records in the store file exceeds
+	 * the number of live entries by this factor
+	 */
+	private static final int COMPACTION_FACTOR = 2;
+
+	// Access ordered so that least recently used applications are evicted
+	// first
+	private final Map<CachedDeployedApplication, Map<String, DeployedResourceEntry>> cacheMap = new LinkedHashMap<CachedDeployedApplication, Map<String, DeployedResourceEntry>>(
+			16, 0.75f, true);
+
+	private final File storeFile;
+
+	private final int maxEntries;
+
+	private int entryCount;
+
+	private int storeRecordCount;
+
+	private boolean loaded;
+
+	private boolean requiresCompaction;
+
+	private final List<StoreRecord> pendingRecords = new ArrayList<StoreRecord>();
+
+	/**
+	 * Creates an in-memory cache only. Entries are not persisted.
+	 */
+	public DeployedResourceCache() {
+		this(null, DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * 
+	 * @param storeFile file where entries are persisted. If null, entries are
+	 * only held in memory.
+	 * @param maxEntries maximum number of entries across all applications.
+	 */
+	public DeployedResourceCache(File storeFile, int maxEntries) {
+		this.storeFile = storeFile;
+		this.maxEntries = maxEntries > 0 ? maxEntries : DEFAULT_MAX_ENTRIES;
+	}
 
 	public synchronized void add(CachedDeployedApplication applicationID, DeployedResourceEntry entry) {
-		Map<String, DeployedResourceEntry> appEntries = cacheMap.get(applicationID);
-		if (appEntries == null) {
-			appEntries = new HashMap<String, DeployedResourceCache.DeployedResourceEntry>();
-			cacheMap.put(applicationID, appEntries);
+		load();
+		if (put(applicationID, entry)) {
+			pendingRecords.add(new StoreRecord(applicationID, entry));
 		}
-		appEntries.put(entry.getZipRelativeFileName(), entry);
+		evict();
 	}
 
 	public synchronized DeployedResourceEntry getEntry(CachedDeployedApplication applicationID,
 			String zipRelativeFileName) {
+		load();
 		Map<String, DeployedResourceEntry> appEntries = cacheMap.get(applicationID);
 
 		return appEntries != null ? appEntries.get(zipRelativeFileName) : null;
 	}
 
+	/**
+	 * Returns a cached entry only if it matches the given file size and last
+	 * modified time of the local resource.
+	 * @param applicationID
+	 * @param zipRelativeFileName
+	 * @param fileSize of the local resource
+	 * @param lastModified of the local resource
+	 * @return matching entry, or null if no entry is cached or the local
+	 * resource has since changed
+	 */
+	public synchronized DeployedResourceEntry getEntry(CachedDeployedApplication applicationID,
+			String zipRelativeFileName, long fileSize, long lastModified) {
+		DeployedResourceEntry entry = getEntry(applicationID, zipRelativeFileName);
+		if (entry != null && entry.getFileSize() == fileSize && entry.getLastModified() == lastModified) {
+			return entry;
+		}
+		return null;
+	}
+
+	/**
+	 * Removes all cached entries for the given application, for example if the
+	 * application is deleted.
+	 * @param applicationID
+	 */
+	public synchronized void remove(CachedDeployedApplication applicationID) {
+		load();
+		Map<String, DeployedResourceEntry> appEntries = cacheMap.remove(applicationID);
+		if (appEntries != null) {
+			entryCount -= appEntries.size();
+			pendingRecords.add(new StoreRecord(applicationID, null));
+		}
+	}
+
+	/**
+	 * Writes any pending entries to the store file, if one is set. If the
+	 * store contains too many stale records, it is compacted into a snapshot
+	 * of the live entries instead. Errors are logged but not thrown, as a
+	 * failure to persist the cache should not prevent a publish operation.
+	 */
+	public synchronized void save() {
+		if (storeFile == null || !loaded) {
+			return;
+		}
+		try {
+			if (requiresCompaction || !storeFile.exists()
+					|| storeRecordCount + pendingRecords.size() > COMPACTION_FACTOR * Math.max(entryCount, 1000)) {
+				compact();
+			}
+			else if (!pendingRecords.isEmpty()) {
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(storeFile,
+						true)));
+				try {
+					for (StoreRecord record : pendingRecords) {
+						writeRecord(out, record);
+					}
+				}
+				finally {
+					out.close();
+				}
+				storeRecordCount += pendingRecords.size();
+				pendingRecords.clear();
+			}
+		}
+		catch (IOException e) {
+			CloudFoundryPlugin.logError("Failed to save deployed resources cache to " + storeFile, e); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Rewrites the store file with only the live entries in the cache.
+	 * @throws IOException
+	 */
+	protected void compact() throws IOException {
+		File tempFile = new File(storeFile.getParentFile(), storeFile.getName() + ".tmp"); //$NON-NLS-1$
+		storeFile.getParentFile().mkdirs();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+		int count = 0;
+		try {
+			out.writeInt(STORE_MAGIC);
+			out.writeInt(STORE_VERSION);
+			for (Entry<CachedDeployedApplication, Map<String, DeployedResourceEntry>> appEntries : cacheMap.entrySet()) {
+				for (DeployedResourceEntry entry : appEntries.getValue().values()) {
+					writeRecord(out, new StoreRecord(appEntries.getKey(), entry));
+					count++;
+				}
+			}
+		}
+		finally {
+			out.close();
+		}
+		if (storeFile.exists() && !storeFile.delete()) {
+			tempFile.delete();
+			throw new IOException("Unable to replace " + storeFile); //$NON-NLS-1$
+		}
+		if (!tempFile.renameTo(storeFile)) {
+			throw new IOException("Unable to rename " + tempFile + " to " + storeFile); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		storeRecordCount = count;
+		pendingRecords.clear();
+		requiresCompaction = false;
+	}
+
+	protected void writeRecord(DataOutputStream out, StoreRecord record) throws IOException {
+		CachedDeployedApplication app = record.app;
+		if (record.entry == null) {
+			out.writeByte(RECORD_REMOVE_APP);
+			out.writeUTF(app.getAppName());
+			return;
+		}
+		DeployedResourceEntry entry = record.entry;
+		byte[] sha1 = entry.getSha1() != null ? entry.getSha1() : new byte[0];
+		out.writeByte(RECORD_ENTRY);
+		out.writeUTF(app.getAppName());
+		out.writeUTF(entry.getZipRelativeFileName());
+		out.writeLong(entry.getFileSize());
+		out.writeLong(entry.getLastModified());
+		out.writeShort(sha1.length);
+		out.write(sha1);
+	}
+
+	/**
+	 * Loads the store file, if one is set, the first time the cache is
+	 * accessed. A store that is corrupt or of a different version is
+	 * discarded, and rewritten on the next save.
+	 */
+	protected void load() {
+		if (loaded) {
+			return;
+		}
+		loaded = true;
+		if (storeFile == null || !storeFile.exists()) {
+			return;
+		}
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(storeFile)));
+			if (in.readInt() != STORE_MAGIC || in.readInt() != STORE_VERSION) {
+				requiresCompaction = true;
+				return;
+			}
+			while (true) {
+				byte type;
+				try {
+					type = in.readByte();
+				}
+				catch (EOFException eof) {
+					break;
+				}
+				CachedDeployedApplication app = new CachedDeployedApplication(in.readUTF());
+				if (type == RECORD_REMOVE_APP) {
+					Map<String, DeployedResourceEntry> appEntries = cacheMap.remove(app);
+					if (appEntries != null) {
+						entryCount -= appEntries.size();
+					}
+				}
+				else if (type == RECORD_ENTRY) {
+					String zipName = in.readUTF();
+					long fileSize = in.readLong();
+					long lastModified = in.readLong();
+					byte[] sha1 = new byte[in.readShort()];
+					in.readFully(sha1);
+					put(app, new DeployedResourceEntry(sha1, fileSize, zipName, lastModified));
+				}
+				else {
+					throw new IOException("Unknown record type " + type); //$NON-NLS-1$
+				}
+				storeRecordCount++;
+			}
+			evict();
+		}
+		catch (IOException e) {
+			// Truncated or corrupt store. Keep whatever was read, and rewrite
+			// the store on the next save
+			requiresCompaction = true;
+			CloudFoundryPlugin.logWarning("Discarding corrupt deployed resources cache " + storeFile + " - " //$NON-NLS-1$ //$NON-NLS-2$
+					+ e.getMessage());
+		}
+		finally {
+			if (in != null) {
+				try {
+					in.close();
+				}
+				catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @return true if the entry was added or changed. False if the same entry
+	 * was already cached
+	 */
+	private boolean put(CachedDeployedApplication applicationID, DeployedResourceEntry entry) {
+		Map<String, DeployedResourceEntry> appEntries = cacheMap.get(applicationID);
+		if (appEntries == null) {
+			appEntries = new HashMap<String, DeployedResourceCache.DeployedResourceEntry>();
+			cacheMap.put(applicationID, appEntries);
+		}
+		DeployedResourceEntry old = appEntries.put(entry.getZipRelativeFileName(), entry);
+		if (old == null) {
+			entryCount++;
+		}
+		return old == null || !old.equals(entry);
+	}
+
+	/**
+	 * Evicts least recently used applications until the number of entries is
+	 * within the bound. The most recently used application is never evicted.
+	 */
+	private void evict() {
+		Iterator<Map<String, DeployedResourceEntry>> it = cacheMap.values().iterator();
+		while (entryCount > maxEntries && cacheMap.size() > 1 && it.hasNext()) {
+			entryCount -= it.next().size();
+			it.remove();
+			requiresCompaction = true;
+		}
+	}
+
+	/**
+	 * A record in the store file. A null entry indicates that all entries for
+	 * the application were removed.
+	 */
+	protected static class StoreRecord {
+
+		final CachedDeployedApplication app;
+
+		final DeployedResourceEntry entry;
+
+		StoreRecord(CachedDeployedApplication app, DeployedResourceEntry entry) {
+			this.app = app;
+			this.entry = entry;
+		}
+	}
+
 	public static class DeployedResourceEntry {
 		private final byte[] sha1;
 
@@ -55,10 +373,25 @@ public class DeployedResourceCache {
 
 		private final String zipRelativeFileName;
 
+		private final long lastModified;
+
 		public DeployedResourceEntry(byte[] sha1, long fileSize, String zipRelativeFileName) {
+			this(sha1, fileSize, zipRelativeFileName, -1);
+		}
+
+		/**
+		 * 
+		 * @param sha1
+		 * @param fileSize
+		 * @param zipRelativeFileName
+		 * @param lastModified of the local resource when the sha1 was
+		 * computed, or -1 if not known
+		 */
+		public DeployedResourceEntry(byte[] sha1, long fileSize, String zipRelativeFileName, long lastModified) {
 			this.sha1 = sha1;
 			this.fileSize = fileSize;
 			this.zipRelativeFileName = zipRelativeFileName;
+			this.lastModified = lastModified;
 		}
 
 		public String getZipRelativeFileName() {
@@ -72,6 +405,28 @@ public class DeployedResourceCache {
 		public long getFileSize() {
 			return fileSize;
 		}
+
+		public long getLastModified() {
+			return lastModified;
+		}
+
+		public int hashCode() {
+			return zipRelativeFileName != null ? zipRelativeFileName.hashCode() : 0;
+		}
+
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof DeployedResourceEntry)) {
+				return false;
+			}
+			DeployedResourceEntry other = (DeployedResourceEntry) obj;
+			return fileSize == other.fileSize && lastModified == other.lastModified
+					&& Arrays.equals(sha1, other.sha1)
+					&& (zipRelativeFileName == null ? other.zipRelativeFileName == null : zipRelativeFileName
+							.equals(other.zipRelativeFileName));
+		}
 	}
 
 	/**
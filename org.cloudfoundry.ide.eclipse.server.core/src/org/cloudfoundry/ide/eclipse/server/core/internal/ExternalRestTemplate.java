@@ -22,14 +22,10 @@ package org.cloudfoundry.ide.eclipse.server.core.internal;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.apache.http.client.HttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.impl.client.HttpClients;
 import org.cloudfoundry.client.lib.CloudFoundryOperations;
 import org.cloudfoundry.client.lib.rest.CloudControllerResponseErrorHandler;
 import org.cloudfoundry.ide.eclipse.server.core.internal.client.CloudFoundryServerBehaviour;
 import org.springframework.http.client.ClientHttpRequestFactory;
-import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.http.converter.ByteArrayHttpMessageConverter;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.ResourceHttpMessageConverter;
@@ -53,11 +49,9 @@ public class ExternalRestTemplate extends RestTemplate {
 	}
 
 	protected ClientHttpRequestFactory createRequestFactory() {
-		HttpClientBuilder httpClientBuilder = HttpClients.custom().useSystemProperties();
-		HttpClient httpClient = httpClientBuilder.build();
-		HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
-
-		return requestFactory;
+		// Reuse pooled connections, as templates are often created for a
+		// single request
+		return HttpConnectionPool.getDefault().createRequestFactory(null, false);
 	}
 
 	protected void createRestTemplate() {
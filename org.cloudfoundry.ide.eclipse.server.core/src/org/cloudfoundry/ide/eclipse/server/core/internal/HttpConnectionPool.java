@@ -0,0 +1,368 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.HttpClient;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLContextBuilder;
+import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.DefaultProxyRoutePlanner;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.cloudfoundry.client.lib.HttpProxyConfiguration;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+/**
+ * Pools HTTP connections across all Cloud Foundry clients and
+ * {@link ExternalRestTemplate} instances, so that connections to the same
+ * target, and in particular their TLS sessions, are reused rather than
+ * established again for each new client.
+ * <p/>
+ * Connections are kept alive for as long as the server allows, up to a
+ * configured maximum, and connections that have been idle for longer than
+ * the configured idle timeout are closed in the background. Connections to
+ * servers with self-signed certificates are pooled separately, as they are
+ * created with a different trust strategy.
+ * <p/>
+ * HTTP clients created by the pool share its connections, and closing them
+ * does not close the pool.
+ */
+public class HttpConnectionPool {
+
+	public static final String MAX_TOTAL_PREFERENCE = CloudFoundryPlugin.PLUGIN_ID + ".http.pool.maxTotal"; //$NON-NLS-1$
+
+	public static final int DEFAULT_MAX_TOTAL = 50;
+
+	public static final String MAX_PER_ROUTE_PREFERENCE = CloudFoundryPlugin.PLUGIN_ID + ".http.pool.maxPerRoute"; //$NON-NLS-1$
+
+	public static final int DEFAULT_MAX_PER_ROUTE = 10;
+
+	public static final String KEEP_ALIVE_PREFERENCE = CloudFoundryPlugin.PLUGIN_ID + ".http.pool.keepAlive"; //$NON-NLS-1$
+
+	/**
+	 * Default maximum time in milliseconds a connection is kept alive
+	 */
+	public static final long DEFAULT_KEEP_ALIVE = 2 * 60 * 1000;
+
+	public static final String IDLE_TIMEOUT_PREFERENCE = CloudFoundryPlugin.PLUGIN_ID + ".http.pool.idleTimeout"; //$NON-NLS-1$
+
+	/**
+	 * Default time in milliseconds after which idle connections are closed
+	 */
+	public static final long DEFAULT_IDLE_TIMEOUT = 30 * 1000;
+
+	private static HttpConnectionPool defaultPool;
+
+	private final int maxTotal;
+
+	private final int maxPerRoute;
+
+	private final long keepAlive;
+
+	private final long idleTimeout;
+
+	private PoolingHttpClientConnectionManager connectionManager;
+
+	private PoolingHttpClientConnectionManager selfSignedConnectionManager;
+
+	private Job evictionJob;
+
+	private boolean shutdown;
+
+	/**
+	 *
+	 * @param maxTotal maximum number of connections for each trust strategy
+	 * @param maxPerRoute maximum number of connections to the same target
+	 * @param keepAlive maximum time in milliseconds a connection is kept
+	 * alive, if the server allows it
+	 * @param idleTimeout time in milliseconds after which idle connections are
+	 * closed
+	 */
+	public HttpConnectionPool(int maxTotal, int maxPerRoute, long keepAlive, long idleTimeout) {
+		this.maxTotal = Math.max(1, maxTotal);
+		this.maxPerRoute = Math.max(1, Math.min(maxPerRoute, this.maxTotal));
+		this.keepAlive = keepAlive;
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 *
+	 * @return pool configured in the plugin preferences, or with default
+	 * settings if the plugin is not available. Never null.
+	 */
+	public static synchronized HttpConnectionPool getDefault() {
+		if (defaultPool == null) {
+			int maxTotal = DEFAULT_MAX_TOTAL;
+			int maxPerRoute = DEFAULT_MAX_PER_ROUTE;
+			long keepAlive = DEFAULT_KEEP_ALIVE;
+			long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+			CloudFoundryPlugin plugin = CloudFoundryPlugin.getDefault();
+			if (plugin != null) {
+				IEclipsePreferences prefs = plugin.getPreferences();
+				maxTotal = prefs.getInt(MAX_TOTAL_PREFERENCE, DEFAULT_MAX_TOTAL);
+				maxPerRoute = prefs.getInt(MAX_PER_ROUTE_PREFERENCE, DEFAULT_MAX_PER_ROUTE);
+				keepAlive = prefs.getLong(KEEP_ALIVE_PREFERENCE, DEFAULT_KEEP_ALIVE);
+				idleTimeout = prefs.getLong(IDLE_TIMEOUT_PREFERENCE, DEFAULT_IDLE_TIMEOUT);
+			}
+			defaultPool = new HttpConnectionPool(maxTotal, maxPerRoute, keepAlive, idleTimeout);
+		}
+		return defaultPool;
+	}
+
+	/**
+	 * Closes all connections of the default pool. A new default pool is
+	 * created if it is requested again.
+	 */
+	public static synchronized void shutdownDefault() {
+		if (defaultPool != null) {
+			defaultPool.shutdown();
+			defaultPool = null;
+		}
+	}
+
+	/**
+	 * Creates a request factory for a rest template, whose requests use pooled
+	 * connections.
+	 * @param proxyConfiguration proxy to connect through, or null to use the
+	 * proxy specified in the system properties, if any.
+	 * @param selfSigned true if the server may use a self-signed certificate
+	 * @return Non-null request factory
+	 */
+	public ClientHttpRequestFactory createRequestFactory(HttpProxyConfiguration proxyConfiguration, boolean selfSigned) {
+		return new HttpComponentsClientHttpRequestFactory(createHttpClient(proxyConfiguration, selfSigned));
+	}
+
+	/**
+	 * Creates an HTTP client that uses pooled connections.
+	 * @param proxyConfiguration proxy to connect through, or null to use the
+	 * proxy specified in the system properties, if any.
+	 * @param selfSigned true if the server may use a self-signed certificate
+	 * @return Non-null HTTP client
+	 */
+	public HttpClient createHttpClient(HttpProxyConfiguration proxyConfiguration, boolean selfSigned) {
+		HttpClientBuilder httpClientBuilder = HttpClients.custom().useSystemProperties();
+		httpClientBuilder.setConnectionManager(new SharedConnectionManager(getConnectionManager(selfSigned)));
+		httpClientBuilder.setKeepAliveStrategy(new ConnectionKeepAliveStrategy() {
+			public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+				return HttpConnectionPool.getKeepAliveDuration(
+						DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context), keepAlive);
+			}
+		});
+
+		if (proxyConfiguration != null) {
+			HttpHost proxy = new HttpHost(proxyConfiguration.getProxyHost(), proxyConfiguration.getProxyPort());
+			httpClientBuilder.setProxy(proxy);
+			if (proxyConfiguration.isAuthRequired()) {
+				BasicCredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+				credentialsProvider.setCredentials(new AuthScope(proxyConfiguration.getProxyHost(),
+						proxyConfiguration.getProxyPort()), new UsernamePasswordCredentials(proxyConfiguration
+						.getUsername(), proxyConfiguration.getPassword()));
+				httpClientBuilder.setDefaultCredentialsProvider(credentialsProvider);
+			}
+			httpClientBuilder.setRoutePlanner(new DefaultProxyRoutePlanner(proxy));
+		}
+		return httpClientBuilder.build();
+	}
+
+	/**
+	 * Closes expired connections, and connections that have been idle for
+	 * longer than the idle timeout.
+	 */
+	public synchronized void closeIdleConnections() {
+		for (PoolingHttpClientConnectionManager manager : new PoolingHttpClientConnectionManager[] {
+				connectionManager, selfSignedConnectionManager }) {
+			if (manager != null) {
+				manager.closeExpiredConnections();
+				manager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+
+	/**
+	 * Closes all connections. Clients created by the pool can no longer be
+	 * used afterwards.
+	 */
+	public synchronized void shutdown() {
+		shutdown = true;
+		if (evictionJob != null) {
+			evictionJob.cancel();
+			evictionJob = null;
+		}
+		if (connectionManager != null) {
+			connectionManager.shutdown();
+		}
+		if (selfSignedConnectionManager != null) {
+			selfSignedConnectionManager.shutdown();
+		}
+	}
+
+	public int getMaxTotal() {
+		return maxTotal;
+	}
+
+	public int getMaxPerRoute() {
+		return maxPerRoute;
+	}
+
+	protected synchronized PoolingHttpClientConnectionManager getConnectionManager(boolean selfSigned) {
+		if (shutdown) {
+			throw new IllegalStateException("HTTP connection pool has been shut down"); //$NON-NLS-1$
+		}
+		if (selfSigned) {
+			if (selfSignedConnectionManager == null) {
+				selfSignedConnectionManager = createConnectionManager(new SSLConnectionSocketFactory(
+						buildSelfSignedSslContext(), SSLConnectionSocketFactory.BROWSER_COMPATIBLE_HOSTNAME_VERIFIER));
+			}
+			startEviction();
+			return selfSignedConnectionManager;
+		}
+		if (connectionManager == null) {
+			connectionManager = createConnectionManager(SSLConnectionSocketFactory.getSystemSocketFactory());
+		}
+		startEviction();
+		return connectionManager;
+	}
+
+	protected PoolingHttpClientConnectionManager createConnectionManager(SSLConnectionSocketFactory sslSocketFactory) {
+		Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory> create()
+				.register("http", PlainConnectionSocketFactory.getSocketFactory()) //$NON-NLS-1$
+				.register("https", sslSocketFactory).build(); //$NON-NLS-1$
+		PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager(registry);
+		manager.setMaxTotal(maxTotal);
+		manager.setDefaultMaxPerRoute(maxPerRoute);
+		return manager;
+	}
+
+	protected SSLContext buildSelfSignedSslContext() {
+		try {
+			return new SSLContextBuilder().useSSL().loadTrustMaterial(null, new TrustSelfSignedStrategy()).build();
+		}
+		catch (Exception e) {
+			throw new IllegalStateException("Unable to create SSL context for self-signed certificates", e); //$NON-NLS-1$
+		}
+	}
+
+	protected synchronized void startEviction() {
+		if (evictionJob != null || idleTimeout <= 0) {
+			return;
+		}
+		final long interval = Math.max(idleTimeout / 2, 1000);
+		evictionJob = new Job("Closing idle HTTP connections") { //$NON-NLS-1$
+
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				closeIdleConnections();
+				if (!monitor.isCanceled()) {
+					schedule(interval);
+				}
+				return Status.OK_STATUS;
+			}
+		};
+		evictionJob.setSystem(true);
+		evictionJob.schedule(interval);
+	}
+
+	/**
+	 *
+	 * @param serverDuration keep alive duration in milliseconds requested by
+	 * the server, or a negative value if the server did not specify one
+	 * @param maxDuration maximum keep alive duration in milliseconds
+	 * @return keep alive duration in milliseconds
+	 */
+	public static long getKeepAliveDuration(long serverDuration, long maxDuration) {
+		return serverDuration < 0 ? maxDuration : Math.min(serverDuration, maxDuration);
+	}
+
+	/**
+	 * Connection manager that delegates to a pooled connection manager, but is
+	 * not shut down when a client using it is closed.
+	 */
+	private static class SharedConnectionManager implements HttpClientConnectionManager {
+
+		private final HttpClientConnectionManager delegate;
+
+		SharedConnectionManager(HttpClientConnectionManager delegate) {
+			this.delegate = delegate;
+		}
+
+		public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+			return delegate.requestConnection(route, state);
+		}
+
+		public void releaseConnection(HttpClientConnection conn, Object newState, long validDuration,
+				TimeUnit timeUnit) {
+			delegate.releaseConnection(conn, newState, validDuration, timeUnit);
+		}
+
+		public void connect(HttpClientConnection conn, HttpRoute route, int connectTimeout, HttpContext context)
+				throws IOException {
+			delegate.connect(conn, route, connectTimeout, context);
+		}
+
+		public void upgrade(HttpClientConnection conn, HttpRoute route, HttpContext context) throws IOException {
+			delegate.upgrade(conn, route, context);
+		}
+
+		public void routeComplete(HttpClientConnection conn, HttpRoute route, HttpContext context)
+				throws IOException {
+			delegate.routeComplete(conn, route, context);
+		}
+
+		public void closeIdleConnections(long idletime, TimeUnit tunit) {
+			delegate.closeIdleConnections(idletime, tunit);
+		}
+
+		public void closeExpiredConnections() {
+			delegate.closeExpiredConnections();
+		}
+
+		public void shutdown() {
+			// The pool is shut down when the plugin stops
+		}
+	}
+}
@@ -35,6 +35,8 @@ public class Messages extends NLS {
 
 	public static String ApplicationUrlLookupService_ERROR_GETDEFAULT_APP_URL;
 
+	public static String ArchiveStagingArea_QUOTA_EXCEEDED;
+
 	public static String ERROR_PERFORMING_CLOUD_FOUNDRY_OPERATION;
 
 	public static String ERROR_WRONG_EMAIL_OR_PASSWORD_UNAUTHORISED;
@@ -121,6 +123,12 @@ public class Messages extends NLS {
 
 	public static String ClientRequest_NO_TOKEN;
 
+	public static String AbstractPublishApplicationOperation_CANCELED_WAITING_FOR_LOCK;
+
+	public static String BatchApplicationOperation_OPERATIONS_FAILED;
+
+	public static String CloudBehaviourOperations_DEPLOYING_APPLICATIONS;
+
 	public static String CloudBehaviourOperations_REFRESHING_APPS_AND_SERVICES;
 
 	public static String CloudFoundryApplicationModule_STATE_DEPLOYABLE;
@@ -235,6 +243,16 @@ public class Messages extends NLS {
 
 	public static String CONSOLE_STOPPING_APPLICATION;
 
+	public static String CONSOLE_PUSH_RESOURCES_MATCHED;
+
+	public static String CONSOLE_PUSH_UPLOADED;
+
+	public static String CONSOLE_APP_CONTENT_UNCHANGED;
+
+	public static String PushStatisticsCallback_CHECKED_RESOURCES;
+
+	public static String PushStatisticsCallback_UPLOADING;
+
 	public static String DeleteModulesOperation_ERROR_DELETE_APP_MESSAGE;
 
 	public static String LocalServerRequest_SERVER_LABEL;
@@ -257,6 +275,8 @@ public class Messages extends NLS {
 
 	public static String RestartOperation_STARTING_APP;
 
+	public static String StartOperation_RESTARTED_APP_LOOKUP_FAILED;
+
 	public static String PUBLISHING_MODULE;
 
 	public static String StopApplicationOperation_STOPPING_APP;
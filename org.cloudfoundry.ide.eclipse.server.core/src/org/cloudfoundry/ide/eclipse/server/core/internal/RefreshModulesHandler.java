@@ -19,8 +19,15 @@
  ********************************************************************************/
 package org.cloudfoundry.ide.eclipse.server.core.internal;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
 import org.cloudfoundry.client.lib.domain.CloudApplication;
 import org.cloudfoundry.ide.eclipse.server.core.internal.client.BehaviourOperation;
+import org.cloudfoundry.ide.eclipse.server.core.internal.client.CloudBehaviourOperations;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -37,15 +44,61 @@ import org.eclipse.wst.server.core.IModule;
  * {@link CloudFoundryServer} which may be a long-running task, module refreshes
  * is performed asynchronously as a job, and only one job is scheduled per
  * behaviour regardless of the number of refresh requests received
- * 
+ * <p/>
+ * Refresh requests are coalesced rather than dropped: requests received
+ * while a refresh is pending or running are merged per module, and are all
+ * performed by the next run of the refresh job, so every requested module is
+ * refreshed at least once after the time of the request. Bursts of requests
+ * are debounced, and if many application refreshes accumulate, they are
+ * upgraded to a single refresh of all modules. Listeners of the modules are
+ * notified once the refresh of all modules succeeded. Refreshes that were not
+ * performed because the refresh job was canceled remain pending.
+ * <p/>
+ * Background refreshes, like those of the {@link ApplicationStatePoller}, are
+ * performed by a system job, unless a refresh requested otherwise is pending
+ * as well.
  */
 public class RefreshModulesHandler {
 
+	/**
+	 * Number of pending application refreshes above which they are performed
+	 * as one refresh of all modules instead.
+	 */
+	public static final int FULL_REFRESH_THRESHOLD = 5;
+
+	/**
+	 * Delay in milliseconds before a refresh job runs, so that bursts of
+	 * refresh requests are handled in one run.
+	 */
+	public static final long DEBOUNCE_DELAY = 200;
+
 	private BehaviourRefreshJob refreshJob;
 
 	private final CloudFoundryServer cloudServer;
 
-	private BehaviourOperation opToRun;
+	private boolean refreshAllPending;
+
+	/**
+	 * Modules whose instances are refreshed as part of a refresh of all
+	 * modules
+	 */
+	private final Set<IModule> refreshAllModules = new LinkedHashSet<IModule>();
+
+	private final Set<IModule> applicationModules = new LinkedHashSet<IModule>();
+
+	private final Set<IModule> deploymentChangeModules = new LinkedHashSet<IModule>();
+
+	private boolean running;
+
+	/**
+	 * True if a pending refresh was not requested in the background
+	 */
+	private boolean userRefreshPending;
+
+	/**
+	 * True if a refresh was requested while the job was running
+	 */
+	private boolean rescheduleRequested;
 
 	private static final String NO_SERVER_ERROR = "Null server in refresh module handler. Unable to schedule module refresh."; //$NON-NLS-1$
 
@@ -54,30 +107,36 @@ public class RefreshModulesHandler {
 	 * @param cloudServer may be null if not resolved.
 	 */
 	public RefreshModulesHandler(CloudFoundryServer cloudServer) {
-		this.cloudServer = cloudServer;
-		String serverName = cloudServer != null ? cloudServer.getServer().getId() : "Unknown server"; //$NON-NLS-1$
-
-		String refreshJobLabel = NLS.bind(Messages.RefreshModulesHandler_REFRESH_JOB, serverName);
+		this(cloudServer, NLS.bind(Messages.RefreshModulesHandler_REFRESH_JOB,
+				cloudServer != null ? cloudServer.getServer().getId() : "Unknown server")); //$NON-NLS-1$
+	}
 
+	/**
+	 * 
+	 * @param cloudServer may be null if not resolved.
+	 * @param refreshJobLabel label of the refresh job
+	 */
+	protected RefreshModulesHandler(CloudFoundryServer cloudServer, String refreshJobLabel) {
+		this.cloudServer = cloudServer;
 		this.refreshJob = new BehaviourRefreshJob(refreshJobLabel);
 	}
 
 	/**
-	 * Refresh all modules in the Cloud space, as well as services, but does not
-	 * refresh the application instances information as that is triggered
-	 * individually on a module selection to avoid a slow refresh
+	 * Refresh all modules in the Cloud space, as well as services. The
+	 * instances information of started applications is fetched in parallel
+	 * with a bounded number of concurrent requests, see
+	 * {@link CloudBehaviourOperations#refreshAll(IModule)}
 	 */
 	public synchronized void scheduleRefreshAll() {
-		if (cloudServer == null) {
-			CloudFoundryPlugin.logError(NO_SERVER_ERROR);
-		}
-		else if (this.opToRun == null) {
-			scheduleRefresh(cloudServer.getBehaviour().operations().refreshAll(null));
-		}
+		scheduleRefreshAll(null);
 	}
 
+	/**
+	 * 
+	 * @return true if a refresh is pending or running
+	 */
 	public synchronized boolean isScheduled() {
-		return this.opToRun != null;
+		return running || hasPendingRefresh();
 	}
 
 	/**
@@ -90,8 +149,27 @@ public class RefreshModulesHandler {
 		if (cloudServer == null) {
 			CloudFoundryPlugin.logError(NO_SERVER_ERROR);
 		}
-		else if (this.opToRun == null) {
-			scheduleRefresh(cloudServer.getBehaviour().operations().refreshAll(module));
+		else {
+			refreshAllPending = true;
+			if (module != null) {
+				refreshAllModules.add(module);
+			}
+			userRefreshPending = true;
+			schedule();
+		}
+	}
+
+	/**
+	 * Schedules to refresh all modules and services in the background, as a
+	 * system job unless other refreshes are pending.
+	 */
+	public synchronized void scheduleBackgroundRefreshAll() {
+		if (cloudServer == null) {
+			CloudFoundryPlugin.logError(NO_SERVER_ERROR);
+		}
+		else {
+			refreshAllPending = true;
+			schedule();
 		}
 	}
 
@@ -105,8 +183,26 @@ public class RefreshModulesHandler {
 		if (cloudServer == null) {
 			CloudFoundryPlugin.logError(NO_SERVER_ERROR);
 		}
-		else if (this.opToRun == null) {
-			scheduleRefresh(cloudServer.getBehaviour().operations().refreshApplication(module));
+		else if (module != null) {
+			applicationModules.add(module);
+			userRefreshPending = true;
+			schedule();
+		}
+	}
+
+	/**
+	 * Schedules an application refresh in the background, in the same way as
+	 * {@link #schedulesRefreshApplication(IModule)}, but as a system job
+	 * unless other refreshes are pending.
+	 * @param module to refresh
+	 */
+	public synchronized void scheduleBackgroundRefreshApplication(IModule module) {
+		if (cloudServer == null) {
+			CloudFoundryPlugin.logError(NO_SERVER_ERROR);
+		}
+		else if (module != null) {
+			applicationModules.add(module);
+			schedule();
 		}
 	}
 
@@ -122,21 +218,210 @@ public class RefreshModulesHandler {
 		if (cloudServer == null) {
 			CloudFoundryPlugin.logError(NO_SERVER_ERROR);
 		}
-		else if (this.opToRun == null) {
-			scheduleRefresh(cloudServer.getBehaviour().operations().refreshForDeploymentChange(module));
+		else if (module != null) {
+			deploymentChangeModules.add(module);
+			userRefreshPending = true;
+			schedule();
 		}
 	}
 
-	private synchronized void scheduleRefresh(BehaviourOperation opToRun) {
-		if (this.opToRun == null) {
-			this.opToRun = opToRun;
-			schedule();
-		}
+	private boolean hasPendingRefresh() {
+		return refreshAllPending || !applicationModules.isEmpty() || !deploymentChangeModules.isEmpty();
 	}
 
 	private void schedule() {
-		refreshJob.setSystem(false);
-		refreshJob.schedule();
+		if (running) {
+			// The job is scheduled again once the current run completes
+			rescheduleRequested = true;
+			return;
+		}
+		boolean system = !userRefreshPending;
+		// The job kind can only be changed while the job is not scheduled, so
+		// a job waiting as a system job is canceled first
+		if (refreshJob.getState() == Job.NONE
+				|| (refreshJob.isSystem() != system && refreshJob.getState() != Job.RUNNING && refreshJob.cancel())) {
+			refreshJob.setSystem(system);
+		}
+		refreshJob.schedule(DEBOUNCE_DELAY);
+	}
+
+	/**
+	 * 
+	 * @return all pending refreshes. The pending refreshes are cleared.
+	 */
+	private synchronized TakenRefreshes takePendingRefreshes() {
+		TakenRefreshes refreshes = new TakenRefreshes();
+		refreshes.refreshAll = refreshAllPending
+				|| applicationModules.size() + deploymentChangeModules.size() > FULL_REFRESH_THRESHOLD;
+		refreshes.userRequested = userRefreshPending;
+		refreshes.refreshAllModules.addAll(refreshAllModules);
+		refreshes.deploymentChangeModules.addAll(deploymentChangeModules);
+		refreshes.applicationModules.addAll(applicationModules);
+
+		refreshAllPending = false;
+		userRefreshPending = false;
+		refreshAllModules.clear();
+		applicationModules.clear();
+		deploymentChangeModules.clear();
+		return refreshes;
+	}
+
+	/**
+	 * Adds refreshes that were taken but not performed back to the pending
+	 * refreshes.
+	 */
+	private synchronized void requeue(TakenRefreshes refreshes) {
+		if (refreshes.isEmpty()) {
+			return;
+		}
+		refreshAllPending |= refreshes.refreshAll;
+		userRefreshPending |= refreshes.userRequested;
+		refreshAllModules.addAll(refreshes.refreshAllModules);
+		deploymentChangeModules.addAll(refreshes.deploymentChangeModules);
+		applicationModules.addAll(refreshes.applicationModules);
+	}
+
+	/**
+	 * Performs the given refreshes, in order, and removes each refresh from
+	 * them once performed. Refreshes that are not performed because the
+	 * monitor was canceled are left in the given refreshes.
+	 */
+	private void performRefreshes(TakenRefreshes refreshes, IProgressMonitor monitor) {
+		if (refreshes.refreshAll) {
+			if (monitor.isCanceled()) {
+				return;
+			}
+			// A refresh of all modules also refreshes the instances of all
+			// modules with pending application refreshes
+			Set<IModule> modules = new LinkedHashSet<IModule>(refreshes.refreshAllModules);
+			modules.addAll(refreshes.deploymentChangeModules);
+			modules.addAll(refreshes.applicationModules);
+
+			if (runOperation(getRefreshAllOperation(new ArrayList<IModule>(modules)), monitor)) {
+				// Listeners are only notified of the module refreshes once
+				// they were actually performed
+				fireRefreshedEvents(refreshes.deploymentChangeModules, refreshes.applicationModules);
+			}
+			else if (monitor.isCanceled()) {
+				return;
+			}
+			refreshes.clear();
+			return;
+		}
+
+		for (Iterator<IModule> it = refreshes.deploymentChangeModules.iterator(); it.hasNext();) {
+			IModule module = it.next();
+			if (monitor.isCanceled()
+					|| (!runOperation(getRefreshForDeploymentChangeOperation(module), monitor) && monitor.isCanceled())) {
+				return;
+			}
+			// Also refreshes the application
+			refreshes.applicationModules.remove(module);
+			it.remove();
+		}
+		for (Iterator<IModule> it = refreshes.applicationModules.iterator(); it.hasNext();) {
+			IModule module = it.next();
+			if (monitor.isCanceled()
+					|| (!runOperation(getRefreshApplicationOperation(module), monitor) && monitor.isCanceled())) {
+				return;
+			}
+			it.remove();
+		}
+	}
+
+	/**
+	 * 
+	 * @param modules modules whose instances are refreshed as well
+	 * @return operation that refreshes all modules
+	 */
+	protected BehaviourOperation getRefreshAllOperation(List<IModule> modules) {
+		return cloudServer.getBehaviour().operations().refreshAll(modules);
+	}
+
+	protected BehaviourOperation getRefreshForDeploymentChangeOperation(IModule module) {
+		return cloudServer.getBehaviour().operations().refreshForDeploymentChange(module);
+	}
+
+	protected BehaviourOperation getRefreshApplicationOperation(IModule module) {
+		return cloudServer.getBehaviour().operations().refreshApplication(module);
+	}
+
+	/**
+	 * Notifies listeners of module refreshes that were performed as part of a
+	 * refresh of all modules.
+	 */
+	protected void fireRefreshedEvents(Set<IModule> deploymentChangeModules, Set<IModule> applicationModules) {
+		for (IModule module : deploymentChangeModules) {
+			ServerEventHandler.getDefault().fireAppDeploymentChanged(cloudServer, module);
+		}
+		for (IModule module : applicationModules) {
+			if (!deploymentChangeModules.contains(module)) {
+				ServerEventHandler.getDefault().fireApplicationRefreshed(cloudServer, module);
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @return true if the operation completed, false if it failed, in which
+	 * case the error is reported to listeners.
+	 */
+	private boolean runOperation(BehaviourOperation opToRun, IProgressMonitor monitor) {
+		CloudFoundryServer cloudServer = null;
+		IModule module = opToRun.getModule();
+
+		try {
+			cloudServer = opToRun.getBehaviour() != null ? opToRun.getBehaviour().getCloudFoundryServer() : null;
+		}
+		catch (CoreException ce) {
+			CloudFoundryPlugin.logError(ce);
+		}
+
+		try {
+			opToRun.run(monitor);
+			return true;
+		}
+		catch (Throwable t) {
+			// Cloud server must not be null as it's the source of
+			// the event
+			if (cloudServer == null) {
+				CloudFoundryPlugin.logError(NLS.bind(Messages.RefreshModulesHandler_EVENT_CLOUD_SERVER_NULL,
+						opToRun.getClass()));
+			}
+			else {
+				ServerEventHandler.getDefault().fireError(cloudServer, module,
+						CloudFoundryPlugin.getErrorStatus(Messages.RefreshModulesHandler_REFRESH_FAILURE, t));
+
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Refreshes taken from the pending refreshes by a run of the refresh job
+	 */
+	private static class TakenRefreshes {
+
+		boolean refreshAll;
+
+		boolean userRequested;
+
+		final Set<IModule> refreshAllModules = new LinkedHashSet<IModule>();
+
+		final Set<IModule> applicationModules = new LinkedHashSet<IModule>();
+
+		final Set<IModule> deploymentChangeModules = new LinkedHashSet<IModule>();
+
+		boolean isEmpty() {
+			return !refreshAll && applicationModules.isEmpty() && deploymentChangeModules.isEmpty();
+		}
+
+		void clear() {
+			refreshAll = false;
+			refreshAllModules.clear();
+			applicationModules.clear();
+			deploymentChangeModules.clear();
+		}
 	}
 
 	private class BehaviourRefreshJob extends Job {
@@ -147,41 +432,32 @@ public class RefreshModulesHandler {
 
 		@Override
 		public IStatus run(IProgressMonitor monitor) {
+			TakenRefreshes refreshes;
+			synchronized (RefreshModulesHandler.this) {
+				running = true;
+				rescheduleRequested = false;
+				refreshes = takePendingRefreshes();
+			}
 			try {
-				CloudFoundryServer cloudServer = null;
-				IModule module = opToRun.getModule();
-
-				try {
-					cloudServer = opToRun.getBehaviour() != null ? opToRun.getBehaviour().getCloudFoundryServer()
-							: null;
-				}
-				catch (CoreException ce) {
-					CloudFoundryPlugin.logError(ce);
-				}
-
-				try {
-					opToRun.run(monitor);
-				}
-				catch (Throwable t) {
-					// Cloud server must not be null as it's the source of
-					// the event
-					if (cloudServer == null) {
-						CloudFoundryPlugin.logError(NLS.bind(Messages.RefreshModulesHandler_EVENT_CLOUD_SERVER_NULL,
-								opToRun.getClass()));
-					}
-					else {
-						ServerEventHandler.getDefault().fireError(cloudServer, module,
-								CloudFoundryPlugin.getErrorStatus(Messages.RefreshModulesHandler_REFRESH_FAILURE, t));
-
-					}
-				}
+				performRefreshes(refreshes, monitor);
 			}
 			finally {
-				opToRun = null;
+				synchronized (RefreshModulesHandler.this) {
+					running = false;
+					// Refreshes not performed because the job was canceled
+					// remain pending
+					requeue(refreshes);
+					// Requests received while running are performed in the
+					// next run. Refreshes left by a canceled run are only
+					// performed with the next request.
+					if (hasPendingRefresh() && (rescheduleRequested || !monitor.isCanceled())) {
+						RefreshModulesHandler.this.schedule();
+					}
+				}
 			}
 
-			return Status.OK_STATUS;
+			return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
 		}
 	}
 
-}
\ No newline at end of file
+}
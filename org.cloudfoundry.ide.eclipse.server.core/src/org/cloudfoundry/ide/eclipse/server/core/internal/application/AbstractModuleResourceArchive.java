@@ -77,10 +77,28 @@ public abstract class AbstractModuleResourceArchive implements ApplicationArchiv
 		if (entries == null) {
 			entries = new ArrayList<ApplicationArchive.Entry>();
 			collectEntriesPriorToDeployment(entries, resources.toArray(new IModuleResource[0]));
+			computeDigests(entries);
 		}
 		return entries;
 	}
 
+	/**
+	 * Computes sha1 digests and sizes in parallel for all file entries that
+	 * require it, before the entries are requested by the CF client one by
+	 * one. Entries whose digests fail to be computed here will compute them
+	 * lazily when requested.
+	 * @param entries
+	 */
+	protected void computeDigests(List<Entry> entries) {
+		List<ModuleFileEntryAdapter> toDigest = new ArrayList<ModuleFileEntryAdapter>();
+		for (Entry entry : entries) {
+			if (entry instanceof ModuleFileEntryAdapter && ((ModuleFileEntryAdapter) entry).requiresDigest()) {
+				toDigest.add((ModuleFileEntryAdapter) entry);
+			}
+		}
+		ModuleResourceDigester.digest(toDigest);
+	}
+
 	protected List<IModuleResource> getModuleResources() {
 		return resources;
 	}
@@ -160,10 +178,13 @@ public abstract class AbstractModuleResourceArchive implements ApplicationArchiv
 	 * module resource file.
 	 * 
 	 */
-	public abstract class ModuleFileEntryAdapter extends AbstractModuleResourceEntryAdapter {
+	public abstract class ModuleFileEntryAdapter extends AbstractModuleResourceEntryAdapter implements
+			ModuleResourceDigester.DigestTarget {
 
 		protected final File file;
 
+		private volatile boolean digestComputed;
+
 		public ModuleFileEntryAdapter(IModuleFile moduleResource) {
 			super(moduleResource);
 			file = getFile(moduleResource);
@@ -192,6 +213,26 @@ public abstract class AbstractModuleResourceArchive implements ApplicationArchiv
 			return file != null && file.exists();
 		}
 
+		public File getFile() {
+			return file;
+		}
+
+		public void setDigest(ModuleResourceDigester.Digest digest) {
+			setSha1Digest(digest.getSha1());
+			setSize(digest.getSize());
+			digestComputed = true;
+		}
+
+		/**
+		 * 
+		 * @return true if the sha1 digest of this entry should be computed
+		 * when the archive entries are collected. False if the digest is
+		 * already known or cannot be computed.
+		 */
+		protected boolean requiresDigest() {
+			return !digestComputed && canComputeResourceEntry();
+		}
+
 		public InputStream getInputStream() throws IOException {
 
 			if (canComputeResourceEntry()) {
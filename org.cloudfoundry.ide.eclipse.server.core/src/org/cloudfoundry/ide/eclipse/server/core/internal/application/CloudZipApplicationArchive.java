@@ -19,11 +19,13 @@
  ********************************************************************************/
 package org.cloudfoundry.ide.eclipse.server.core.internal.application;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.zip.ZipFile;
 
 import org.cloudfoundry.client.lib.archive.ZipApplicationArchive;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudErrorUtil;
+import org.cloudfoundry.ide.eclipse.server.core.internal.CloudFoundryPlugin;
 import org.eclipse.core.runtime.CoreException;
 
 public class CloudZipApplicationArchive extends ZipApplicationArchive implements
@@ -31,19 +33,38 @@ public class CloudZipApplicationArchive extends ZipApplicationArchive implements
 
 	protected final ZipFile zipFile;
 
+	private boolean closed;
+
 	public CloudZipApplicationArchive(ZipFile zipFile) {
 		super(zipFile);
 		this.zipFile = zipFile;
 	}
 
+	/**
+	 * Closes the archive. Closing it again has no effect, so that the staging
+	 * folder of the archive is not released again once it was reused for
+	 * another archive.
+	 */
 	@Override
-	public void close() throws CoreException {
+	public synchronized void close() throws CoreException {
+		if (closed) {
+			return;
+		}
+		closed = true;
 		try {
 			if (zipFile != null) {
 				zipFile.close();
 			}
 		} catch (IOException e) {
 			throw CloudErrorUtil.toCoreException(e);
+		} finally {
+			// Eagerly clean up the staging folder where the archive was
+			// built, if any. Archives outside the staging area are not
+			// affected.
+			if (zipFile != null && CloudFoundryPlugin.getDefault() != null) {
+				CloudFoundryPlugin.getDefault().getArchiveStagingArea()
+						.release(new File(zipFile.getName()));
+			}
 		}
 	}
 }
@@ -204,8 +204,9 @@ public class JavaWebApplicationDelegate extends AbstractApplicationDelegate {
 		if (manifestArchive != null) {
 			return manifestArchive;
 		}
+		File warFile = null;
 		try {
-			File warFile = CloudUtil.createWarFile(new IModule[] { module.getLocalModule() },
+			warFile = CloudUtil.createWarFile(new IModule[] { module.getLocalModule() },
 					(Server) cloudServer.getServer(), monitor);
 
 			CloudFoundryPlugin.trace("War file " + warFile.getName() + " created"); //$NON-NLS-1$ //$NON-NLS-2$
@@ -213,6 +214,9 @@ public class JavaWebApplicationDelegate extends AbstractApplicationDelegate {
 			return new CloudZipApplicationArchive(new ZipFile(warFile));
 		}
 		catch (Exception e) {
+			// Release the staging folder of a war file that could not be
+			// opened
+			CloudUtil.releaseTemporaryFile(warFile);
 			throw new CoreException(new Status(IStatus.ERROR, CloudFoundryPlugin.PLUGIN_ID,
 					"Failed to create war file. " + //$NON-NLS-1$
 							"\nApplication: " + module.getApplication().getName() + //$NON-NLS-1$
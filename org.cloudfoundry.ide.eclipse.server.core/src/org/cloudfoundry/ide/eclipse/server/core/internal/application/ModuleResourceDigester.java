@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal.application;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cloudfoundry.ide.eclipse.server.core.internal.CloudFoundryPlugin;
+
+/**
+ * Computes sha1 digests and sizes of application files in parallel, so that
+ * resource matching for large applications is not bound to a single thread.
+ * Files are hashed in a shared, bounded thread pool sized to the number of
+ * available processors, and each pool thread reuses its own
+ * {@link MessageDigest} and read buffer.
+ * <p/>
+ * Small batches are hashed in the calling thread, as the overhead of
+ * dispatching them to the pool outweighs any gain.
+ */
+public class ModuleResourceDigester {
+
+	/**
+	 * Batches smaller than this are hashed in the calling thread.
+	 */
+	public static final int MIN_PARALLEL_BATCH = 16;
+
+	private static final int MAX_THREADS = 16;
+
+	private static final int BUFFER_SIZE = 65536;
+
+	private static final String SHA1 = "SHA-1"; //$NON-NLS-1$
+
+	private static ExecutorService executor;
+
+	private static final ThreadLocal<MessageDigest> DIGEST = new ThreadLocal<MessageDigest>() {
+		@Override
+		protected MessageDigest initialValue() {
+			try {
+				return MessageDigest.getInstance(SHA1);
+			}
+			catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	};
+
+	private static final ThreadLocal<byte[]> BUFFER = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[BUFFER_SIZE];
+		}
+	};
+
+	/**
+	 * Result of hashing a single file.
+	 */
+	public static class Digest {
+
+		private final byte[] sha1;
+
+		private final long size;
+
+		public Digest(byte[] sha1, long size) {
+			this.sha1 = sha1;
+			this.size = size;
+		}
+
+		public byte[] getSha1() {
+			return sha1;
+		}
+
+		public long getSize() {
+			return size;
+		}
+	}
+
+	/**
+	 * Receives the result of hashing a file.
+	 */
+	public interface DigestTarget {
+
+		/**
+		 * @return file to hash. Must not be null.
+		 */
+		public File getFile();
+
+		/**
+		 * Invoked with the digest of the file. May be invoked from a pool
+		 * thread.
+		 */
+		public void setDigest(Digest digest);
+
+	}
+
+	/**
+	 * Hashes the files of all the given targets, and blocks until all are
+	 * complete. Targets whose files fail to be hashed are skipped and errors
+	 * logged, so that their digests can still be computed lazily.
+	 * @param targets
+	 */
+	public static void digest(List<? extends DigestTarget> targets) {
+		if (targets == null || targets.isEmpty()) {
+			return;
+		}
+
+		if (targets.size() < MIN_PARALLEL_BATCH || getThreadCount() < 2) {
+			for (DigestTarget target : targets) {
+				digestTarget(target);
+			}
+			return;
+		}
+
+		List<Future<?>> futures = new ArrayList<Future<?>>(targets.size());
+		ExecutorService service = getExecutor();
+		for (final DigestTarget target : targets) {
+			futures.add(service.submit(new Callable<Void>() {
+				public Void call() throws Exception {
+					digestTarget(target);
+					return null;
+				}
+			}));
+		}
+
+		boolean interrupted = false;
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			}
+			catch (InterruptedException e) {
+				interrupted = true;
+				break;
+			}
+			catch (ExecutionException e) {
+				CloudFoundryPlugin.logError(e.getCause());
+			}
+		}
+		if (interrupted) {
+			// Remaining files will be hashed lazily
+			for (Future<?> future : futures) {
+				future.cancel(false);
+			}
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Hashes the given file in the current thread, reusing the thread's
+	 * digest and buffer.
+	 * @param file
+	 * @return digest of the file. Never null.
+	 * @throws IOException if failed to read the file
+	 */
+	public static Digest digest(File file) throws IOException {
+		MessageDigest digest = DIGEST.get();
+		byte[] buffer = BUFFER.get();
+		digest.reset();
+		long size = 0;
+		InputStream in = new FileInputStream(file);
+		try {
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+				size += read;
+			}
+		}
+		finally {
+			in.close();
+		}
+		return new Digest(digest.digest(), size);
+	}
+
+	private static void digestTarget(DigestTarget target) {
+		try {
+			target.setDigest(digest(target.getFile()));
+		}
+		catch (IOException e) {
+			CloudFoundryPlugin.logError("Failed to compute sha1 for " + target.getFile(), e); //$NON-NLS-1$
+		}
+	}
+
+	private static int getThreadCount() {
+		return Math.min(Runtime.getRuntime().availableProcessors(), MAX_THREADS);
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			final AtomicInteger count = new AtomicInteger();
+			executor = Executors.newFixedThreadPool(getThreadCount(), new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "Cloud Foundry resource digester " + count.incrementAndGet()); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+
+	/**
+	 * Stops the shared thread pool. A new pool is created if further digests
+	 * are requested.
+	 */
+	public static synchronized void shutdown() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+}
@@ -19,10 +19,14 @@
  ********************************************************************************/
 package org.cloudfoundry.ide.eclipse.server.core.internal.client;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
 import org.cloudfoundry.ide.eclipse.server.core.ICloudFoundryApplicationModule;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudErrorUtil;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudFoundryPlugin;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudFoundryServer;
+import org.cloudfoundry.ide.eclipse.server.core.internal.Messages;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
@@ -85,6 +89,15 @@ public abstract class AbstractPublishApplicationOperation extends BehaviourOpera
 	@Override
 	public void run(IProgressMonitor monitor) throws CoreException {
 
+		// Operations on the same application, for example from a batch
+		// deployment and a publish, run one after the other
+		ReentrantLock applicationLock = getBehaviour().getApplicationLock(getModule());
+		if (!lock(applicationLock, monitor)) {
+			CloudFoundryPlugin.logWarning(NLS.bind(Messages.AbstractPublishApplicationOperation_CANCELED_WAITING_FOR_LOCK,
+					getOperationName(), getModule().getName()));
+			return;
+		}
+
 		try {
 			doApplicationOperation(monitor);
 			getBehaviour().getRefreshHandler().scheduleRefreshForDeploymentChange(getModule());
@@ -101,7 +114,31 @@ public abstract class AbstractPublishApplicationOperation extends BehaviourOpera
 			// Record the canceled operation 'description' to the log file.
 			CloudFoundryPlugin.logWarning(e.getMessage());
 		}
+		finally {
+			applicationLock.unlock();
+		}
+
+	}
 
+	/**
+	 * Acquires the given lock, checking the monitor for cancellation while
+	 * waiting.
+	 * @return true if the lock was acquired, false if the monitor was
+	 * cancelled or the thread interrupted.
+	 */
+	protected static boolean lock(ReentrantLock lock, IProgressMonitor monitor) {
+		try {
+			while (!lock.tryLock(CancellableWait.CANCEL_CHECK_INTERVAL, TimeUnit.MILLISECONDS)) {
+				if (monitor != null && monitor.isCanceled()) {
+					return false;
+				}
+			}
+			return true;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
 	}
 
 	protected abstract void doApplicationOperation(IProgressMonitor monitor) throws CoreException;
@@ -107,11 +107,9 @@ public abstract class AbstractWaitWithProgressJob<T> {
 			}
 
 			if (reattempt) {
-				try {
-					Thread.sleep(sleepTime);
-				}
-				catch (InterruptedException e) {
-					// Ignore and proceed
+				if (!CancellableWait.waitFor(sleepTime, monitor)) {
+					// Cancelled while waiting
+					break;
 				}
 			}
 			else {
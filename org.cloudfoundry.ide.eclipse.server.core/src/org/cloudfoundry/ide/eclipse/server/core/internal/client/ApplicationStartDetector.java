@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal.client;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.cloudfoundry.client.lib.ApplicationLogListener;
+import org.cloudfoundry.client.lib.CloudFoundryOperations;
+import org.cloudfoundry.client.lib.domain.ApplicationLog;
+import org.cloudfoundry.client.lib.domain.CloudApplication;
+import org.cloudfoundry.client.lib.domain.CloudApplication.AppState;
+import org.cloudfoundry.ide.eclipse.server.core.internal.CloudFoundryPlugin;
+import org.cloudfoundry.ide.eclipse.server.core.internal.Messages;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+/**
+ * Detects when an application has started after a start request.
+ * <p/>
+ * The application state is polled right away, at intervals that start short
+ * and grow while the application is still starting, so fast starting
+ * applications are detected without delay, and slow starting ones do not
+ * cause a flood of requests.
+ * <p/>
+ * The detector can also be registered as a listener of the application logs.
+ * A log message of the Cloud Foundry runtime reporting that an instance has
+ * started completes the wait early, without waiting for the next poll.
+ * Components that learn about the start through other means can call
+ * {@link #signalStarted()}.
+ */
+public class ApplicationStartDetector implements ApplicationLogListener {
+
+	public static final long INITIAL_INTERVAL = 250;
+
+	public static final long MAX_INTERVAL = 2000;
+
+	/**
+	 * Runtime components whose log messages report the state of application
+	 * instances, as opposed to the application output itself, or the API
+	 * reporting the requested state
+	 */
+	private static final Pattern RUNTIME_SOURCES = Pattern.compile("DEA|CELL|HEALTH", Pattern.CASE_INSENSITIVE); //$NON-NLS-1$
+
+	private static final Pattern STARTED_MESSAGE = Pattern.compile("\\bstarted\\b|became healthy", //$NON-NLS-1$
+			Pattern.CASE_INSENSITIVE);
+
+	private final String appName;
+
+	private final CountDownLatch started = new CountDownLatch(1);
+
+	/**
+	 * 
+	 * @param appName deployed name of the application to detect the start of
+	 */
+	public ApplicationStartDetector(String appName) {
+		this.appName = appName;
+	}
+
+	/**
+	 * Completes any current or future wait for the application start.
+	 */
+	public void signalStarted() {
+		started.countDown();
+	}
+
+	/**
+	 * 
+	 * @return true if the start of the application was signalled
+	 */
+	public boolean isStartSignalled() {
+		return started.getCount() == 0;
+	}
+
+	/**
+	 * Waits until the application is started, or the given timeout expires.
+	 * @param client
+	 * @param timeout in milliseconds
+	 * @param monitor
+	 * @return true if the application started, false if the timeout expired
+	 * @throws InterruptedException if interrupted while waiting
+	 * @throws OperationCanceledException if the monitor is cancelled while
+	 * waiting
+	 */
+	public boolean waitForStart(CloudFoundryOperations client, long timeout, IProgressMonitor monitor)
+			throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeout;
+		long interval = INITIAL_INTERVAL;
+		while (true) {
+			if (isStartSignalled() || isApplicationReady(client.getApplication(appName))) {
+				return true;
+			}
+			if (monitor != null && monitor.isCanceled()) {
+				throw new OperationCanceledException(Messages.bind(Messages.OPERATION_CANCELED, appName));
+			}
+			long timeLeft = deadline - System.currentTimeMillis();
+			if (timeLeft <= 0) {
+				return false;
+			}
+			if (started.await(Math.min(interval, timeLeft), TimeUnit.MILLISECONDS)) {
+				return true;
+			}
+			interval = getNextInterval(interval);
+		}
+	}
+
+	/**
+	 * The state of an application is the state requested by the user, which
+	 * is started as soon as the start request returns, so an application is
+	 * only ready once at least one of its instances is running.
+	 * @param application
+	 * @return true if the application is started and has a running instance
+	 */
+	protected boolean isApplicationReady(CloudApplication application) {
+		return application != null && AppState.STARTED.equals(application.getState())
+				&& application.getRunningInstances() > 0;
+	}
+
+	protected static long getNextInterval(long interval) {
+		return Math.min(interval * 2, MAX_INTERVAL);
+	}
+
+	/**
+	 * 
+	 * @param log
+	 * @return true if the given log message reports that an instance of the
+	 * application has started.
+	 */
+	protected boolean isStartedMessage(ApplicationLog log) {
+		return log != null && log.getSourceName() != null && log.getMessage() != null
+				&& RUNTIME_SOURCES.matcher(log.getSourceName()).matches()
+				&& STARTED_MESSAGE.matcher(log.getMessage()).find();
+	}
+
+	public void onMessage(ApplicationLog log) {
+		if (!isStartSignalled() && isStartedMessage(log)) {
+			CloudFoundryPlugin.trace("Application " + appName + " start detected in logs"); //$NON-NLS-1$ //$NON-NLS-2$
+			signalStarted();
+		}
+	}
+
+	public void onComplete() {
+		// Polling continues until the application is started
+	}
+
+	public void onError(Throwable exception) {
+		// Polling continues until the application is started
+	}
+}
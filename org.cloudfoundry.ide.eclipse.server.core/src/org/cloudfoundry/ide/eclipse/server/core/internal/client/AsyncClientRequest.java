@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal.client;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.cloudfoundry.ide.eclipse.server.core.internal.CloudErrorUtil;
+import org.cloudfoundry.ide.eclipse.server.core.internal.Messages;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+/**
+ * Handle to a {@link BaseClientRequest} that was submitted to the
+ * {@link ClientRequestExecutor} and runs asynchronously. The result of the
+ * request is obtained by joining it.
+ * <p/>
+ * The request runs with its own progress monitor, as progress monitors are
+ * generally not thread safe. Cancelling the request cancels that monitor,
+ * which stops further reattempts of the request.
+ * 
+ * @param <T> type of the result of the request
+ */
+public class AsyncClientRequest<T> {
+
+	/**
+	 * Interval in milliseconds at which a joining thread checks its monitor
+	 * for cancellation.
+	 */
+	private static final long JOIN_POLL_INTERVAL = 100;
+
+	private final BaseClientRequest<T> request;
+
+	private final IProgressMonitor requestMonitor = new NullProgressMonitor();
+
+	private Future<T> future;
+
+	AsyncClientRequest(BaseClientRequest<T> request) {
+		this.request = request;
+	}
+
+	void setFuture(Future<T> future) {
+		this.future = future;
+	}
+
+	/**
+	 * Runs the request in the current thread.
+	 */
+	T runRequest() throws CoreException {
+		return request.run(requestMonitor);
+	}
+
+	public String getRequestLabel() {
+		return request.getRequestLabel();
+	}
+
+	/**
+	 * Waits for the request to complete. If the given monitor is cancelled
+	 * while waiting, the request is cancelled as well.
+	 * @param monitor may be null
+	 * @return result of the request
+	 * @throws CoreException if the request failed
+	 * @throws OperationCanceledException if the request or the given monitor
+	 * was cancelled
+	 */
+	public T join(IProgressMonitor monitor) throws CoreException, OperationCanceledException {
+		while (true) {
+			if (monitor != null && monitor.isCanceled()) {
+				cancel();
+			}
+			try {
+				return future.get(JOIN_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+			}
+			catch (TimeoutException e) {
+				// Check for cancellation again
+			}
+			catch (InterruptedException e) {
+				cancel();
+				Thread.currentThread().interrupt();
+				throw new OperationCanceledException(Messages.bind(Messages.OPERATION_CANCELED, getRequestLabel()));
+			}
+			catch (CancellationException e) {
+				throw new OperationCanceledException(Messages.bind(Messages.OPERATION_CANCELED, getRequestLabel()));
+			}
+			catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof CoreException) {
+					throw (CoreException) cause;
+				}
+				else if (cause instanceof OperationCanceledException) {
+					throw (OperationCanceledException) cause;
+				}
+				throw CloudErrorUtil.toCoreException(cause);
+			}
+		}
+	}
+
+	/**
+	 * Cancels the request. A request that has not started yet is not run. A
+	 * request that is running is not reattempted further.
+	 */
+	public void cancel() {
+		requestMonitor.setCanceled(true);
+		future.cancel(true);
+	}
+
+	public boolean isDone() {
+		return future.isDone();
+	}
+}
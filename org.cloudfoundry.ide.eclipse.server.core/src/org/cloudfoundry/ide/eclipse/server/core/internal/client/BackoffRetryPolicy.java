@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal.client;
+
+import java.util.Random;
+
+/**
+ * Retries a request with exponentially increasing delays, until a maximum
+ * number of attempts is reached or a budget of waiting time is spent.
+ * <p/>
+ * Delays are randomly shortened by up to the jitter fraction, so that
+ * requests that failed at the same time, for example because the Cloud
+ * controller was busy, do not all retry at the same time again.
+ * <p/>
+ * This policy retries on any error. Use a {@link ErrorClassRetryPolicy} to only
+ * retry on particular errors. Policies are immutable, so they may be shared.
+ */
+public class BackoffRetryPolicy extends RetryPolicy {
+
+	public static final double DEFAULT_MULTIPLIER = 2;
+
+	public static final double DEFAULT_JITTER = 0.5;
+
+	private static final Random RANDOM = new Random();
+
+	private final long initialDelay;
+
+	private final long maxDelay;
+
+	private final int maxAttempts;
+
+	private final long timeBudget;
+
+	private final double multiplier;
+
+	private final double jitter;
+
+	/**
+	 * Creates a policy with the default multiplier and jitter.
+	 * @see #BackoffRetryPolicy(long, long, int, long, double, double)
+	 */
+	public BackoffRetryPolicy(long initialDelay, long maxDelay, int maxAttempts, long timeBudget) {
+		this(initialDelay, maxDelay, maxAttempts, timeBudget, DEFAULT_MULTIPLIER, DEFAULT_JITTER);
+	}
+
+	/**
+	 * 
+	 * @param initialDelay delay in milliseconds before the second attempt,
+	 * before jitter is applied.
+	 * @param maxDelay maximum delay in milliseconds between two attempts
+	 * @param maxAttempts maximum number of attempts, including the first one.
+	 * If 0 or less, the number of attempts is not limited.
+	 * @param timeBudget maximum total time in milliseconds to wait between
+	 * attempts. If 0 or less, the waiting time is not limited.
+	 * @param multiplier factor by which the delay grows after each attempt.
+	 * Values less than 1 are treated as 1.
+	 * @param jitter fraction, between 0 and 1, by which a delay may randomly
+	 * be shortened. If 0, delays are not randomised.
+	 */
+	public BackoffRetryPolicy(long initialDelay, long maxDelay, int maxAttempts, long timeBudget,
+			double multiplier, double jitter) {
+		this.initialDelay = initialDelay;
+		this.maxDelay = maxDelay;
+		this.maxAttempts = maxAttempts;
+		this.timeBudget = timeBudget;
+		this.multiplier = Math.max(1, multiplier);
+		this.jitter = Math.min(1, Math.max(0, jitter));
+	}
+
+	@Override
+	public long getDelay(Throwable error, int attempts, long waited) {
+		if (maxAttempts > 0 && attempts >= maxAttempts) {
+			return -1;
+		}
+
+		long delay = getBackoff(attempts);
+		delay -= (long) (delay * jitter * nextRandom());
+
+		if (timeBudget > 0) {
+			long remaining = timeBudget - waited;
+			if (remaining <= 0) {
+				return -1;
+			}
+			delay = Math.min(delay, remaining);
+		}
+		return Math.max(1, delay);
+	}
+
+	/**
+	 * 
+	 * @param attempts number of attempts made so far
+	 * @return delay before the next attempt, before jitter is applied
+	 */
+	protected long getBackoff(int attempts) {
+		double delay = initialDelay;
+		for (int i = 1; i < attempts && delay < maxDelay; i++) {
+			delay *= multiplier;
+		}
+		return (long) Math.min(delay, maxDelay);
+	}
+
+	/**
+	 * 
+	 * @return random value between 0 (inclusive) and 1 (exclusive)
+	 */
+	protected double nextRandom() {
+		return RANDOM.nextDouble();
+	}
+}
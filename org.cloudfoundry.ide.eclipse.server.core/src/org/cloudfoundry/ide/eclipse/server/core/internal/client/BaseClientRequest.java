@@ -101,12 +101,13 @@ public abstract class BaseClientRequest<T> {
 	/**
 	 * Performs a client operation, and if necessary, re-attempts the operation
 	 * after a certain interval IFF an error occurs based on
-	 * {@link #getTotalTimeWait()} and
-	 * {@link #getWaitInterval(Throwable, SubMonitor)}.
+	 * {@link #getTotalTimeWait()} and {@link #getRetryPolicy()}, or
+	 * {@link #getWaitInterval(Throwable, SubMonitor)} if there is no retry
+	 * policy.
 	 * <p/>
 	 * The default behaviour is to only attempt a client operation once and quit
 	 * after an error is encountered. Subclasses may modify this behaviour by
-	 * overriding {@link #getTotalTimeWait()} and
+	 * overriding {@link #getTotalTimeWait()} and {@link #getRetryPolicy()} or
 	 * {@link #getWaitInterval(Throwable, SubMonitor)}
 	 * <p/>
 	 * Note that reattempts are only decided based on errors thrown by the
@@ -126,6 +127,9 @@ public abstract class BaseClientRequest<T> {
 
 		boolean reattempt = true;
 		long timeLeft = getTotalTimeWait();
+		RetryPolicy retryPolicy = getRetryPolicy();
+		int attempts = 0;
+		long waited = 0;
 
 		// Either this operation returns a result during the waiting period or
 		// an error occurred, and error
@@ -136,23 +140,22 @@ public abstract class BaseClientRequest<T> {
 			long interval = -1;
 
 			try {
+				attempts++;
 				return doRun(client, subProgress);
 			}
 			catch (Throwable e) {
 				error = e;
 			}
 
-			interval = getWaitInterval(error, subProgress);
+			interval = retryPolicy != null ? retryPolicy.getDelay(error, attempts, waited) : getWaitInterval(error,
+					subProgress);
 			timeLeft -= interval;
 			reattempt = !subProgress.isCanceled() && timeLeft >= 0 && interval > 0;
 			if (reattempt) {
+				waited += interval;
 
-				try {
-					Thread.sleep(interval);
-				}
-				catch (InterruptedException e) {
-					// Ignore, continue with the next iteration
-				}
+				// Stops waiting as soon as the request is cancelled
+				reattempt = CancellableWait.waitFor(interval, subProgress);
 			}
 		}
 
@@ -168,6 +171,21 @@ public abstract class BaseClientRequest<T> {
 		}
 	}
 
+	/**
+	 * Policy deciding if and when the operation is attempted again after an
+	 * error, within the total time given by {@link #getTotalTimeWait()}.
+	 * <p/>
+	 * By default it returns null, in which case reattempts are decided by
+	 * {@link #getWaitInterval(Throwable, SubMonitor)}. Subclasses that reattempt
+	 * operations should prefer a policy with backoff and jitter, so that
+	 * concurrent requests failing on the same error do not retry in lockstep.
+	 * @return retry policy, or null if reattempts are decided by
+	 * {@link #getWaitInterval(Throwable, SubMonitor)}
+	 */
+	protected RetryPolicy getRetryPolicy() {
+		return null;
+	}
+
 	/**
 	 * Given an error, determine how long the operation should wait before
 	 * trying again before timeout is reached. In order for attempt to be tried
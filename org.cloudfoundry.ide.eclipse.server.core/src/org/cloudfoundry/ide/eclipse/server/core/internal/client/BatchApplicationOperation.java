@@ -0,0 +1,355 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal.client;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cloudfoundry.ide.eclipse.server.core.internal.CloudErrorUtil;
+import org.cloudfoundry.ide.eclipse.server.core.internal.CloudFoundryPlugin;
+import org.cloudfoundry.ide.eclipse.server.core.internal.Messages;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * Runs the operations of several applications, like pushing or restarting a
+ * selection of applications, at the same time. Archiving and uploading one
+ * application then no longer waits for the others.
+ * <p/>
+ * Operations added for the same application run one after the other, in the
+ * order they were added, so the state transitions of an application are never
+ * interleaved. Operations of different applications run in parallel, up to
+ * the given concurrency.
+ * <p/>
+ * Progress of all operations is combined in the monitor the batch runs with.
+ * Operations only report to their own monitor, which is forwarded to the
+ * batch monitor by the thread running the batch, so the batch monitor is
+ * never accessed concurrently. An operation that fails does not stop the
+ * others. The errors of all failed operations are reported once all
+ * operations have completed.
+ */
+public class BatchApplicationOperation implements ICloudFoundryOperation {
+
+	private static final int TICKS_PER_OPERATION = 100;
+
+	private static final AtomicInteger threadCount = new AtomicInteger();
+
+	private final Map<String, List<ICloudFoundryOperation>> operations = new LinkedHashMap<String, List<ICloudFoundryOperation>>();
+
+	private final int concurrency;
+
+	private final String label;
+
+	/**
+	 *
+	 * @param label shown in the progress monitor
+	 * @param concurrency maximum number of applications whose operations run
+	 * at the same time. Operations run one at a time if less than 1.
+	 */
+	public BatchApplicationOperation(String label, int concurrency) {
+		this.label = label;
+		this.concurrency = Math.max(1, concurrency);
+	}
+
+	/**
+	 * Adds an operation for the given application. Operations for the same
+	 * application run sequentially, in the order they are added.
+	 * @param applicationId identifies the application the operation changes,
+	 * like the ID of its module
+	 * @param operation
+	 */
+	public void add(String applicationId, ICloudFoundryOperation operation) {
+		List<ICloudFoundryOperation> appOperations = operations.get(applicationId);
+		if (appOperations == null) {
+			appOperations = new ArrayList<ICloudFoundryOperation>();
+			operations.put(applicationId, appOperations);
+		}
+		appOperations.add(operation);
+	}
+
+	public int getConcurrency() {
+		return concurrency;
+	}
+
+	public void run(IProgressMonitor monitor) throws CoreException {
+		List<OperationProgress> progressList = new ArrayList<OperationProgress>();
+		for (List<ICloudFoundryOperation> appOperations : operations.values()) {
+			for (int i = 0; i < appOperations.size(); i++) {
+				progressList.add(new OperationProgress());
+			}
+		}
+		if (progressList.isEmpty()) {
+			return;
+		}
+
+		SubMonitor progress = SubMonitor.convert(monitor, label, progressList.size() * TICKS_PER_OPERATION);
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, operations.size()),
+				new ThreadFactory() {
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "Cloud Foundry deployment " + threadCount.incrementAndGet()); //$NON-NLS-1$
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+
+		List<Future<List<IStatus>>> futures = new ArrayList<Future<List<IStatus>>>();
+		int index = 0;
+		try {
+			for (List<ICloudFoundryOperation> appOperations : operations.values()) {
+				List<OperationProgress> appProgress = progressList.subList(index, index + appOperations.size());
+				futures.add(executor.submit(new ApplicationTask(appOperations, appProgress)));
+				index += appOperations.size();
+			}
+
+			List<IStatus> errors = new ArrayList<IStatus>();
+			int reported = 0;
+			for (Future<List<IStatus>> future : futures) {
+				while (true) {
+					reported = reportProgress(progressList, reported, progress);
+					if (progress.isCanceled()) {
+						throw new OperationCanceledException();
+					}
+					try {
+						errors.addAll(future.get(CancellableWait.CANCEL_CHECK_INTERVAL, TimeUnit.MILLISECONDS));
+						break;
+					}
+					catch (TimeoutException e) {
+						// Report progress and check for cancellation again
+					}
+					catch (ExecutionException e) {
+						errors.add(toStatus(e.getCause()));
+						break;
+					}
+					catch (CancellationException e) {
+						break;
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new OperationCanceledException();
+					}
+				}
+			}
+			reportProgress(progressList, reported, progress);
+
+			if (errors.size() == 1) {
+				throw new CoreException(errors.get(0));
+			}
+			else if (errors.size() > 1) {
+				throw new CoreException(new MultiStatus(CloudFoundryPlugin.PLUGIN_ID, 0,
+						errors.toArray(new IStatus[0]), NLS.bind(Messages.BatchApplicationOperation_OPERATIONS_FAILED,
+								errors.size(), progressList.size()), null));
+			}
+		}
+		finally {
+			// Operations in progress are cancelled through their monitor.
+			// Operations that have not started yet are not run.
+			for (OperationProgress operationProgress : progressList) {
+				operationProgress.setCanceled(true);
+			}
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Forwards the work done by all operations since the last report, and the
+	 * most recent subtask, to the batch monitor.
+	 * @return total ticks reported so far
+	 */
+	protected int reportProgress(List<OperationProgress> progressList, int reported, SubMonitor progress) {
+		int total = 0;
+		String subTask = null;
+		long lastUpdate = -1;
+		for (OperationProgress operationProgress : progressList) {
+			total += operationProgress.getTicks(TICKS_PER_OPERATION);
+			if (operationProgress.getLastUpdate() > lastUpdate && operationProgress.getSubTask() != null) {
+				lastUpdate = operationProgress.getLastUpdate();
+				subTask = operationProgress.getSubTask();
+			}
+		}
+		if (subTask != null) {
+			progress.subTask(subTask);
+		}
+		if (total > reported) {
+			progress.worked(total - reported);
+		}
+		return Math.max(total, reported);
+	}
+
+	protected static IStatus toStatus(Throwable error) {
+		if (error instanceof CoreException) {
+			return ((CoreException) error).getStatus();
+		}
+		return CloudErrorUtil.toCoreException(error).getStatus();
+	}
+
+	/**
+	 * Runs the operations of one application in sequence, and collects their
+	 * errors.
+	 */
+	private static class ApplicationTask implements Callable<List<IStatus>> {
+
+		private final List<ICloudFoundryOperation> appOperations;
+
+		private final List<OperationProgress> appProgress;
+
+		ApplicationTask(List<ICloudFoundryOperation> appOperations, List<OperationProgress> appProgress) {
+			this.appOperations = appOperations;
+			this.appProgress = appProgress;
+		}
+
+		public List<IStatus> call() {
+			List<IStatus> errors = new ArrayList<IStatus>();
+			for (int i = 0; i < appOperations.size(); i++) {
+				OperationProgress operationProgress = appProgress.get(i);
+				if (operationProgress.isCanceled()) {
+					break;
+				}
+				try {
+					appOperations.get(i).run(operationProgress);
+				}
+				catch (CoreException e) {
+					errors.add(e.getStatus());
+				}
+				catch (OperationCanceledException e) {
+					break;
+				}
+				catch (RuntimeException e) {
+					errors.add(toStatus(e));
+				}
+				finally {
+					operationProgress.done();
+				}
+			}
+			return errors;
+		}
+	}
+
+	/**
+	 * Monitor of a single operation. Records the work done by the operation,
+	 * which may report from any thread, until it is forwarded to the batch
+	 * monitor.
+	 */
+	protected static class OperationProgress extends NullProgressMonitor {
+
+		private static final AtomicInteger updates = new AtomicInteger();
+
+		private volatile boolean canceled;
+
+		private int totalWork = IProgressMonitor.UNKNOWN;
+
+		private double worked;
+
+		private boolean done;
+
+		private String subTask;
+
+		private long lastUpdate;
+
+		@Override
+		public synchronized void beginTask(String name, int totalWork) {
+			this.totalWork = totalWork;
+			if (name != null && name.length() > 0) {
+				setSubTask(name);
+			}
+		}
+
+		@Override
+		public synchronized void setTaskName(String name) {
+			setSubTask(name);
+		}
+
+		@Override
+		public synchronized void subTask(String name) {
+			setSubTask(name);
+		}
+
+		@Override
+		public void worked(int work) {
+			internalWorked(work);
+		}
+
+		@Override
+		public synchronized void internalWorked(double work) {
+			worked += work;
+		}
+
+		@Override
+		public synchronized void done() {
+			done = true;
+		}
+
+		@Override
+		public boolean isCanceled() {
+			return canceled;
+		}
+
+		@Override
+		public void setCanceled(boolean canceled) {
+			this.canceled = canceled;
+		}
+
+		/**
+		 *
+		 * @param ticks total ticks of the operation in the batch monitor
+		 * @return ticks of the work done so far
+		 */
+		public synchronized int getTicks(int ticks) {
+			if (done) {
+				return ticks;
+			}
+			if (totalWork <= 0) {
+				return 0;
+			}
+			return (int) Math.min(ticks, worked * ticks / totalWork);
+		}
+
+		public synchronized String getSubTask() {
+			return subTask;
+		}
+
+		public synchronized long getLastUpdate() {
+			return lastUpdate;
+		}
+
+		private void setSubTask(String name) {
+			subTask = name;
+			lastUpdate = updates.incrementAndGet();
+		}
+	}
+}
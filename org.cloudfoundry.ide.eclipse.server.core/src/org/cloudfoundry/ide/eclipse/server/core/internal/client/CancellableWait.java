@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal.client;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+/**
+ * Waits between attempts of operations that are retried or polled, like
+ * waiting for an application file or agent to become available.
+ * <p/>
+ * The waiting thread still blocks for the waiting period, but checks the
+ * given progress monitor every {@link #CANCEL_CHECK_INTERVAL}, so that unlike
+ * a single sleep, the wait ends shortly after the monitor is cancelled rather
+ * than at the end of the waiting period.
+ */
+public class CancellableWait {
+
+	/**
+	 * Interval in milliseconds at which a waiting thread checks its monitor for
+	 * cancellation.
+	 */
+	public static final long CANCEL_CHECK_INTERVAL = 100;
+
+	private CancellableWait() {
+		// Util class
+	}
+
+	/**
+	 * Waits for the given time, or until the monitor is cancelled.
+	 * @param delay in milliseconds
+	 * @param monitor may be null
+	 * @return true if the full time elapsed, false if the monitor was
+	 * cancelled or the thread interrupted.
+	 */
+	public static boolean waitFor(long delay, IProgressMonitor monitor) {
+		long end = System.currentTimeMillis() + delay;
+		while (!isCanceled(monitor)) {
+			long remaining = end - System.currentTimeMillis();
+			if (remaining <= 0) {
+				return true;
+			}
+			try {
+				Thread.sleep(Math.min(remaining, CANCEL_CHECK_INTERVAL));
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Waits for the given future to complete. If the monitor is cancelled
+	 * while waiting, the future is cancelled as well.
+	 * @param future
+	 * @param monitor may be null
+	 * @return result of the future
+	 * @throws ExecutionException if the future completed with an error
+	 * @throws OperationCanceledException if the future or the monitor was
+	 * cancelled, or the thread interrupted.
+	 */
+	public static <T> T await(Future<T> future, IProgressMonitor monitor) throws ExecutionException,
+			OperationCanceledException {
+		while (true) {
+			if (isCanceled(monitor)) {
+				future.cancel(false);
+				throw new OperationCanceledException();
+			}
+			try {
+				return future.get(CANCEL_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+			}
+			catch (TimeoutException e) {
+				// Check for cancellation again
+			}
+			catch (InterruptedException e) {
+				future.cancel(false);
+				Thread.currentThread().interrupt();
+				throw new OperationCanceledException();
+			}
+			catch (CancellationException e) {
+				throw new OperationCanceledException();
+			}
+		}
+	}
+
+	protected static boolean isCanceled(IProgressMonitor monitor) {
+		return monitor != null && monitor.isCanceled();
+	}
+}
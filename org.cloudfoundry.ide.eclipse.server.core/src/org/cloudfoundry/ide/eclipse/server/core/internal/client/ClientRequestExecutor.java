@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal.client;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+/**
+ * Runs independent {@link BaseClientRequest}s in parallel in a shared, bounded
+ * thread pool, so that the round trips of requests that do not depend on
+ * each other overlap rather than add up.
+ * <p/>
+ * Requests submitted from a thread of the pool itself are run immediately in
+ * that thread, so that requests that in turn issue parallel requests cannot
+ * exhaust the pool and block each other.
+ */
+public class ClientRequestExecutor {
+
+	public static final int MAX_THREADS = 16;
+
+	/**
+	 * Time in seconds after which idle pool threads are stopped.
+	 */
+	private static final long KEEP_ALIVE = 60;
+
+	private static ExecutorService executor;
+
+	private static class RequestThread extends Thread {
+
+		RequestThread(Runnable runnable, String name) {
+			super(runnable, name);
+		}
+	}
+
+	/**
+	 * Submits the given request to run asynchronously.
+	 * @param request
+	 * @return handle to join the request. Never null.
+	 */
+	public static <T> AsyncClientRequest<T> submit(BaseClientRequest<T> request) {
+		final AsyncClientRequest<T> asyncRequest = new AsyncClientRequest<T>(request);
+		FutureTask<T> task = new FutureTask<T>(new Callable<T>() {
+			public T call() throws Exception {
+				return asyncRequest.runRequest();
+			}
+		});
+		asyncRequest.setFuture(task);
+		if (Thread.currentThread() instanceof RequestThread) {
+			task.run();
+		}
+		else {
+			getExecutor().execute(task);
+		}
+		return asyncRequest;
+	}
+
+	/**
+	 * Waits for all the given requests to complete. If any of the requests
+	 * fails, or the monitor is cancelled, all requests that have not completed
+	 * yet are cancelled.
+	 * @param requests
+	 * @param monitor may be null
+	 * @throws CoreException error of the first request that failed
+	 * @throws OperationCanceledException if the monitor or any of the requests
+	 * was cancelled
+	 */
+	public static void joinAll(List<? extends AsyncClientRequest<?>> requests, IProgressMonitor monitor)
+			throws CoreException, OperationCanceledException {
+		boolean completed = false;
+		try {
+			for (AsyncClientRequest<?> request : requests) {
+				request.join(monitor);
+			}
+			completed = true;
+		}
+		finally {
+			if (!completed) {
+				for (AsyncClientRequest<?> request : requests) {
+					request.cancel();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs the given requests in parallel, with at most the given number of
+	 * requests running at the same time, and waits for all of them to
+	 * complete. If any of the requests fails, or the monitor is cancelled, the
+	 * remaining requests are cancelled.
+	 * @param requests
+	 * @param maxConcurrent maximum number of requests running at the same
+	 * time. If less than 1, requests run one at a time.
+	 * @param monitor may be null
+	 * @return results of the requests, in the order of the requests
+	 * @throws CoreException error of the first request that failed
+	 * @throws OperationCanceledException if the monitor or any of the requests
+	 * was cancelled
+	 */
+	public static <T> List<T> runAll(List<? extends BaseClientRequest<T>> requests, int maxConcurrent,
+			IProgressMonitor monitor) throws CoreException, OperationCanceledException {
+		List<AsyncClientRequest<T>> submitted = new ArrayList<AsyncClientRequest<T>>(requests.size());
+		LinkedList<AsyncClientRequest<T>> running = new LinkedList<AsyncClientRequest<T>>();
+		boolean completed = false;
+		try {
+			for (BaseClientRequest<T> request : requests) {
+				if (running.size() >= Math.max(maxConcurrent, 1)) {
+					running.removeFirst().join(monitor);
+				}
+				AsyncClientRequest<T> asyncRequest = submit(request);
+				submitted.add(asyncRequest);
+				running.addLast(asyncRequest);
+			}
+
+			List<T> results = new ArrayList<T>(submitted.size());
+			for (AsyncClientRequest<T> asyncRequest : submitted) {
+				results.add(asyncRequest.join(monitor));
+			}
+			completed = true;
+			return results;
+		}
+		finally {
+			if (!completed) {
+				for (AsyncClientRequest<T> asyncRequest : submitted) {
+					asyncRequest.cancel();
+				}
+			}
+		}
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			final AtomicInteger count = new AtomicInteger();
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, KEEP_ALIVE, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+						public Thread newThread(Runnable runnable) {
+							Thread thread = new RequestThread(runnable, "Cloud Foundry request " + count.incrementAndGet()); //$NON-NLS-1$
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			pool.allowCoreThreadTimeOut(true);
+			executor = pool;
+		}
+		return executor;
+	}
+
+	/**
+	 * Stops the shared thread pool, and cancels requests that have not started
+	 * yet. A new pool is created if further requests are submitted.
+	 */
+	public static synchronized void shutdown() {
+		if (executor != null) {
+			for (Runnable task : executor.shutdownNow()) {
+				if (task instanceof FutureTask<?>) {
+					((FutureTask<?>) task).cancel(false);
+				}
+			}
+			executor = null;
+		}
+	}
+}
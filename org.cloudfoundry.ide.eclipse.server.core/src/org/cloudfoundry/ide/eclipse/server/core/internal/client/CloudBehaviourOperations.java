@@ -19,12 +19,20 @@
  ********************************************************************************/
 package org.cloudfoundry.ide.eclipse.server.core.internal.client;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.cloudfoundry.client.lib.domain.ApplicationStats;
 import org.cloudfoundry.client.lib.domain.CloudApplication;
+import org.cloudfoundry.client.lib.domain.CloudApplication.AppState;
 import org.cloudfoundry.client.lib.domain.CloudService;
+import org.cloudfoundry.client.lib.domain.InstancesInfo;
 import org.cloudfoundry.ide.eclipse.server.core.internal.ApplicationAction;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudErrorUtil;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudFoundryPlugin;
@@ -51,6 +59,25 @@ public class CloudBehaviourOperations {
 
 	public static String INTERNAL_ERROR_NO_WST_MODULE = "Internal Error: No WST IModule specified - Unable to deploy or start application"; //$NON-NLS-1$
 
+	/**
+	 * Maximum number of applications whose instances are refreshed at the
+	 * same time when refreshing all applications. 0 disables refreshing the
+	 * instances of all started applications.
+	 */
+	public static final String REFRESH_CONCURRENCY_PREFERENCE = CloudFoundryPlugin.PLUGIN_ID
+			+ ".refresh.concurrency"; //$NON-NLS-1$
+
+	public static final int DEFAULT_REFRESH_CONCURRENCY = 8;
+
+	/**
+	 * Maximum number of applications that are deployed, started or restarted
+	 * at the same time by a batch deployment.
+	 */
+	public static final String DEPLOYMENT_CONCURRENCY_PREFERENCE = CloudFoundryPlugin.PLUGIN_ID
+			+ ".deploy.concurrency"; //$NON-NLS-1$
+
+	public static final int DEFAULT_DEPLOYMENT_CONCURRENCY = 4;
+
 	private final CloudFoundryServerBehaviour behaviour;
 
 	public CloudBehaviourOperations(CloudFoundryServerBehaviour behaviour) {
@@ -231,8 +258,11 @@ public class CloudBehaviourOperations {
 			break;
 		case UPDATE_RESTART:
 			// Check the full publish preference to determine if full or
-			// incremental publish should be done when starting an application
-			operation = new StartOperation(behaviour, CloudFoundryPlugin.getDefault().getIncrementalPublish(), modules);
+			// incremental publish should be done when starting an application.
+			// The upload is skipped if the content has not changed since the
+			// last push.
+			operation = new StartOperation(behaviour, CloudFoundryPlugin.getDefault().getIncrementalPublish(),
+					true, modules);
 			break;
 		case PUSH:
 			operation = new PushApplicationOperation(behaviour, modules);
@@ -242,19 +272,75 @@ public class CloudBehaviourOperations {
 		if (operation == null) {
 			throw CloudErrorUtil.toCoreException("Internal Error: Unable to resolve a Cloud application operation."); //$NON-NLS-1$
 		}
+		// Poll at a short interval again, as the applications are about to
+		// change state
+		behaviour.getStatePoller().activity();
 		return operation;
 	}
 
+	/**
+	 * Resolves an {@link ICloudFoundryOperation} that performs the given
+	 * {@link ApplicationAction} for several applications at the same time, up
+	 * to the number of applications set in
+	 * {@link #DEPLOYMENT_CONCURRENCY_PREFERENCE}. Operations for the same
+	 * application are only performed once.
+	 * @param modules list of modules of each application
+	 * @param action
+	 * @return Non-null operation for all the given applications.
+	 * @throws CoreException if the operation of an application cannot be
+	 * resolved.
+	 * @see BatchApplicationOperation
+	 */
+	public ICloudFoundryOperation applicationDeployment(List<IModule[]> modules, ApplicationAction action)
+			throws CoreException {
+		if (modules == null || modules.isEmpty()) {
+			throw CloudErrorUtil.toCoreException(INTERNAL_ERROR_NO_WST_MODULE);
+		}
+		if (modules.size() == 1) {
+			return applicationDeployment(modules.get(0), action);
+		}
+
+		BatchApplicationOperation batch = new BatchApplicationOperation(NLS.bind(
+				Messages.CloudBehaviourOperations_DEPLOYING_APPLICATIONS, modules.size()), getDeploymentConcurrency());
+		Set<String> moduleIds = new HashSet<String>();
+		for (IModule[] appModules : modules) {
+			if (appModules == null || appModules.length == 0) {
+				throw CloudErrorUtil.toCoreException(INTERNAL_ERROR_NO_WST_MODULE);
+			}
+			String moduleId = appModules[0].getId();
+			if (moduleIds.add(moduleId)) {
+				batch.add(moduleId, applicationDeployment(appModules, action));
+			}
+		}
+		return batch;
+	}
+
 	/**
 	 * Refreshes all modules, services, and the instance info and stats for the
-	 * given optional module. If null is passed only the list of modules and
-	 * services is refreshed.
+	 * given optional module, as well as for all started applications unless
+	 * disabled through {@link #REFRESH_CONCURRENCY_PREFERENCE}. If null is
+	 * passed and the refresh of started applications is disabled, only the
+	 * list of modules and services is refreshed.
+	 * <p/>
+	 * Applications, services and application instances are fetched in
+	 * parallel, and all modules are updated with the results in a single pass.
 	 * <p/>
 	 * This may be a long running operation
 	 * @return Non-null operation
 	 */
 	public BehaviourOperation refreshAll(final IModule module) {
-		return new BehaviourOperation(behaviour, module) {
+		return refreshAll(module != null ? Collections.singletonList(module) : Collections.<IModule> emptyList());
+	}
+
+	/**
+	 * Refreshes all modules, services, and the instance info and stats for all
+	 * the given modules, in the same way as {@link #refreshAll(IModule)}.
+	 * @param modules modules whose instances are refreshed, even if their
+	 * application is not started. May be empty.
+	 * @return Non-null operation
+	 */
+	public BehaviourOperation refreshAll(final List<IModule> modules) {
+		return new BehaviourOperation(behaviour, modules.isEmpty() ? null : modules.get(0)) {
 
 			@Override
 			public void run(IProgressMonitor monitor) throws CoreException {
@@ -264,13 +350,44 @@ public class CloudBehaviourOperations {
 						NLS.bind(Messages.CloudBehaviourOperations_REFRESHING_APPS_AND_SERVICES, getBehaviour()
 								.getCloudFoundryServer().getServer().getId()), 100);
 
-				if (getModule() != null) {
-					getBehaviour().updateCloudModuleWithInstances(getModule(), subMonitor.newChild(40));
-				} else {
-					subMonitor.worked(40);
+				// Services are only needed once the modules are updated, so
+				// fetch them in parallel with the applications and their
+				// instances
+				AsyncClientRequest<List<CloudApplication>> applicationsRequest = ClientRequestExecutor
+						.submit(getBehaviour().getApplicationsRequest());
+				AsyncClientRequest<List<CloudService>> servicesRequest = ClientRequestExecutor.submit(getBehaviour()
+						.getServicesRequest());
+
+				List<CloudApplication> applications = null;
+				List<CloudService> services = null;
+				Map<String, ApplicationStats> applicationStats = new ConcurrentHashMap<String, ApplicationStats>();
+				Map<String, InstancesInfo> instancesInfo = new ConcurrentHashMap<String, InstancesInfo>();
+				try {
+					// Get updated list of cloud applications from the server
+					applications = applicationsRequest.join(subMonitor);
+					subMonitor.worked(20);
+
+					int concurrency = getRefreshConcurrency();
+					Set<String> moduleAppNames = getDeployedApplicationNames(modules);
+
+					List<BaseClientRequest<Void>> instancesRequests = new ArrayList<BaseClientRequest<Void>>();
+					for (CloudApplication application : applications) {
+						if (moduleAppNames.contains(application.getName())
+								|| (concurrency > 0 && application.getState() == AppState.STARTED)) {
+							instancesRequests.add(getBehaviour().getInstancesAndStatsRequest(application.getName(),
+									applicationStats, instancesInfo));
+						}
+					}
+					ClientRequestExecutor.runAll(instancesRequests, concurrency, subMonitor.newChild(40));
+
+					services = servicesRequest.join(subMonitor);
+				}
+				finally {
+					if (services == null) {
+						applicationsRequest.cancel();
+						servicesRequest.cancel();
+					}
 				}
-				// Get updated list of cloud applications from the server
-				List<CloudApplication> applications = getBehaviour().getApplications(subMonitor.newChild(20));
 
 				// update applications and deployments from server
 				Map<String, CloudApplication> deployedApplicationsByName = new LinkedHashMap<String, CloudApplication>();
@@ -279,9 +396,10 @@ public class CloudBehaviourOperations {
 					deployedApplicationsByName.put(application.getName(), application);
 				}
 
-				getBehaviour().getCloudFoundryServer().updateModules(deployedApplicationsByName);
+				getBehaviour().getCloudFoundryServer().updateModules(deployedApplicationsByName, applicationStats,
+						instancesInfo);
 
-				List<CloudService> services = getBehaviour().getServices(subMonitor.newChild(20));
+				subMonitor.worked(20);
 
 				ServerEventHandler.getDefault().fireServerEvent(
 						new CloudRefreshEvent(getBehaviour().getCloudFoundryServer(), getModule(),
@@ -289,9 +407,51 @@ public class CloudBehaviourOperations {
 
 				subMonitor.worked(20);
 			}
+
+			private Set<String> getDeployedApplicationNames(List<IModule> modules) throws CoreException {
+				Set<String> names = new HashSet<String>();
+				for (IModule module : modules) {
+					CloudFoundryApplicationModule appModule = getBehaviour().getCloudFoundryServer()
+							.getExistingCloudModule(module);
+					if (appModule != null) {
+						names.add(appModule.getDeployedApplicationName());
+					}
+				}
+				return names;
+			}
 		};
 	}
 
+	/**
+	 * 
+	 * @return maximum number of applications whose instances are refreshed at
+	 * the same time when refreshing all applications. If 0, the instances of
+	 * applications are not refreshed, other than those of an explicitly given
+	 * module.
+	 */
+	public static int getRefreshConcurrency() {
+		if (CloudFoundryPlugin.getDefault() == null) {
+			return DEFAULT_REFRESH_CONCURRENCY;
+		}
+		int concurrency = CloudFoundryPlugin.getDefault().getPreferences()
+				.getInt(REFRESH_CONCURRENCY_PREFERENCE, DEFAULT_REFRESH_CONCURRENCY);
+		return Math.max(0, Math.min(concurrency, ClientRequestExecutor.MAX_THREADS));
+	}
+
+	/**
+	 * 
+	 * @return maximum number of applications deployed at the same time by a
+	 * batch deployment, between 1 and {@link ClientRequestExecutor#MAX_THREADS}
+	 */
+	public static int getDeploymentConcurrency() {
+		if (CloudFoundryPlugin.getDefault() == null) {
+			return DEFAULT_DEPLOYMENT_CONCURRENCY;
+		}
+		int concurrency = CloudFoundryPlugin.getDefault().getPreferences()
+				.getInt(DEPLOYMENT_CONCURRENCY_PREFERENCE, DEFAULT_DEPLOYMENT_CONCURRENCY);
+		return Math.max(1, Math.min(concurrency, ClientRequestExecutor.MAX_THREADS));
+	}
+
 	public BehaviourOperation refreshForDeploymentChange(final IModule module) {
 		return new BehaviourOperation(behaviour, module) {
 
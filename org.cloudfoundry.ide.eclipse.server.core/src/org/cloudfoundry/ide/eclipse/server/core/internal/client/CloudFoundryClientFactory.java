@@ -21,15 +21,25 @@ package org.cloudfoundry.ide.eclipse.server.core.internal.client;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import org.cloudfoundry.client.lib.CloudCredentials;
 import org.cloudfoundry.client.lib.CloudFoundryClient;
 import org.cloudfoundry.client.lib.CloudFoundryOperations;
 import org.cloudfoundry.client.lib.HttpProxyConfiguration;
 import org.cloudfoundry.client.lib.domain.CloudSpace;
+import org.cloudfoundry.client.lib.rest.CloudControllerClient;
+import org.cloudfoundry.client.lib.rest.CloudControllerClientFactory;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudFoundryPlugin;
+import org.cloudfoundry.ide.eclipse.server.core.internal.HttpConnectionPool;
 import org.eclipse.core.net.proxy.IProxyData;
 import org.eclipse.core.net.proxy.IProxyService;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.web.client.RestTemplate;
 
 /**
  * Create Cloud Foundry clients, including clients that are UAA aware.Note that
@@ -47,6 +57,12 @@ public class CloudFoundryClientFactory {
 
 	private static CloudFoundryClientFactory sessionFactory = null;
 
+	/**
+	 * Response caches of the clients created by this factory
+	 */
+	private final Map<CloudFoundryOperations, ConditionalRequestCache> responseCaches = Collections
+			.synchronizedMap(new WeakHashMap<CloudFoundryOperations, ConditionalRequestCache>());
+
 	public static CloudFoundryClientFactory getDefault() {
 		if (sessionFactory == null) {
 			sessionFactory = new CloudFoundryClientFactory();
@@ -69,8 +85,9 @@ public class CloudFoundryClientFactory {
 		// creation
 
 		HttpProxyConfiguration proxyConfiguration = getProxy(url);
-		return session != null ? new CloudFoundryClient(credentials, url, session, selfSigned)
-				: new CloudFoundryClient(credentials, url, proxyConfiguration, selfSigned);
+		CloudControllerClientFactory factory = createControllerClientFactory(session != null ? null
+				: proxyConfiguration, selfSigned);
+		return createClient(factory, factory.newCloudController(url, credentials, session));
 	}
 
 	public CloudFoundryOperations getCloudFoundryOperations(CloudCredentials credentials, URL url, String orgName,
@@ -83,7 +100,67 @@ public class CloudFoundryClientFactory {
 		// client
 		// creation
 		HttpProxyConfiguration proxyConfiguration = getProxy(url);
-		return new CloudFoundryClient(credentials, url, orgName, spaceName, proxyConfiguration, selfsigned);
+		CloudControllerClientFactory factory = createControllerClientFactory(proxyConfiguration, selfsigned);
+		return createClient(factory, factory.newCloudController(url, credentials, orgName, spaceName));
+	}
+
+	/**
+	 * Creates a controller client factory whose rest template uses pooled
+	 * connections from the {@link HttpConnectionPool}.
+	 * @param proxyConfiguration
+	 * @param selfSigned
+	 * @return Non-null controller client factory
+	 */
+	protected CloudControllerClientFactory createControllerClientFactory(HttpProxyConfiguration proxyConfiguration,
+			boolean selfSigned) {
+		CloudControllerClientFactory factory = new CloudControllerClientFactory(proxyConfiguration, selfSigned);
+		// Replace the request factory before any controller client is
+		// created, as controller clients wrap it
+		factory.getRestTemplate().setRequestFactory(
+				HttpConnectionPool.getDefault().createRequestFactory(proxyConfiguration, selfSigned));
+		return factory;
+	}
+
+	/**
+	 * Creates a client for the given controller client, and registers a
+	 * {@link RangeRequestInterceptor} and a {@link ConditionalRequestCache}
+	 * with its rest template. The cache is not registered if disabled in the
+	 * preferences.
+	 * @param factory that created the controller client
+	 * @param controllerClient
+	 * @return Non-null client
+	 */
+	protected CloudFoundryOperations createClient(CloudControllerClientFactory factory,
+			CloudControllerClient controllerClient) {
+		// Register the interceptors only once the controller client has
+		// wrapped the request factory of the rest template, as it wraps the
+		// request factory with any registered interceptor
+		RestTemplate restTemplate = factory.getRestTemplate();
+		List<ClientHttpRequestInterceptor> interceptors = new ArrayList<ClientHttpRequestInterceptor>(
+				restTemplate.getInterceptors());
+		// Before the cache, so that the cache sees the requested range
+		interceptors.add(new RangeRequestInterceptor());
+		ConditionalRequestCache responseCache = ConditionalRequestCache.isEnabled() ? new ConditionalRequestCache()
+				: null;
+		if (responseCache != null) {
+			interceptors.add(responseCache);
+		}
+		restTemplate.setInterceptors(interceptors);
+		CloudFoundryOperations client = new CloudFoundryClient(controllerClient);
+		if (responseCache != null) {
+			responseCaches.put(client, responseCache);
+		}
+		return client;
+	}
+
+	/**
+	 * 
+	 * @param client created by this factory
+	 * @return cache of the responses of the given client, or null if the
+	 * client does not cache responses
+	 */
+	public ConditionalRequestCache getResponseCache(CloudFoundryOperations client) {
+		return client != null ? responseCaches.get(client) : null;
 	}
 
 	public CloudFoundryOperations getCloudFoundryOperations(String cloudControllerUrl) throws MalformedURLException {
@@ -99,7 +176,8 @@ public class CloudFoundryClientFactory {
 		// therefore it is not critical to set the proxy in the client on client
 		// creation
 		HttpProxyConfiguration proxyConfiguration = getProxy(url);
-		return new CloudFoundryClient(url, proxyConfiguration, selfSigned);
+		CloudControllerClientFactory factory = createControllerClientFactory(proxyConfiguration, selfSigned);
+		return createClient(factory, factory.newCloudController(url, null, (CloudSpace) null));
 	}
 
 	protected static CloudCredentials getCredentials(String userName, String password) {
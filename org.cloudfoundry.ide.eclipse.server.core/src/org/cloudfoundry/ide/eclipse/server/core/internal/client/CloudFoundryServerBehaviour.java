@@ -20,7 +20,9 @@
  ********************************************************************************/
 package org.cloudfoundry.ide.eclipse.server.core.internal.client;
 
+import java.io.IOException;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
@@ -32,12 +34,13 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.cloudfoundry.client.lib.ApplicationLogListener;
+import org.cloudfoundry.client.lib.ClientHttpResponseCallback;
 import org.cloudfoundry.client.lib.CloudCredentials;
 import org.cloudfoundry.client.lib.CloudFoundryException;
 import org.cloudfoundry.client.lib.CloudFoundryOperations;
-import org.cloudfoundry.client.lib.NotFinishedStagingException;
 import org.cloudfoundry.client.lib.StreamingLogToken;
 import org.cloudfoundry.client.lib.archive.ApplicationArchive;
 import org.cloudfoundry.client.lib.domain.ApplicationLog;
@@ -55,8 +58,10 @@ import org.cloudfoundry.client.lib.domain.InstancesInfo;
 import org.cloudfoundry.ide.eclipse.server.core.AbstractApplicationDelegate;
 import org.cloudfoundry.ide.eclipse.server.core.ApplicationDeploymentInfo;
 import org.cloudfoundry.ide.eclipse.server.core.internal.ApplicationAction;
+import org.cloudfoundry.ide.eclipse.server.core.internal.ApplicationStatePoller;
 import org.cloudfoundry.ide.eclipse.server.core.internal.ApplicationUrlLookupService;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CachingApplicationArchive;
+import org.cloudfoundry.ide.eclipse.server.core.internal.ChildModuleJarCache;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudErrorUtil;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudFoundryLoginHandler;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudFoundryPlugin;
@@ -69,6 +74,7 @@ import org.cloudfoundry.ide.eclipse.server.core.internal.RefreshModulesHandler;
 import org.cloudfoundry.ide.eclipse.server.core.internal.ServerEventHandler;
 import org.cloudfoundry.ide.eclipse.server.core.internal.application.ApplicationRegistry;
 import org.cloudfoundry.ide.eclipse.server.core.internal.application.EnvironmentVariable;
+import org.cloudfoundry.ide.eclipse.server.core.internal.client.ErrorClassRetryPolicy.ErrorClass;
 import org.cloudfoundry.ide.eclipse.server.core.internal.jrebel.CloudRebelAppHandler;
 import org.cloudfoundry.ide.eclipse.server.core.internal.spaces.CloudFoundrySpace;
 import org.cloudfoundry.ide.eclipse.server.core.internal.spaces.CloudOrgsAndSpaces;
@@ -95,6 +101,8 @@ import org.eclipse.wst.server.core.model.IModuleFile;
 import org.eclipse.wst.server.core.model.IModuleResource;
 import org.eclipse.wst.server.core.model.IModuleResourceDelta;
 import org.eclipse.wst.server.core.model.ServerBehaviourDelegate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.web.client.RestClientException;
 
 /**
@@ -133,14 +141,38 @@ import org.springframework.web.client.RestClientException;
 @SuppressWarnings("restriction")
 public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 
+	/*
+	 * Delays start at the intervals the Cloud controller typically needs to
+	 * finish staging or to leave the stopped state, and back off from there.
+	 * The number of attempts is limited by the request timeout.
+	 */
+	private static final RetryPolicy STAGING_BACKOFF = new BackoffRetryPolicy(
+			CloudOperationsConstants.ONE_SECOND_INTERVAL * 2, CloudOperationsConstants.SHORT_INTERVAL, 0, 0);
+
+	private static final RetryPolicy APP_STOPPED_BACKOFF = new BackoffRetryPolicy(
+			CloudOperationsConstants.ONE_SECOND_INTERVAL, CloudOperationsConstants.SHORT_INTERVAL, 0, 0);
+
+	private static final RetryPolicy STAGING_RETRY_POLICY = new ErrorClassRetryPolicy().withPolicy(
+			ErrorClass.STAGING_NOT_FINISHED, STAGING_BACKOFF).withPolicy(ErrorClass.APP_STOPPED_STATE,
+			APP_STOPPED_BACKOFF);
+
+	private static final RetryPolicy APP_STOPPED_RETRY_POLICY = new ErrorClassRetryPolicy().withPolicy(
+			ErrorClass.APP_STOPPED_STATE, APP_STOPPED_BACKOFF);
+
 	private CloudFoundryOperations client;
 
 	private RefreshModulesHandler refreshHandler;
 
+	private ApplicationStatePoller statePoller;
+
+	private CloudMetadataCache metadataCache;
+
 	private ApplicationUrlLookupService applicationUrlLookup;
 
 	private CloudBehaviourOperations cloudBehaviourOperations;
 
+	private final Map<String, ReentrantLock> applicationLocks = new HashMap<String, ReentrantLock>();
+
 	/*
 	 * FIXNS: Until V2 MCF is released, disable debugging support for V2, as
 	 * public clouds also indicate they support debug.
@@ -193,6 +225,7 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		getApplicationUrlLookup().refreshDomains(monitor);
 
 		getRefreshHandler().scheduleRefreshAll();
+		getStatePoller().activity();
 
 		ServerEventHandler.getDefault().fireServerEvent(
 				new CloudServerEvent(getCloudFoundryServer(), CloudServerEvent.EVENT_SERVER_CONNECTED));
@@ -242,6 +275,36 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		return refreshHandler;
 	}
 
+	/**
+	 * 
+	 * @return Polls the state of the applications of this server behaviour in
+	 * the background. Never null.
+	 */
+	public synchronized ApplicationStatePoller getStatePoller() throws CoreException {
+		if (statePoller == null) {
+			statePoller = new ApplicationStatePoller(getCloudFoundryServer());
+		}
+		return statePoller;
+	}
+
+	/**
+	 * 
+	 * @param module
+	 * @return lock held by operations that deploy, start, restart or stop the
+	 * application of the given module, so that operations on the same
+	 * application are not interleaved. Never null.
+	 */
+	public ReentrantLock getApplicationLock(IModule module) {
+		synchronized (applicationLocks) {
+			ReentrantLock lock = applicationLocks.get(module.getId());
+			if (lock == null) {
+				lock = new ReentrantLock();
+				applicationLocks.put(module.getId(), lock);
+			}
+			return lock;
+		}
+	}
+
 	/**
 	 * Creates the given list of services
 	 * @deprecated Use {@link #operations()} instead.
@@ -263,14 +326,37 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 
 	}
 
+	/**
+	 * Returns the domains of the current space. The domains are cached for
+	 * {@link CloudMetadataCache#DEFAULT_TIME_TO_LIVE}.
+	 * @param monitor
+	 * @return Non-null list of domains, which may be modified by the caller.
+	 * @throws CoreException if failed to fetch the domains
+	 */
 	public synchronized List<CloudDomain> getDomainsForSpace(IProgressMonitor monitor) throws CoreException {
+		return new ArrayList<CloudDomain>(getMetadataCache().get(CloudMetadataCache.DOMAINS,
+				CloudMetadataCache.DEFAULT_TIME_TO_LIVE, getDomainsForSpaceRequest(), monitor));
+	}
 
+	BaseClientRequest<List<CloudDomain>> getDomainsForSpaceRequest() {
 		return new BehaviourRequest<List<CloudDomain>>(Messages.CloudFoundryServerBehaviour_DOMAINS_FOR_SPACE) {
 			@Override
 			protected List<CloudDomain> doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
 				return client.getDomains();
 			}
-		}.run(monitor);
+		};
+	}
+
+	/**
+	 * 
+	 * @return Caches metadata of the Cloud space, like domains and service
+	 * offerings. Never null.
+	 */
+	public synchronized CloudMetadataCache getMetadataCache() {
+		if (metadataCache == null) {
+			metadataCache = new CloudMetadataCache();
+		}
+		return metadataCache;
 	}
 
 	/**
@@ -380,6 +466,13 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		Server server = (Server) getServer();
 		server.setServerState(IServer.STATE_STOPPING);
 
+		if (statePoller != null) {
+			statePoller.stop();
+		}
+		if (metadataCache != null) {
+			metadataCache.invalidateAll();
+		}
+
 		CloudFoundryServer cloudServer = getCloudFoundryServer();
 
 		Collection<CloudFoundryApplicationModule> cloudModules = cloudServer.getExistingCloudModules();
@@ -427,6 +520,9 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 	public void dispose() {
 		super.dispose();
 		getServer().removeServerListener(serverListener);
+		if (statePoller != null) {
+			statePoller.stop();
+		}
 	}
 
 	/**
@@ -473,15 +569,17 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 	 * application, or the application does not exist.
 	 */
 	public CloudApplication getCloudApplication(final String appName, IProgressMonitor monitor) throws CoreException {
-		CloudApplication app = new BehaviourRequest<CloudApplication>(NLS.bind(
-				Messages.CloudFoundryServerBehaviour_GET_APPLICATION, appName)) {
+		return getCloudApplicationRequest(appName).run(monitor);
+	}
+
+	BaseClientRequest<CloudApplication> getCloudApplicationRequest(final String appName) {
+		return new BehaviourRequest<CloudApplication>(NLS.bind(Messages.CloudFoundryServerBehaviour_GET_APPLICATION,
+				appName)) {
 			@Override
 			protected CloudApplication doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
 				return client.getApplication(appName);
 			}
-		}.run(monitor);
-
-		return app;
+		};
 	}
 
 	/**
@@ -619,10 +717,15 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 			return;
 		}
 		try {
-			ApplicationStats stats = getApplicationStats(appModule.getDeployedApplicationName(), monitor);
-			InstancesInfo info = getInstancesInfo(appModule.getDeployedApplicationName(), monitor);
-			appModule.setApplicationStats(stats);
-			appModule.setInstancesInfo(info);
+			// Stats and instances are independent, so fetch them in parallel
+			AsyncClientRequest<ApplicationStats> stats = ClientRequestExecutor
+					.submit(getApplicationStatsRequest(appModule.getDeployedApplicationName()));
+			AsyncClientRequest<InstancesInfo> info = ClientRequestExecutor.submit(getInstancesInfoRequest(appModule
+					.getDeployedApplicationName()));
+			ClientRequestExecutor.joinAll(Arrays.asList(stats, info), monitor);
+
+			appModule.setApplicationStats(stats.join(monitor));
+			appModule.setInstancesInfo(info.join(monitor));
 		}
 		catch (CoreException e) {
 			// Ignore if it is application not found error. If the application
@@ -648,7 +751,10 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 	 * @throws CoreException
 	 */
 	public List<CloudApplication> getApplications(IProgressMonitor monitor) throws CoreException {
+		return getApplicationsRequest().run(monitor);
+	}
 
+	BaseClientRequest<List<CloudApplication>> getApplicationsRequest() throws CoreException {
 		final String label = NLS.bind(Messages.CloudFoundryServerBehaviour_GET_ALL_APPS, getCloudFoundryServer()
 				.getServer().getId());
 		return new BehaviourRequest<List<CloudApplication>>(label) {
@@ -657,28 +763,68 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 					throws CoreException {
 				return client.getApplications();
 			}
-		}.run(monitor);
+		};
 	}
 
 	public ApplicationStats getApplicationStats(final String applicationId, IProgressMonitor monitor)
 			throws CoreException {
+		return getApplicationStatsRequest(applicationId).run(monitor);
+	}
+
+	BaseClientRequest<ApplicationStats> getApplicationStatsRequest(final String applicationId) {
 		return new StagingAwareRequest<ApplicationStats>(NLS.bind(Messages.CloudFoundryServerBehaviour_APP_STATS,
 				applicationId)) {
 			@Override
 			protected ApplicationStats doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
 				return client.getApplicationStats(applicationId);
 			}
-		}.run(monitor);
+		};
 	}
 
 	public InstancesInfo getInstancesInfo(final String applicationId, IProgressMonitor monitor) throws CoreException {
+		return getInstancesInfoRequest(applicationId).run(monitor);
+	}
+
+	/**
+	 * Request that fetches both the stats and the instances of an application
+	 * and adds them to the given maps, keyed by application name. Meant for
+	 * bulk refreshes of many applications, so the request is not reattempted,
+	 * and errors from the Cloud Foundry server, for example if the
+	 * application was stopped or deleted in the meantime, only result in the
+	 * application not being added to the maps.
+	 */
+	BaseClientRequest<Void> getInstancesAndStatsRequest(final String applicationId,
+			final Map<String, ApplicationStats> applicationStats, final Map<String, InstancesInfo> instancesInfo) {
+		return new BehaviourRequest<Void>(NLS.bind(Messages.CloudFoundryServerBehaviour_APP_STATS, applicationId)) {
+			@Override
+			protected Void doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
+				try {
+					ApplicationStats stats = client.getApplicationStats(applicationId);
+					InstancesInfo info = client.getApplicationInstances(applicationId);
+					if (stats != null) {
+						applicationStats.put(applicationId, stats);
+					}
+					if (info != null) {
+						instancesInfo.put(applicationId, info);
+					}
+				}
+				catch (CloudFoundryException e) {
+					CloudFoundryPlugin.trace("Unable to refresh instances of " + applicationId + ": " //$NON-NLS-1$ //$NON-NLS-2$
+							+ e.getMessage());
+				}
+				return null;
+			}
+		};
+	}
+
+	BaseClientRequest<InstancesInfo> getInstancesInfoRequest(final String applicationId) {
 		return new StagingAwareRequest<InstancesInfo>(NLS.bind(Messages.CloudFoundryServerBehaviour_APP_INFO,
 				applicationId)) {
 			@Override
 			protected InstancesInfo doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
 				return client.getApplicationInstances(applicationId);
 			}
-		}.run(monitor);
+		};
 	}
 
 	public String getFile(final String applicationId, final int instanceIndex, final String path,
@@ -704,14 +850,70 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		}.run(monitor);
 	}
 
+	/**
+	 * Reads the content of the given file that was added since the last read
+	 * of the tail, and writes it to the writer. Only the bytes following the
+	 * offset of the tail are requested, and the content is streamed to the
+	 * writer as it is received.
+	 * @param applicationId
+	 * @param instanceIndex
+	 * @param filePath
+	 * @param tail of the file, which keeps the offset of the next content
+	 * @param writer receiving the new content
+	 * @param monitor
+	 * @return number of new bytes read
+	 * @throws CoreException if the file failed to be read. A file without new
+	 * content may fail with a requested range that is not satisfiable.
+	 */
+	public long tailFile(final String applicationId, final int instanceIndex, final String filePath,
+			final FileTail tail, final Writer writer, IProgressMonitor monitor) throws CoreException {
+		String label = NLS.bind(Messages.CloudFoundryServerBehaviour_FETCHING_FILE, filePath, applicationId);
+
+		return new FileRequest<Long>(label) {
+			@Override
+			protected Long doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
+				final long startOffset = tail.getOffset();
+				final long[] read = new long[1];
+				RangeRequestInterceptor.setRangeStart(startOffset > 0 ? Long.valueOf(startOffset) : null);
+				try {
+					client.openFile(applicationId, instanceIndex, filePath, new ClientHttpResponseCallback() {
+						public void onClientHttpResponse(ClientHttpResponse response) throws IOException {
+							// Servers that ignore the range send the whole file
+							long responseOffset = response.getStatusCode() == HttpStatus.PARTIAL_CONTENT ? startOffset
+									: 0;
+							read[0] = tail.read(response.getBody(), responseOffset, writer);
+						}
+					});
+				}
+				finally {
+					RangeRequestInterceptor.setRangeStart(null);
+				}
+				return read[0];
+			}
+		}.run(monitor);
+	}
+
+	/**
+	 * Returns the service offerings available in the current space. The
+	 * offerings are cached for {@link CloudMetadataCache#DEFAULT_TIME_TO_LIVE}.
+	 * @param monitor
+	 * @return Non-null list of service offerings, which may be modified by the
+	 * caller.
+	 * @throws CoreException if failed to fetch the service offerings
+	 */
 	public List<CloudServiceOffering> getServiceOfferings(IProgressMonitor monitor) throws CoreException {
+		return new ArrayList<CloudServiceOffering>(getMetadataCache().get(CloudMetadataCache.SERVICE_OFFERINGS,
+				CloudMetadataCache.DEFAULT_TIME_TO_LIVE, getServiceOfferingsRequest(), monitor));
+	}
+
+	BaseClientRequest<List<CloudServiceOffering>> getServiceOfferingsRequest() {
 		return new BehaviourRequest<List<CloudServiceOffering>>("Getting available service options") { //$NON-NLS-1$
 			@Override
 			protected List<CloudServiceOffering> doRun(CloudFoundryOperations client, SubMonitor progress)
 					throws CoreException {
 				return client.getServiceOfferings();
 			}
-		}.run(monitor);
+		};
 	}
 
 	/**
@@ -728,7 +930,10 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 	}
 
 	public List<CloudService> getServices(IProgressMonitor monitor) throws CoreException {
+		return getServicesRequest().run(monitor);
+	}
 
+	BaseClientRequest<List<CloudService>> getServicesRequest() throws CoreException {
 		final String label = NLS.bind(Messages.CloudFoundryServerBehaviour_GET_ALL_SERVICES, getCloudFoundryServer()
 				.getServer().getId());
 		return new BehaviourRequest<List<CloudService>>(label) {
@@ -736,7 +941,7 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 			protected List<CloudService> doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
 				return client.getServices();
 			}
-		}.run(monitor);
+		};
 	}
 
 	/**
@@ -785,6 +990,11 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		applicationUrlLookup = null;
 		cloudBehaviourOperations = null;
 		refreshHandler = null;
+		// Credentials or the target space may have changed
+		if (metadataCache != null) {
+			metadataCache.invalidateAll();
+			metadataCache.setResponseCache(null);
+		}
 	}
 
 	@Override
@@ -1077,6 +1287,10 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 				client = createClient(url, userName, password, cloudFoundrySpace,
 						cloudServer.getSelfSignedCertificate());
 			}
+			// Metadata invalidations also clear the responses cached by the
+			// client
+			getMetadataCache().setResponseCache(
+					CloudFoundryPlugin.getCloudFoundryClientFactory().getResponseCache(client));
 		}
 		return client;
 	}
@@ -1105,18 +1319,22 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 
 	boolean waitForStart(CloudFoundryOperations client, String deploymentId, IProgressMonitor monitor)
 			throws InterruptedException {
-		long initialInterval = CloudOperationsConstants.SHORT_INTERVAL;
-		Thread.sleep(initialInterval);
-		long timeLeft = CloudOperationsConstants.DEPLOYMENT_TIMEOUT - initialInterval;
-		while (timeLeft > 0) {
-			CloudApplication deploymentDetails = client.getApplication(deploymentId);
-			if (isApplicationReady(deploymentDetails)) {
-				return true;
-			}
-			Thread.sleep(CloudOperationsConstants.ONE_SECOND_INTERVAL);
-			timeLeft -= CloudOperationsConstants.ONE_SECOND_INTERVAL;
-		}
-		return false;
+		return waitForStart(client, new ApplicationStartDetector(deploymentId), monitor);
+	}
+
+	/**
+	 * Waits until the application of the given detector has started, or the
+	 * deployment timeout expires.
+	 * @param client
+	 * @param detector detecting the start of the application. May have been
+	 * registered as application log listener to detect the start early.
+	 * @param monitor
+	 * @return true if the application started, false if the timeout expired
+	 * @throws InterruptedException
+	 */
+	boolean waitForStart(CloudFoundryOperations client, ApplicationStartDetector detector, IProgressMonitor monitor)
+			throws InterruptedException {
+		return detector.waitForStart(client, CloudOperationsConstants.DEPLOYMENT_TIMEOUT, monitor);
 	}
 
 	@Override
@@ -1397,12 +1615,18 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 	}
 
 	/**
-	 * Retrieves the orgs and spaces for the current server instance.
+	 * Retrieves the orgs and spaces for the current server instance. The orgs
+	 * and spaces are cached for {@link CloudMetadataCache#DEFAULT_TIME_TO_LIVE}.
 	 * @param monitor
 	 * @return
 	 * @throws CoreException if it failed to retrieve the orgs and spaces.
 	 */
 	public CloudOrgsAndSpaces getCloudSpaces(IProgressMonitor monitor) throws CoreException {
+		return getMetadataCache().get(CloudMetadataCache.CLOUD_SPACES, CloudMetadataCache.DEFAULT_TIME_TO_LIVE,
+				getCloudSpacesRequest(), monitor);
+	}
+
+	BaseClientRequest<CloudOrgsAndSpaces> getCloudSpacesRequest() {
 		return new BehaviourRequest<CloudOrgsAndSpaces>("Getting orgs and spaces") { //$NON-NLS-1$
 
 			@Override
@@ -1410,7 +1634,7 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 				return internalGetCloudSpaces(client);
 			}
 
-		}.run(monitor);
+		};
 	}
 
 	public List<CloudRoute> getRoutes(final String domainName, IProgressMonitor monitor) throws CoreException {
@@ -1504,6 +1728,15 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 
 	public static CloudFoundryOperations createExternalClientLogin(final String location, String userName,
 			String password, boolean selfSigned, IProgressMonitor monitor) throws CoreException {
+		// Reuse a client that was recently logged in with the same
+		// credentials, as wizards validate the credentials repeatedly while
+		// the user edits the server
+		ExternalClientCache clientCache = ExternalClientCache.getDefault();
+		CloudFoundryOperations cachedClient = clientCache.get(location, userName, password, selfSigned);
+		if (cachedClient != null) {
+			return cachedClient;
+		}
+
 		SubMonitor progress = SubMonitor.convert(monitor);
 		progress.beginTask("Connecting", IProgressMonitor.UNKNOWN); //$NON-NLS-1$
 		try {
@@ -1525,9 +1758,15 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 				}
 
 			}.run(monitor);
+			clientCache.put(location, userName, password, selfSigned, client);
 			return client;
 		}
+		catch (CoreException e) {
+			clientCache.invalidate(location, userName);
+			throw e;
+		}
 		catch (RuntimeException t) {
+			clientCache.invalidate(location, userName);
 			throw CloudErrorUtil.checkServerCommunicationError(t);
 		}
 		finally {
@@ -1709,20 +1948,9 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 			super(label);
 		}
 
-		protected long getWaitInterval(Throwable exception, SubMonitor monitor) throws CoreException {
-
-			if (exception instanceof CoreException) {
-				exception = ((CoreException) exception).getCause();
-			}
-
-			if (exception instanceof NotFinishedStagingException) {
-				return CloudOperationsConstants.ONE_SECOND_INTERVAL * 2;
-			}
-			else if (exception instanceof CloudFoundryException
-					&& CloudErrorUtil.isAppStoppedStateError((CloudFoundryException) exception)) {
-				return CloudOperationsConstants.ONE_SECOND_INTERVAL;
-			}
-			return -1;
+		@Override
+		protected RetryPolicy getRetryPolicy() {
+			return STAGING_RETRY_POLICY;
 		}
 
 		protected abstract T doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException;
@@ -1740,17 +1968,9 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 			super(label);
 		}
 
-		protected long getWaitInterval(Throwable exception, SubMonitor monitor) throws CoreException {
-
-			if (exception instanceof CoreException) {
-				exception = ((CoreException) exception).getCause();
-			}
-
-			if (exception instanceof CloudFoundryException
-					&& CloudErrorUtil.isAppStoppedStateError((CloudFoundryException) exception)) {
-				return CloudOperationsConstants.ONE_SECOND_INTERVAL;
-			}
-			return -1;
+		@Override
+		protected RetryPolicy getRetryPolicy() {
+			return APP_STOPPED_RETRY_POLICY;
 		}
 
 		protected abstract T doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException;
@@ -1802,16 +2022,9 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		}
 
 		// If no application archive was provided,then attempt an incremental
-		// publish. Incremental publish is only supported for apps without child
-		// modules.
-		if (archive == null && incrementalPublish && !hasChildModules(modules)) {
-			// Determine if an incremental publish
-			// should
-			// occur
-			// For the time being support incremental
-			// publish
-			// only if the app does not have child
-			// modules
+		// publish. Child modules are assembled into jars that are only rebuilt
+		// if the child module has changed.
+		if (archive == null && incrementalPublish) {
 			// To compute incremental deltas locally,
 			// modules must be provided
 			// Computes deltas locally before publishing
@@ -1822,7 +2035,7 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 			// only on incremental
 			// builds
 
-			archive = getIncrementalPublishArchive(deploymentInfo, modules);
+			archive = getIncrementalPublishArchive(deploymentInfo, modules, monitor);
 		}
 		return archive;
 
@@ -1876,17 +2089,89 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 				isError);
 	}
 
+	/**
+	 * 
+	 * @return incremental publish archive, or null if an incremental publish
+	 * archive cannot be created for the given modules, in which case the full
+	 * application should be published instead.
+	 */
 	protected ApplicationArchive getIncrementalPublishArchive(final ApplicationDeploymentInfo deploymentInfo,
-			IModule[] modules) {
+			IModule[] modules, IProgressMonitor monitor) throws CoreException {
 		IModuleResource[] allResources = getResources(modules);
 		IModuleResourceDelta[] deltas = getPublishedResourceDelta(modules);
 		List<IModuleResource> changedResources = getChangedResources(deltas);
-		ApplicationArchive moduleArchive = new CachingApplicationArchive(Arrays.asList(allResources), changedResources,
-				modules[0], deploymentInfo.getDeploymentName());
+		List<IModuleResource> resources = new ArrayList<IModuleResource>(Arrays.asList(allResources));
+		List<IModuleFile> childJars = new ArrayList<IModuleFile>();
+
+		if (hasChildModules(modules)
+				&& !addChildModuleJars(deploymentInfo, modules, resources, changedResources, childJars, monitor)) {
+			return null;
+		}
+
+		ApplicationArchive moduleArchive = new CachingApplicationArchive(resources, changedResources, modules[0],
+				deploymentInfo.getDeploymentName(), childJars);
 
 		return moduleArchive;
 	}
 
+	/**
+	 * Adds a jar for each child module of the web module to the given
+	 * resources. Jars are cached between publishes, and only rebuilt if the
+	 * child module has changed since it was last published, in which case the
+	 * jar is also added to the changed resources.
+	 * @param childJars receives the jars obtained from the cache, which must
+	 * be released once published. Jars are released by this method if it does
+	 * not add jars for all child modules.
+	 * @return true if jars were added for all child modules. False otherwise
+	 */
+	protected boolean addChildModuleJars(ApplicationDeploymentInfo deploymentInfo, IModule[] modules,
+			List<IModuleResource> resources, List<IModuleResource> changedResources, List<IModuleFile> childJars,
+			IProgressMonitor monitor) throws CoreException {
+		IWebModule webModule = CloudUtil.getWebModule(modules);
+		ChildModuleJarCache jarCache = CloudFoundryPlugin.getDefault().getChildModuleJarCache();
+		String cacheKey = getServer().getId() + '/' + deploymentInfo.getDeploymentName();
+
+		boolean added = false;
+		try {
+			for (IModule child : webModule.getModules()) {
+				IModule[] childPath = new IModule[] { modules[0], child };
+				boolean changed = hasResourceChanges(getPublishedResourceDelta(childPath));
+				IModuleFile jar = jarCache.getChildJar(cacheKey, webModule, child, getResources(childPath),
+						changed, monitor);
+				if (jar == null) {
+					return false;
+				}
+				childJars.add(jar);
+				resources.add(jar);
+				if (changed) {
+					changedResources.add(jar);
+				}
+			}
+			added = true;
+			return true;
+		}
+		finally {
+			if (!added) {
+				for (IModuleFile jar : childJars) {
+					jarCache.release(jar);
+				}
+				childJars.clear();
+			}
+		}
+	}
+
+	protected boolean hasResourceChanges(IModuleResourceDelta[] deltas) {
+		if (deltas != null) {
+			for (IModuleResourceDelta delta : deltas) {
+				if (delta.getKind() != IModuleResourceDelta.NO_CHANGE
+						|| hasResourceChanges(delta.getAffectedChildren())) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
 	abstract class FileRequest<T> extends StagingAwareRequest<T> {
 		FileRequest(String label) {
 			super(label);
@@ -1915,6 +2200,7 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 			super.done(event);
 			synchronized (jobLst) {
 				jobLst.remove(event.getJob());
+				jobLst.notifyAll();
 			}
 		}
 
@@ -1926,20 +2212,27 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		}
 
 		boolean isAllJobCompleted() {
-			return jobLst.size() == 0;
+			synchronized (jobLst) {
+				return jobLst.size() == 0;
+			}
 		}
 
 		/**
-		 * Wait for all job to be completed or the monitor is cancelled.
+		 * Wait for all job to be completed or the monitor is cancelled. Wakes
+		 * up as soon as the last job completes, and checks the monitor for
+		 * cancellation every {@link CancellableWait#CANCEL_CHECK_INTERVAL}.
 		 * @param monitor
 		 */
 		void waitForJobCompletion(IProgressMonitor monitor) {
-			while ((monitor == null || !monitor.isCanceled()) && jobLst.size() > 0) {
-				try {
-					Thread.sleep(500);
-				}
-				catch (InterruptedException e) {
-					// Do nothing
+			synchronized (jobLst) {
+				while ((monitor == null || !monitor.isCanceled()) && jobLst.size() > 0) {
+					try {
+						jobLst.wait(CancellableWait.CANCEL_CHECK_INTERVAL);
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					}
 				}
 			}
 		}
@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal.client;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.cloudfoundry.ide.eclipse.server.core.internal.CloudFoundryPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Caches metadata of a Cloud space that rarely changes, like its domains,
+ * the available service offerings, or the orgs and spaces of the user, so that
+ * wizards that need it open without waiting for the Cloud controller.
+ * <p/>
+ * Each entry is fetched by a client request on first use, and kept for a
+ * given time to live. Once an entry is older than three quarters of its time
+ * to live, it is still returned but also refreshed in the background, so that
+ * an entry that is used regularly never expires in the caller's thread.
+ * <p/>
+ * Entries should be invalidated when the metadata is known to have changed,
+ * or when the client credentials or target space change. A refresh that was
+ * in progress while an entry was invalidated does not repopulate the entry.
+ * Invalidating entries also clears the {@link ConditionalRequestCache} of the
+ * client that fetches them, if set, so that the next fetch is not answered by
+ * a response that is still within its time to live.
+ */
+public class CloudMetadataCache {
+
+	public static final String DOMAINS = "domains"; //$NON-NLS-1$
+
+	public static final String SERVICE_OFFERINGS = "serviceOfferings"; //$NON-NLS-1$
+
+	public static final String CLOUD_SPACES = "cloudSpaces"; //$NON-NLS-1$
+
+	/**
+	 * Default time to live of entries in milliseconds
+	 */
+	public static final long DEFAULT_TIME_TO_LIVE = 5 * 60 * 1000;
+
+	private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+	/**
+	 * Incremented on each invalidation, so that loads that started before an
+	 * invalidation are discarded
+	 */
+	private long generation;
+
+	private ConditionalRequestCache responseCache;
+
+	/**
+	 * Returns the cached value for the given key, or runs the given request to
+	 * fetch it if there is no cached value or the cached value has expired.
+	 * @param key
+	 * @param timeToLive in milliseconds
+	 * @param request fetching the value. Also used to refresh the entry in the
+	 * background.
+	 * @param monitor
+	 * @return cached or fetched value
+	 * @throws CoreException if the value had to be fetched, and the request
+	 * failed
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(String key, long timeToLive, BaseClientRequest<T> request, IProgressMonitor monitor)
+			throws CoreException {
+		long loadGeneration;
+		synchronized (this) {
+			loadGeneration = generation;
+			Entry entry = entries.get(key);
+			if (entry != null) {
+				long age = currentTime() - entry.loaded;
+				if (age < timeToLive) {
+					if (age >= timeToLive * 3 / 4 && !entry.refreshing) {
+						entry.refreshing = true;
+						refreshAhead(key, loadGeneration, request);
+					}
+					return (T) entry.value;
+				}
+			}
+		}
+
+		T value = request.run(monitor);
+		put(key, loadGeneration, value);
+		return value;
+	}
+
+	/**
+	 * Removes the entry for the given key. The next request for the entry
+	 * fetches it again.
+	 * @param key
+	 */
+	public synchronized void invalidate(String key) {
+		entries.remove(key);
+		generation++;
+		invalidateResponses();
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public synchronized void invalidateAll() {
+		entries.clear();
+		generation++;
+		invalidateResponses();
+	}
+
+	/**
+	 * Sets the cache of the HTTP responses of the client that fetches the
+	 * entries, which is cleared whenever entries are invalidated.
+	 * @param responseCache may be null if the client does not cache responses
+	 */
+	public synchronized void setResponseCache(ConditionalRequestCache responseCache) {
+		this.responseCache = responseCache;
+	}
+
+	protected void invalidateResponses() {
+		if (responseCache != null) {
+			responseCache.invalidate();
+		}
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @return true if there is an entry for the given key, whether expired or
+	 * not.
+	 */
+	public synchronized boolean contains(String key) {
+		return entries.containsKey(key);
+	}
+
+	/**
+	 * Fetches the value of the given entry in the background.
+	 */
+	protected void refreshAhead(final String key, final long loadGeneration, final BaseClientRequest<?> request) {
+		Job job = new Job(request.getRequestLabel()) {
+
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				try {
+					put(key, loadGeneration, request.run(monitor));
+				}
+				catch (CoreException e) {
+					// Keep the current value until it expires, and try again
+					// on the next request
+					refreshFailed(key);
+					CloudFoundryPlugin.trace("Failed to refresh " + key + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+				return Status.OK_STATUS;
+			}
+		};
+		job.setSystem(true);
+		job.schedule();
+	}
+
+	protected synchronized void put(String key, long loadGeneration, Object value) {
+		if (loadGeneration == generation) {
+			entries.put(key, new Entry(value, currentTime()));
+		}
+	}
+
+	protected synchronized void refreshFailed(String key) {
+		Entry entry = entries.get(key);
+		if (entry != null) {
+			entry.refreshing = false;
+		}
+	}
+
+	protected long currentTime() {
+		return System.currentTimeMillis();
+	}
+
+	private static class Entry {
+
+		private final Object value;
+
+		private final long loaded;
+
+		private boolean refreshing;
+
+		Entry(Object value, long loaded) {
+			this.value = value;
+			this.loaded = loaded;
+		}
+	}
+}
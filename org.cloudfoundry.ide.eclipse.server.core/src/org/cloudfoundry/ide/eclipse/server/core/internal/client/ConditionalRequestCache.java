@@ -0,0 +1,431 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.cloudfoundry.ide.eclipse.server.core.internal.CloudFoundryPlugin;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Caches the responses of GET requests sent by a Cloud Foundry client, and
+ * revalidates them with the Cloud controller through conditional requests.
+ * <p/>
+ * A cached response is reused without contacting the server while it is
+ * younger than the time to live of its endpoint. Endpoints for data that
+ * rarely changes, like domains, service offerings or organisations and spaces,
+ * have a short time to live. All other endpoints, including those for
+ * application state, are always revalidated. Revalidation sends the ETag and
+ * last modified date of the cached response, and reuses the cached body if
+ * the server answers with 304 (Not Modified). Responses without a validator
+ * are only cached if their endpoint has a time to live.
+ * <p/>
+ * Any other request, like a POST, PUT or DELETE, may change the state of the
+ * Cloud space, and therefore clears the cache. A GET that was sent before the
+ * cache was cleared does not cache its response, as it may have been read
+ * before the change. Requests for a byte range of a resource, and for the
+ * files of application instances, like logs, are never cached. Responses
+ * whose body is larger than {@link #MAX_ENTRY_SIZE} are not cached, and only
+ * their first bytes are buffered.
+ * <p/>
+ * A cache is meant to be registered as an interceptor of the rest template of
+ * a single client, so cached responses are never shared across credentials.
+ */
+public class ConditionalRequestCache implements ClientHttpRequestInterceptor {
+
+	public static final String ENABLED_PREFERENCE = CloudFoundryPlugin.PLUGIN_ID + ".http.cache"; //$NON-NLS-1$
+
+	public static final boolean DEFAULT_ENABLED = true;
+
+	public static final int MAX_ENTRIES = 256;
+
+	/**
+	 * Responses with a larger body are not cached
+	 */
+	public static final int MAX_ENTRY_SIZE = 1024 * 1024;
+
+	private static final String IF_NONE_MATCH = "If-None-Match"; //$NON-NLS-1$
+
+	private static final String IF_MODIFIED_SINCE = "If-Modified-Since"; //$NON-NLS-1$
+
+	private static final String LAST_MODIFIED = "Last-Modified"; //$NON-NLS-1$
+
+	private static final String NO_STORE = "no-store"; //$NON-NLS-1$
+
+	private static final String RANGE = "Range"; //$NON-NLS-1$
+
+	private static final Pattern FILES_PATH = Pattern.compile(".*/files(/.*)?"); //$NON-NLS-1$
+
+	private final List<EndpointTimeToLive> timesToLive = new ArrayList<EndpointTimeToLive>();
+
+	private final Map<String, CachedResponse> responses = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	/**
+	 * Incremented each time the cache is cleared, so that responses to
+	 * requests sent before are not cached
+	 */
+	private long generation;
+
+	/**
+	 * Creates a cache with the default time to live of Cloud controller
+	 * endpoints.
+	 */
+	public ConditionalRequestCache() {
+		setTimeToLive("/v2/info", 10 * 60 * 1000); //$NON-NLS-1$
+		setTimeToLive("/v2/(shared_|private_)?domains", 60 * 1000); //$NON-NLS-1$
+		setTimeToLive("/v2/(organizations|spaces)/[^/]+/(private_)?domains", 60 * 1000); //$NON-NLS-1$
+		setTimeToLive("/v2/services", 60 * 1000); //$NON-NLS-1$
+		setTimeToLive("/v2/services/[^/]+/service_plans", 60 * 1000); //$NON-NLS-1$
+		setTimeToLive("/v2/service_plans", 60 * 1000); //$NON-NLS-1$
+		setTimeToLive("/v2/organizations", 30 * 1000); //$NON-NLS-1$
+		setTimeToLive("/v2/spaces", 30 * 1000); //$NON-NLS-1$
+		setTimeToLive("/v2/organizations/[^/]+/spaces", 30 * 1000); //$NON-NLS-1$
+	}
+
+	/**
+	 *
+	 * @return true if response caching is enabled in the plugin preferences,
+	 * or by default if the plugin is not available.
+	 */
+	public static boolean isEnabled() {
+		CloudFoundryPlugin plugin = CloudFoundryPlugin.getDefault();
+		return plugin != null ? plugin.getPreferences().getBoolean(ENABLED_PREFERENCE, DEFAULT_ENABLED)
+				: DEFAULT_ENABLED;
+	}
+
+	/**
+	 * Sets the time to live of cached responses of the endpoints whose path
+	 * matches the given regular expression. Replaces any time to live
+	 * previously set for the same expression.
+	 * @param pathPattern regular expression matching the whole path of the
+	 * endpoint
+	 * @param timeToLive in milliseconds. If 0, responses are always
+	 * revalidated.
+	 */
+	public synchronized void setTimeToLive(String pathPattern, long timeToLive) {
+		for (int i = 0; i < timesToLive.size(); i++) {
+			if (timesToLive.get(i).pattern.pattern().equals(pathPattern)) {
+				timesToLive.remove(i);
+				break;
+			}
+		}
+		timesToLive.add(new EndpointTimeToLive(Pattern.compile(pathPattern), timeToLive));
+	}
+
+	/**
+	 *
+	 * @param path
+	 * @return time to live in milliseconds of cached responses for the
+	 * endpoint with the given path. 0 if they are always revalidated.
+	 */
+	public synchronized long getTimeToLive(String path) {
+		if (path != null) {
+			// Ignore trailing slashes
+			while (path.length() > 1 && path.endsWith("/")) { //$NON-NLS-1$
+				path = path.substring(0, path.length() - 1);
+			}
+			for (EndpointTimeToLive timeToLive : timesToLive) {
+				if (timeToLive.pattern.matcher(path).matches()) {
+					return timeToLive.timeToLive;
+				}
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Removes all cached responses.
+	 */
+	public synchronized void invalidate() {
+		responses.clear();
+		generation++;
+	}
+
+	public synchronized int size() {
+		return responses.size();
+	}
+
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+			throws IOException {
+		if (request.getMethod() != HttpMethod.GET) {
+			try {
+				return execution.execute(request, body);
+			}
+			finally {
+				// Invalidate even if the request failed, as the change may
+				// still have been applied
+				invalidate();
+			}
+		}
+
+		if (request.getHeaders().containsKey(RANGE) || isFilesPath(request.getURI().getPath())) {
+			// Responses for a part of a resource, like the content appended
+			// to a log file, are not cached, as they are keyed by URI only.
+			// Files of application instances are not cached either, as they
+			// may be large and are read from the start only once
+			return execution.execute(request, body);
+		}
+
+		String key = request.getURI().toString();
+		long timeToLive = getTimeToLive(request.getURI().getPath());
+		CachedResponse cached;
+		long requestGeneration;
+		synchronized (this) {
+			cached = responses.get(key);
+			requestGeneration = generation;
+		}
+
+		if (cached != null) {
+			if (System.currentTimeMillis() - cached.validated < timeToLive) {
+				return cached.toResponse();
+			}
+			if (cached.etag != null) {
+				request.getHeaders().set(IF_NONE_MATCH, cached.etag);
+			}
+			if (cached.lastModified != null) {
+				request.getHeaders().set(IF_MODIFIED_SINCE, cached.lastModified);
+			}
+		}
+
+		ClientHttpResponse response = execution.execute(request, body);
+
+		if (cached != null && response.getRawStatusCode() == HttpStatus.NOT_MODIFIED.value()) {
+			response.close();
+			cached.validated = System.currentTimeMillis();
+			return cached.toResponse();
+		}
+
+		if (!isCacheable(response, timeToLive)) {
+			if (cached != null) {
+				synchronized (this) {
+					responses.remove(key);
+				}
+			}
+			return response;
+		}
+
+		// The content length may not be known, so only buffer enough of the
+		// body to tell whether it is small enough to be cached
+		InputStream responseBody = response.getBody();
+		byte[] bytes;
+		boolean passThrough = false;
+		try {
+			bytes = read(responseBody, MAX_ENTRY_SIZE + 1);
+			passThrough = bytes.length > MAX_ENTRY_SIZE;
+		}
+		finally {
+			if (!passThrough) {
+				response.close();
+			}
+		}
+
+		if (passThrough) {
+			synchronized (this) {
+				responses.remove(key);
+			}
+			return new PassThroughResponse(response, bytes, responseBody);
+		}
+
+		CachedResponse toCache = new CachedResponse(response, bytes);
+		synchronized (this) {
+			if (requestGeneration == generation) {
+				responses.put(key, toCache);
+			}
+		}
+		return toCache.toResponse();
+	}
+
+	/**
+	 *
+	 * @param path
+	 * @return true if the path is that of the files of an application
+	 * instance, whose responses are never cached
+	 */
+	protected boolean isFilesPath(String path) {
+		return path != null && FILES_PATH.matcher(path).matches();
+	}
+
+	/**
+	 * Reads the given stream up to the given number of bytes.
+	 * @param in may be null if there is no content
+	 * @param max
+	 * @return bytes read. Fewer than the given maximum only if the end of the
+	 * stream was reached.
+	 * @throws IOException
+	 */
+	protected static byte[] read(InputStream in, int max) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		if (in != null) {
+			byte[] buffer = new byte[4096];
+			int count;
+			while (out.size() < max && (count = in.read(buffer, 0, Math.min(buffer.length, max - out.size()))) >= 0) {
+				out.write(buffer, 0, count);
+			}
+		}
+		return out.toByteArray();
+	}
+
+	protected boolean isCacheable(ClientHttpResponse response, long timeToLive) throws IOException {
+		if (response.getRawStatusCode() != HttpStatus.OK.value()) {
+			return false;
+		}
+		HttpHeaders headers = response.getHeaders();
+		String cacheControl = headers.getCacheControl();
+		if (cacheControl != null && cacheControl.contains(NO_STORE)) {
+			return false;
+		}
+		if (headers.getContentLength() > MAX_ENTRY_SIZE) {
+			return false;
+		}
+		return timeToLive > 0 || headers.getETag() != null || headers.getFirst(LAST_MODIFIED) != null;
+	}
+
+	private static class EndpointTimeToLive {
+
+		private final Pattern pattern;
+
+		private final long timeToLive;
+
+		EndpointTimeToLive(Pattern pattern, long timeToLive) {
+			this.pattern = pattern;
+			this.timeToLive = timeToLive;
+		}
+	}
+
+	private static class CachedResponse {
+
+		private final HttpStatus status;
+
+		private final String statusText;
+
+		private final HttpHeaders headers;
+
+		private final byte[] body;
+
+		private final String etag;
+
+		private final String lastModified;
+
+		private volatile long validated;
+
+		CachedResponse(ClientHttpResponse response, byte[] body) throws IOException {
+			this.status = response.getStatusCode();
+			this.statusText = response.getStatusText();
+			this.headers = new HttpHeaders();
+			this.headers.putAll(response.getHeaders());
+			this.body = body;
+			this.etag = headers.getETag();
+			this.lastModified = headers.getFirst(LAST_MODIFIED);
+			this.validated = System.currentTimeMillis();
+		}
+
+		ClientHttpResponse toResponse() {
+			return new ClientHttpResponse() {
+
+				public InputStream getBody() throws IOException {
+					return new ByteArrayInputStream(body);
+				}
+
+				public HttpHeaders getHeaders() {
+					return HttpHeaders.readOnlyHttpHeaders(headers);
+				}
+
+				public HttpStatus getStatusCode() throws IOException {
+					return status;
+				}
+
+				public int getRawStatusCode() throws IOException {
+					return status.value();
+				}
+
+				public String getStatusText() throws IOException {
+					return statusText;
+				}
+
+				public void close() {
+					// Nothing to release
+				}
+			};
+		}
+	}
+
+	/**
+	 * Response too large to be cached, whose body is the bytes already
+	 * buffered followed by the rest of the original body.
+	 */
+	private static class PassThroughResponse implements ClientHttpResponse {
+
+		private final ClientHttpResponse response;
+
+		private final InputStream body;
+
+		PassThroughResponse(ClientHttpResponse response, byte[] buffered, InputStream rest) {
+			this.response = response;
+			this.body = new SequenceInputStream(new ByteArrayInputStream(buffered), rest);
+		}
+
+		public InputStream getBody() throws IOException {
+			return body;
+		}
+
+		public HttpHeaders getHeaders() {
+			return response.getHeaders();
+		}
+
+		public HttpStatus getStatusCode() throws IOException {
+			return response.getStatusCode();
+		}
+
+		public int getRawStatusCode() throws IOException {
+			return response.getRawStatusCode();
+		}
+
+		public String getStatusText() throws IOException {
+			return response.getStatusText();
+		}
+
+		public void close() {
+			response.close();
+		}
+	}
+}
@@ -27,6 +27,8 @@ import org.cloudfoundry.ide.eclipse.server.core.internal.CloudErrorUtil;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudFoundryPlugin;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudFoundryServer;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudServerEvent;
+import org.cloudfoundry.ide.eclipse.server.core.internal.DeployedResourceCache;
+import org.cloudfoundry.ide.eclipse.server.core.internal.DeployedResourceCache.CachedDeployedApplication;
 import org.cloudfoundry.ide.eclipse.server.core.internal.Messages;
 import org.cloudfoundry.ide.eclipse.server.core.internal.ServerEventHandler;
 import org.cloudfoundry.ide.eclipse.server.core.internal.application.ModuleChangeEvent;
@@ -124,6 +126,17 @@ public class DeleteModulesOperation extends BehaviourOperation {
 
 			}
 
+			// Content recorded for the application is no longer deployed.
+			// Its persisted resource fingerprints are removed as well, so that
+			// a later application with the same name does not inherit them
+			if (CloudFoundryPlugin.getDefault() != null) {
+				CloudFoundryPlugin.getDefault().getDeployedContentDigests()
+						.remove(getBehaviour().getServer().getId(), appModule.getDeployedApplicationName());
+				DeployedResourceCache resourceCache = CloudFoundryPlugin.getDefault().getDeployedResourcesCache();
+				resourceCache.remove(new CachedDeployedApplication(appModule.getDeployedApplicationName()));
+				resourceCache.save();
+			}
+
 			CloudFoundryPlugin.getCallback().stopApplicationConsole(appModule, cloudServer);
 
 			// Delete the module locally
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal.client;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudfoundry.client.lib.archive.ApplicationArchive;
+import org.cloudfoundry.client.lib.archive.ApplicationArchive.Entry;
+import org.cloudfoundry.ide.eclipse.server.core.internal.CloudUtil;
+
+/**
+ * Records a digest of the whole content of each application after it was
+ * successfully uploaded, so that an update and restart of an application
+ * whose content has not changed since can skip the upload entirely.
+ * <p/>
+ * Digests are recorded together with the GUID of the Cloud Foundry
+ * application, so that an application that was deleted and created again
+ * outside the tooling is not mistaken for the one the content was uploaded
+ * to, and with the time the application was last updated in the Cloud space
+ * once it was restarted, so that content pushed to the same application
+ * outside the tooling is not mistaken for the recorded content. If either is
+ * not known, the content is always considered changed. Digests are only kept
+ * for the current session.
+ */
+public class DeployedContentDigests {
+
+	private static class DeployedContent {
+
+		final String appGuid;
+
+		final Date updated;
+
+		final String digest;
+
+		DeployedContent(String appGuid, Date updated, String digest) {
+			this.appGuid = appGuid;
+			this.updated = updated;
+			this.digest = digest;
+		}
+	}
+
+	private final Map<String, DeployedContent> contents = new HashMap<String, DeployedContent>();
+
+	/**
+	 * 
+	 * @param serverId ID of the server the application was uploaded to
+	 * @param appName
+	 * @param appGuid GUID of the application the content was uploaded to. May
+	 * be null if not known, in which case the recorded content is never
+	 * considered unchanged.
+	 * @param updated time the application was last updated in the Cloud
+	 * space, as read back once it was restarted with the content. May be null
+	 * if not known, in which case the recorded content is never considered
+	 * unchanged.
+	 * @param digest whole content digest, as computed by
+	 * {@link #getDigest(ApplicationArchive)}. If null, any recorded digest is
+	 * removed.
+	 */
+	public synchronized void record(String serverId, String appName, String appGuid, Date updated, String digest) {
+		if (digest == null) {
+			remove(serverId, appName);
+		}
+		else {
+			contents.put(getKey(serverId, appName), new DeployedContent(appGuid, updated, digest));
+		}
+	}
+
+	/**
+	 * 
+	 * @param serverId
+	 * @param appName
+	 * @param appGuid GUID of the existing application
+	 * @param updated time the existing application was last updated in the
+	 * Cloud space
+	 * @param digest digest of the content about to be uploaded
+	 * @return true if the given content was the last content successfully
+	 * uploaded to the same application, and the application was not updated
+	 * since
+	 */
+	public synchronized boolean isUnchanged(String serverId, String appName, String appGuid, Date updated,
+			String digest) {
+		DeployedContent content = contents.get(getKey(serverId, appName));
+		return content != null && digest != null && appGuid != null && updated != null
+				&& appGuid.equals(content.appGuid) && updated.equals(content.updated) && digest.equals(content.digest);
+	}
+
+	public synchronized void remove(String serverId, String appName) {
+		contents.remove(getKey(serverId, appName));
+	}
+
+	protected String getKey(String serverId, String appName) {
+		return serverId + '/' + appName;
+	}
+
+	/**
+	 * Computes a digest of the names of all entries in the archive and the
+	 * sha1 of all file entries. The entry sha1s are also needed for resource
+	 * matching when the archive is uploaded, and are computed only once.
+	 * @param archive
+	 * @return hex encoded digest, or null if the sha1 of a file entry is not
+	 * available
+	 */
+	public static String getDigest(ApplicationArchive archive) {
+		List<Entry> entries = new ArrayList<Entry>();
+		for (Entry entry : archive.getEntries()) {
+			entries.add(entry);
+		}
+		Collections.sort(entries, new Comparator<Entry>() {
+			public int compare(Entry entry1, Entry entry2) {
+				return entry1.getName().compareTo(entry2.getName());
+			}
+		});
+
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+			for (Entry entry : entries) {
+				digest.update(entry.getName().getBytes("UTF-8")); //$NON-NLS-1$
+				digest.update((byte) 0);
+				if (!entry.isDirectory()) {
+					byte[] sha1 = entry.getSha1Digest();
+					if (sha1 == null) {
+						return null;
+					}
+					digest.update(sha1);
+				}
+			}
+			return CloudUtil.toHex(digest.digest());
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
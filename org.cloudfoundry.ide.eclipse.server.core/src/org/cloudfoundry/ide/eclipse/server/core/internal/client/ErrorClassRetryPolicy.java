@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal.client;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.cloudfoundry.ide.eclipse.server.core.internal.CloudErrorUtil;
+import org.eclipse.core.runtime.CoreException;
+
+/**
+ * Retries a request according to the class of the error that made it fail.
+ * Each class of error has its own policy, and errors that match none of the
+ * classes are not retried. Policies are immutable, so they may be shared.
+ * Adding a policy for a class of error returns a new policy.
+ */
+public class ErrorClassRetryPolicy extends RetryPolicy {
+
+	/**
+	 * Classes of errors after which a request may succeed if attempted again
+	 */
+	public enum ErrorClass {
+
+		/**
+		 * The application is still being staged
+		 */
+		STAGING_NOT_FINISHED {
+			@Override
+			public boolean matches(Throwable error) {
+				return CloudErrorUtil.isNotFinishedStagingError(error);
+			}
+		},
+
+		/**
+		 * The application is in a stopped state, for example because it is
+		 * still starting
+		 */
+		APP_STOPPED_STATE {
+			@Override
+			public boolean matches(Throwable error) {
+				return error instanceof Exception && CloudErrorUtil.isAppStoppedStateError((Exception) error);
+			}
+		};
+
+		public abstract boolean matches(Throwable error);
+	}
+
+	private final Map<ErrorClass, RetryPolicy> policies;
+
+	/**
+	 * Creates a policy that retries no error.
+	 */
+	public ErrorClassRetryPolicy() {
+		this(new LinkedHashMap<ErrorClass, RetryPolicy>());
+	}
+
+	private ErrorClassRetryPolicy(Map<ErrorClass, RetryPolicy> policies) {
+		this.policies = policies;
+	}
+
+	/**
+	 * Returns a copy of this policy that uses the given policy for errors of
+	 * the given class. This policy is not changed. If an error matches more
+	 * than one class, the policy of the class that was set first is used.
+	 * @param errorClass
+	 * @param policy
+	 * @return new policy
+	 */
+	public ErrorClassRetryPolicy withPolicy(ErrorClass errorClass, RetryPolicy policy) {
+		Map<ErrorClass, RetryPolicy> copy = new LinkedHashMap<ErrorClass, RetryPolicy>(policies);
+		copy.put(errorClass, policy);
+		return new ErrorClassRetryPolicy(copy);
+	}
+
+	@Override
+	public long getDelay(Throwable error, int attempts, long waited) {
+		// Client errors are often wrapped by the request
+		if (error instanceof CoreException && error.getCause() != null) {
+			error = error.getCause();
+		}
+		for (Map.Entry<ErrorClass, RetryPolicy> entry : policies.entrySet()) {
+			if (entry.getKey().matches(error)) {
+				return entry.getValue().getDelay(error, attempts, waited);
+			}
+		}
+		return -1;
+	}
+}
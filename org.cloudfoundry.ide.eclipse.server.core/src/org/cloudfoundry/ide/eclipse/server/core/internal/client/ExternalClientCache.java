@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal.client;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.cloudfoundry.client.lib.CloudFoundryOperations;
+
+/**
+ * Keeps clients that were created and logged in for credential validation or
+ * to look up orgs and spaces outside of a server behaviour, so that wizards
+ * that repeat these lookups while the user edits the server do not log in
+ * again each time.
+ * <p/>
+ * Clients are keyed by server URL, user name and self-signed setting, and are
+ * only returned for the same password they were logged in with. Clients
+ * expire after a short time, and are removed when the credentials for the URL
+ * and user change, or when a login with them fails.
+ */
+public class ExternalClientCache {
+
+	/**
+	 * Time in milliseconds after which a cached client is no longer used
+	 */
+	public static final long DEFAULT_TIME_TO_LIVE = 5 * 60 * 1000;
+
+	public static final int MAX_CLIENTS = 16;
+
+	private static final ExternalClientCache DEFAULT = new ExternalClientCache(DEFAULT_TIME_TO_LIVE);
+
+	private final long timeToLive;
+
+	private final Map<String, CachedClient> clients = new LinkedHashMap<String, CachedClient>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CachedClient> eldest) {
+			return size() > MAX_CLIENTS;
+		}
+	};
+
+	/**
+	 *
+	 * @param timeToLive in milliseconds
+	 */
+	public ExternalClientCache(long timeToLive) {
+		this.timeToLive = timeToLive;
+	}
+
+	public static ExternalClientCache getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 *
+	 * @param url
+	 * @param userName
+	 * @param password
+	 * @param selfSigned
+	 * @return logged in client for the given credentials, or null if there is
+	 * none, or it has expired.
+	 */
+	public synchronized CloudFoundryOperations get(String url, String userName, String password, boolean selfSigned) {
+		String key = getKey(url, userName, selfSigned);
+		CachedClient cached = clients.get(key);
+		if (cached == null) {
+			return null;
+		}
+		if (currentTime() - cached.created >= timeToLive) {
+			clients.remove(key);
+			return null;
+		}
+		return Arrays.equals(cached.passwordDigest, digest(password)) ? cached.client : null;
+	}
+
+	/**
+	 * Adds a client that was successfully logged in with the given
+	 * credentials. Replaces any client for the same URL, user and self-signed
+	 * setting.
+	 */
+	public synchronized void put(String url, String userName, String password, boolean selfSigned,
+			CloudFoundryOperations client) {
+		clients.put(getKey(url, userName, selfSigned), new CachedClient(client, digest(password), currentTime()));
+	}
+
+	/**
+	 * Removes the clients for the given URL and user, for example because
+	 * their credentials changed.
+	 * @param url
+	 * @param userName
+	 */
+	public synchronized void invalidate(String url, String userName) {
+		clients.remove(getKey(url, userName, true));
+		clients.remove(getKey(url, userName, false));
+	}
+
+	public synchronized void invalidateAll() {
+		clients.clear();
+	}
+
+	protected long currentTime() {
+		return System.currentTimeMillis();
+	}
+
+	protected static String getKey(String url, String userName, boolean selfSigned) {
+		return url + '\n' + userName + '\n' + selfSigned;
+	}
+
+	/**
+	 * Passwords are only kept as digests, as they are only needed to check
+	 * that a client is requested for the same credentials.
+	 */
+	protected static byte[] digest(String password) {
+		if (password == null) {
+			return new byte[0];
+		}
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(password.getBytes("UTF-8")); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static class CachedClient {
+
+		private final CloudFoundryOperations client;
+
+		private final byte[] passwordDigest;
+
+		private final long created;
+
+		CachedClient(CloudFoundryOperations client, byte[] passwordDigest, long created) {
+			this.client = client;
+			this.passwordDigest = passwordDigest;
+			this.created = created;
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Follows a file that only grows, like an application log, by reading its
+ * new content from a stream starting at a byte offset, and decoding it as
+ * UTF-8 into a writer.
+ * <p/>
+ * The offset is counted in bytes, so it can be sent as the start of a byte
+ * range request for the next content of the file. A multibyte character that
+ * is split between two reads is kept until its remaining bytes are read, and
+ * is only then written as a whole.
+ */
+public class FileTail {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+	private final CharsetDecoder decoder = UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+	/**
+	 * Bytes read but not decoded yet, which are the start of a multibyte
+	 * character when a read completes
+	 */
+	private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+
+	private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+	private long offset;
+
+	/**
+	 *
+	 * @return number of bytes of the file read so far, which is the offset of
+	 * the next content to read.
+	 */
+	public synchronized long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Reads the given content of the file to its end, and writes the decoded
+	 * characters to the writer. Content before the current offset, which the
+	 * stream contains if the server sent more of the file than requested, is
+	 * skipped.
+	 * @param content of the file
+	 * @param startOffset offset in the file of the first byte of the content
+	 * @param writer receiving the decoded characters
+	 * @return number of new bytes read
+	 * @throws IOException if the content failed to be read or written
+	 */
+	public synchronized long read(InputStream content, long startOffset, Writer writer) throws IOException {
+		long skip = offset - startOffset;
+		while (skip > 0) {
+			long skipped = content.skip(skip);
+			if (skipped <= 0) {
+				if (content.read() < 0) {
+					// The file is shorter than what was already read, and was
+					// likely replaced
+					return 0;
+				}
+				skipped = 1;
+			}
+			skip -= skipped;
+		}
+
+		long read = 0;
+		int count;
+		while ((count = content.read(bytes.array(), bytes.position(), bytes.remaining())) >= 0) {
+			if (count == 0) {
+				continue;
+			}
+			bytes.position(bytes.position() + count);
+			offset += count;
+			read += count;
+
+			bytes.flip();
+			CoderResult result;
+			do {
+				result = decoder.decode(bytes, chars, false);
+				if (chars.position() > 0) {
+					writer.write(chars.array(), 0, chars.position());
+					chars.clear();
+				}
+			}
+			while (result.isOverflow());
+			bytes.compact();
+		}
+		return read;
+	}
+
+	/**
+	 * Restarts reading the file from its beginning.
+	 */
+	public synchronized void reset() {
+		offset = 0;
+		bytes.clear();
+		chars.clear();
+		decoder.reset();
+	}
+}
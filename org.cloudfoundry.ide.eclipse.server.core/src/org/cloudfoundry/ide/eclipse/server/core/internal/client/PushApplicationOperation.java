@@ -120,12 +120,16 @@ public class PushApplicationOperation extends StartOperation {
 			ApplicationArchive applicationArchive, final IProgressMonitor monitor) throws CoreException {
 		String appName = appModule.getDeploymentInfo().getDeploymentName();
 
-		List<CloudApplication> existingApps = client.getApplications();
-		boolean found = false;
-		for (CloudApplication existingApp : existingApps) {
-			if (existingApp.getName().equals(appName)) {
-				found = true;
-				break;
+		// The application may already have been looked up while the archive
+		// was generated
+		boolean found = getExistingApplication() != null;
+		if (!found) {
+			List<CloudApplication> existingApps = client.getApplications();
+			for (CloudApplication existingApp : existingApps) {
+				if (existingApp.getName().equals(appName)) {
+					found = true;
+					break;
+				}
 			}
 		}
 
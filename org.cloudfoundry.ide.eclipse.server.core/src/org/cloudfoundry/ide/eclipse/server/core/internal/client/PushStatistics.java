@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal.client;
+
+import org.cloudfoundry.ide.eclipse.server.core.internal.Messages;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * Statistics for a single push of an application's resources to a Cloud
+ * Foundry server: how many resources were checked against the server, how
+ * many of those the server already had (and therefore were not uploaded),
+ * and how fast the remaining resources were uploaded.
+ */
+public class PushStatistics {
+
+	private final String appName;
+
+	private final long timeStamp;
+
+	private int resourcesChecked;
+
+	private long bytesChecked;
+
+	private int resourcesMatched;
+
+	private long bytesMatched;
+
+	private long bytesUploaded;
+
+	private long uploadDuration = -1;
+
+	public PushStatistics(String appName, long timeStamp) {
+		this.appName = appName;
+		this.timeStamp = timeStamp;
+	}
+
+	public String getAppName() {
+		return appName;
+	}
+
+	/**
+	 *
+	 * @return time when the push started, in milliseconds
+	 */
+	public long getTimeStamp() {
+		return timeStamp;
+	}
+
+	public int getResourcesChecked() {
+		return resourcesChecked;
+	}
+
+	public long getBytesChecked() {
+		return bytesChecked;
+	}
+
+	public int getResourcesMatched() {
+		return resourcesMatched;
+	}
+
+	/**
+	 *
+	 * @return bytes that were not uploaded as the server already had the
+	 * resources
+	 */
+	public long getBytesMatched() {
+		return bytesMatched;
+	}
+
+	/**
+	 *
+	 * @return uncompressed bytes of the resources that were uploaded
+	 */
+	public long getBytesUploaded() {
+		return bytesUploaded;
+	}
+
+	/**
+	 *
+	 * @return upload duration in milliseconds, or -1 if the upload did not
+	 * complete
+	 */
+	public long getUploadDuration() {
+		return uploadDuration;
+	}
+
+	/**
+	 *
+	 * @return upload throughput in bytes per second, or -1 if not known
+	 */
+	public long getThroughput() {
+		if (uploadDuration < 0) {
+			return -1;
+		}
+		return uploadDuration > 0 ? bytesUploaded * 1000 / uploadDuration : bytesUploaded * 1000;
+	}
+
+	void setChecked(int resources, long bytes) {
+		this.resourcesChecked = resources;
+		this.bytesChecked = bytes;
+	}
+
+	void setMatched(int resources, long bytes) {
+		this.resourcesMatched = resources;
+		this.bytesMatched = bytes;
+	}
+
+	void setBytesUploaded(long bytesUploaded) {
+		this.bytesUploaded = bytesUploaded;
+	}
+
+	void setUploadDuration(long uploadDuration) {
+		this.uploadDuration = uploadDuration;
+	}
+
+	/**
+	 *
+	 * @return message summarising the statistics, suitable to display in the
+	 * application console
+	 */
+	public String getMessage() {
+		String message = NLS.bind(Messages.CONSOLE_PUSH_RESOURCES_MATCHED,
+				new Object[] { resourcesMatched, resourcesChecked, formatBytes(bytesMatched),
+						formatBytes(bytesChecked) });
+		if (uploadDuration >= 0) {
+			message += '\n' + NLS.bind(Messages.CONSOLE_PUSH_UPLOADED,
+					new Object[] { formatBytes(bytesUploaded), uploadDuration, formatBytes(getThroughput()) });
+		}
+		return message;
+	}
+
+	public static String formatBytes(long bytes) {
+		if (bytes < 1024) {
+			return bytes + " B"; //$NON-NLS-1$
+		}
+		String[] units = { "KB", "MB", "GB", "TB" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		double value = bytes;
+		int unit = -1;
+		while (value >= 1024 && unit < units.length - 1) {
+			value /= 1024;
+			unit++;
+		}
+		return String.format("%.1f %s", value, units[unit]); //$NON-NLS-1$
+	}
+}
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal.client;
+
+import java.util.Set;
+
+import org.cloudfoundry.client.lib.UploadStatusCallback;
+import org.cloudfoundry.client.lib.archive.ApplicationArchive;
+import org.cloudfoundry.client.lib.archive.ApplicationArchive.Entry;
+import org.cloudfoundry.ide.eclipse.server.core.internal.Messages;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * Upload callback that records {@link PushStatistics} for an application
+ * push, and reports upload progress in the given monitor. All callback
+ * events are forwarded to a delegate callback.
+ * <p/>
+ * The CF client invokes the callback in the following order: resources are
+ * checked against the server, the names of the resources the server already
+ * has are received, the payload of the remaining resources is processed and
+ * uploaded, and finally progress is reported while the server processes the
+ * upload.
+ */
+public class PushStatisticsCallback implements UploadStatusCallback {
+
+	private final UploadStatusCallback delegate;
+
+	private final ApplicationArchive archive;
+
+	private final IProgressMonitor monitor;
+
+	private final PushStatistics statistics;
+
+	private long uploadStart = -1;
+
+	public PushStatisticsCallback(String appName, ApplicationArchive archive, UploadStatusCallback delegate,
+			IProgressMonitor monitor) {
+		this.archive = archive;
+		this.delegate = delegate != null ? delegate : UploadStatusCallback.NONE;
+		this.monitor = monitor;
+		this.statistics = new PushStatistics(appName, System.currentTimeMillis());
+	}
+
+	public void onCheckResources() {
+		int resources = 0;
+		long bytes = 0;
+		for (Entry entry : archive.getEntries()) {
+			if (!entry.isDirectory()) {
+				resources++;
+				bytes += getSize(entry);
+			}
+		}
+		statistics.setChecked(resources, bytes);
+		subTask(NLS.bind(Messages.PushStatisticsCallback_CHECKED_RESOURCES, resources,
+				PushStatistics.formatBytes(bytes)));
+
+		delegate.onCheckResources();
+	}
+
+	public void onMatchedFileNames(Set<String> matchedFileNames) {
+		// Compute before notifying the delegate, as it may narrow the archive
+		// entries to only those that are uploaded
+		int resources = 0;
+		long bytes = 0;
+		if (matchedFileNames != null) {
+			for (Entry entry : archive.getEntries()) {
+				if (!entry.isDirectory() && matchedFileNames.contains(entry.getName())) {
+					resources++;
+					bytes += getSize(entry);
+				}
+			}
+		}
+		statistics.setMatched(resources, bytes);
+
+		delegate.onMatchedFileNames(matchedFileNames);
+	}
+
+	public void onProcessMatchedResources(int length) {
+		statistics.setBytesUploaded(length);
+		subTask(NLS.bind(Messages.PushStatisticsCallback_UPLOADING, PushStatistics.formatBytes(length)));
+		uploadStart = System.currentTimeMillis();
+
+		delegate.onProcessMatchedResources(length);
+	}
+
+	public boolean onProgress(String status) {
+		// The first progress event is received once the upload request has
+		// completed
+		uploadCompleted();
+		return delegate.onProgress(status);
+	}
+
+	/**
+	 * Records the end of the upload, if not already recorded through a
+	 * progress event. Should be invoked once the CF client upload returns.
+	 */
+	public void uploadCompleted() {
+		if (uploadStart >= 0 && statistics.getUploadDuration() < 0) {
+			statistics.setUploadDuration(System.currentTimeMillis() - uploadStart);
+		}
+	}
+
+	/**
+	 *
+	 * @return statistics recorded so far for the push. Never null.
+	 */
+	public PushStatistics getStatistics() {
+		return statistics;
+	}
+
+	protected long getSize(Entry entry) {
+		long size = entry.getSize();
+		return size > 0 ? size : 0;
+	}
+
+	protected void subTask(String label) {
+		if (monitor != null) {
+			monitor.subTask(label);
+		}
+	}
+}
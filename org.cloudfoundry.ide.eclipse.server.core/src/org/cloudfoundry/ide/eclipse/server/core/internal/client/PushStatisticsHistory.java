@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rolling history of the most recent {@link PushStatistics} for each
+ * application, used to quantify how much resource matching and incremental
+ * publishing save on uploads.
+ */
+public class PushStatisticsHistory {
+
+	public static final int DEFAULT_MAX_ENTRIES_PER_APP = 20;
+
+	private final int maxEntriesPerApp;
+
+	private final Map<String, LinkedList<PushStatistics>> history = new HashMap<String, LinkedList<PushStatistics>>();
+
+	public PushStatisticsHistory() {
+		this(DEFAULT_MAX_ENTRIES_PER_APP);
+	}
+
+	public PushStatisticsHistory(int maxEntriesPerApp) {
+		this.maxEntriesPerApp = maxEntriesPerApp;
+	}
+
+	/**
+	 *
+	 * @param serverUrl url of the server the application was pushed to
+	 * @param statistics
+	 */
+	public synchronized void add(String serverUrl, PushStatistics statistics) {
+		String key = getKey(serverUrl, statistics.getAppName());
+		LinkedList<PushStatistics> appHistory = history.get(key);
+		if (appHistory == null) {
+			appHistory = new LinkedList<PushStatistics>();
+			history.put(key, appHistory);
+		}
+		appHistory.addLast(statistics);
+		while (appHistory.size() > maxEntriesPerApp) {
+			appHistory.removeFirst();
+		}
+	}
+
+	/**
+	 *
+	 * @param serverUrl
+	 * @param appName
+	 * @return most recent statistics for the application, oldest first. Never
+	 * null.
+	 */
+	public synchronized List<PushStatistics> getHistory(String serverUrl, String appName) {
+		LinkedList<PushStatistics> appHistory = history.get(getKey(serverUrl, appName));
+		return appHistory != null ? new ArrayList<PushStatistics>(appHistory) : new ArrayList<PushStatistics>(0);
+	}
+
+	/**
+	 *
+	 * @param serverUrl
+	 * @param appName
+	 * @return fraction between 0 and 1 of the checked bytes in the recorded
+	 * pushes of the application that did not need to be uploaded.
+	 */
+	public synchronized double getMatchedRatio(String serverUrl, String appName) {
+		long checked = 0;
+		long matched = 0;
+		for (PushStatistics statistics : getHistory(serverUrl, appName)) {
+			checked += statistics.getBytesChecked();
+			matched += statistics.getBytesMatched();
+		}
+		return checked > 0 ? (double) matched / checked : 0;
+	}
+
+	public synchronized void clear(String serverUrl, String appName) {
+		history.remove(getKey(serverUrl, appName));
+	}
+
+	protected String getKey(String serverUrl, String appName) {
+		return serverUrl + '/' + appName;
+	}
+}
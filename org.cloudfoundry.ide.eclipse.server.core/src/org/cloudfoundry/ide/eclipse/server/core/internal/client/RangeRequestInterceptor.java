@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal.client;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Requests a byte range of the application instance files requested by the
+ * current thread, for client operations that do not support ranges
+ * themselves, like opening an application file as a stream.
+ * <p/>
+ * The range applies to all file requests of the thread until it is cleared, so
+ * it should be set right before the client operation and cleared in a finally
+ * block.
+ */
+public class RangeRequestInterceptor implements ClientHttpRequestInterceptor {
+
+	static final String RANGE = "Range"; //$NON-NLS-1$
+
+	private static final String FILES_PATH = "/files/"; //$NON-NLS-1$
+
+	private static final ThreadLocal<Long> rangeStart = new ThreadLocal<Long>();
+
+	/**
+	 * Sets the byte offset from which the responses to file requests of the
+	 * current thread start.
+	 * @param start byte offset, or null to request whole responses again.
+	 */
+	public static void setRangeStart(Long start) {
+		if (start != null) {
+			rangeStart.set(start);
+		}
+		else {
+			rangeStart.remove();
+		}
+	}
+
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+			throws IOException {
+		Long start = rangeStart.get();
+		if (start != null && request.getMethod() == HttpMethod.GET && isFileRequest(request)
+				&& !request.getHeaders().containsKey(RANGE)) {
+			request.getHeaders().set(RANGE, "bytes=" + start + '-'); //$NON-NLS-1$
+		}
+		return execution.execute(request, body);
+	}
+
+	/**
+	 * Client operations on files may look up the application first, whose
+	 * responses must not be truncated, so only requests for application
+	 * instance files get a range.
+	 */
+	protected static boolean isFileRequest(HttpRequest request) {
+		String path = request.getURI().getPath();
+		return path != null && path.contains(FILES_PATH);
+	}
+}
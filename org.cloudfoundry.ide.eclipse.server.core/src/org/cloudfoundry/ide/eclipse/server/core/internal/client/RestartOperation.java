@@ -21,6 +21,7 @@ package org.cloudfoundry.ide.eclipse.server.core.internal.client;
 
 import org.cloudfoundry.client.lib.CloudFoundryOperations;
 import org.cloudfoundry.client.lib.StartingInfo;
+import org.cloudfoundry.client.lib.StreamingLogToken;
 import org.cloudfoundry.ide.eclipse.server.core.AbstractAppStateTracker;
 import org.cloudfoundry.ide.eclipse.server.core.internal.ApplicationAction;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudErrorUtil;
@@ -65,6 +66,7 @@ public class RestartOperation extends ApplicationOperation {
 	protected void performDeployment(CloudFoundryApplicationModule appModule, IProgressMonitor monitor)
 			throws CoreException {
 		final Server server = (Server) getBehaviour().getServer();
+		StreamingLogToken logToken = null;
 
 		try {
 			appModule.setErrorStatus(null);
@@ -84,8 +86,7 @@ public class RestartOperation extends ApplicationOperation {
 
 			// Update the module with the latest CloudApplication from the
 			// client before starting the application
-			appModule = getBehaviour().updateCloudModule(appModule.getDeployedApplicationName(),
-					subMonitor.newChild(20));
+			appModule = updateCloudModule(appModule, subMonitor.newChild(20));
 
 			final CloudFoundryApplicationModule cloudModule = appModule;
 
@@ -105,6 +106,12 @@ public class RestartOperation extends ApplicationOperation {
 				CloudFoundryPlugin.getCallback().startApplicationConsole(getBehaviour().getCloudFoundryServer(),
 						cloudModule, 0, subMonitor.newChild(20));
 
+				// Listen to the application logs, so that a start reported in
+				// the logs completes the wait without waiting for the next
+				// poll of the application state
+				final ApplicationStartDetector startDetector = new ApplicationStartDetector(deploymentName);
+				logToken = getBehaviour().addApplicationLogListener(deploymentName, startDetector);
+
 				getBehaviour().new BehaviourRequest<Void>(startLabel) {
 					@Override
 					protected Void doRun(final CloudFoundryOperations client, SubMonitor progress) throws CoreException, OperationCanceledException {
@@ -146,7 +153,7 @@ public class RestartOperation extends ApplicationOperation {
 
 						// Now verify that the application did start
 						try {
-							if (!RestartOperation.this.getBehaviour().waitForStart(client, deploymentName, progress)) {
+							if (!RestartOperation.this.getBehaviour().waitForStart(client, startDetector, progress)) {
 								server.setModuleState(getModules(), IServer.STATE_STOPPED);
 
 								throw new CoreException(new Status(IStatus.ERROR, CloudFoundryPlugin.PLUGIN_ID,
@@ -176,20 +183,7 @@ public class RestartOperation extends ApplicationOperation {
 						if (curTracker != null) {
 							// Wait for application to be ready or getting
 							// out of the starting state.
-							boolean isAppStarting = true;
-							while (isAppStarting && !progress.isCanceled()) {
-								if (curTracker.getApplicationState(cloudModule) == IServer.STATE_STARTING) {
-									try {
-										Thread.sleep(200);
-									}
-									catch (InterruptedException e) {
-										// Do nothing
-									}
-								}
-								else {
-									isAppStarting = false;
-								}
-							}
+							curTracker.waitWhileStarting(cloudModule, progress);
 							curTracker.stopTracking(cloudModule, progress);
 						}
 
@@ -210,6 +204,24 @@ public class RestartOperation extends ApplicationOperation {
 			server.setModulePublishState(getModules(), IServer.PUBLISH_STATE_UNKNOWN);
 			throw e;
 		}
+		finally {
+			if (logToken != null) {
+				logToken.cancel();
+			}
+		}
+	}
+
+	/**
+	 * Updates the given module with the latest Cloud application before the
+	 * application is started.
+	 * @param appModule
+	 * @param monitor
+	 * @return updated module, or null if the application no longer exists
+	 * @throws CoreException if failed to resolve the Cloud application
+	 */
+	protected CloudFoundryApplicationModule updateCloudModule(CloudFoundryApplicationModule appModule,
+			IProgressMonitor monitor) throws CoreException {
+		return getBehaviour().updateCloudModule(appModule.getDeployedApplicationName(), monitor);
 	}
 
 	@Override
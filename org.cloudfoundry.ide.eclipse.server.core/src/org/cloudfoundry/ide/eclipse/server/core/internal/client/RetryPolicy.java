@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal.client;
+
+/**
+ * Decides whether a failed client request is attempted again, and how long to
+ * wait before the next attempt.
+ * <p/>
+ * Policies must be immutable and stateless, so that they may be shared by any
+ * number of requests running concurrently. The state of a particular request, like the number of attempts
+ * made so far, is passed to the policy on each failure.
+ * @see BaseClientRequest#getRetryPolicy()
+ */
+public abstract class RetryPolicy {
+
+	/**
+	 * Policy that never attempts a request again.
+	 */
+	public static final RetryPolicy NO_RETRY = new RetryPolicy() {
+
+		@Override
+		public long getDelay(Throwable error, int attempts, long waited) {
+			return -1;
+		}
+	};
+
+	/**
+	 * 
+	 * @param error thrown by the last attempt. Never null.
+	 * @param attempts number of attempts made so far, including the one that
+	 * just failed. At least 1.
+	 * @param waited total time in milliseconds spent waiting between the
+	 * attempts made so far.
+	 * @return time in milliseconds to wait before the next attempt, or a value
+	 * less than or equal to 0 if the request should not be attempted again.
+	 */
+	public abstract long getDelay(Throwable error, int attempts, long waited);
+
+}
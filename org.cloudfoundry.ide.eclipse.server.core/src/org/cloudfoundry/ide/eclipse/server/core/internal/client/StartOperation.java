@@ -22,6 +22,7 @@
 package org.cloudfoundry.ide.eclipse.server.core.internal.client;
 
 import java.io.IOException;
+import java.util.Date;
 import java.util.Set;
 
 import org.cloudfoundry.client.lib.CloudFoundryOperations;
@@ -79,11 +80,34 @@ import org.eclipse.wst.server.core.internal.Server;
 @SuppressWarnings("restriction")
 public class StartOperation extends RestartOperation {
 
+	/**
+	 * If true, the application is looked up in the Cloud space while its
+	 * archive is generated and hashed, rather than after the archive is
+	 * complete.
+	 */
+	public static final String PIPELINED_DEPLOYMENT_PREFERENCE = CloudFoundryPlugin.PLUGIN_ID
+			+ ".deploy.pipelined"; //$NON-NLS-1$
+
+	public static final boolean DEFAULT_PIPELINED_DEPLOYMENT = true;
+
 	/**
 	 * 
 	 */
 	final protected boolean incrementalPublish;
 
+	/**
+	 * If true, the upload is skipped when the application content has not
+	 * changed since it was last successfully pushed, and the application is
+	 * only restarted.
+	 */
+	final protected boolean skipUnchangedUpload;
+
+	/**
+	 * Application looked up in the Cloud space while the archive was
+	 * generated. Null if it was not looked up ahead of the upload.
+	 */
+	private CloudApplication existingApplication;
+
 	/**
 	 * 
 	 * @param waitForDeployment
@@ -93,8 +117,14 @@ public class StartOperation extends RestartOperation {
 	 * @param alwaysStart if true, application will always start. if false,
 	 */
 	public StartOperation(CloudFoundryServerBehaviour behaviour, boolean incrementalPublish, IModule[] modules) {
+		this(behaviour, incrementalPublish, false, modules);
+	}
+
+	public StartOperation(CloudFoundryServerBehaviour behaviour, boolean incrementalPublish,
+			boolean skipUnchangedUpload, IModule[] modules) {
 		super(behaviour, modules);
 		this.incrementalPublish = incrementalPublish;
+		this.skipUnchangedUpload = skipUnchangedUpload;
 	}
 
 	@Override
@@ -113,6 +143,10 @@ public class StartOperation extends RestartOperation {
 			throws CoreException {
 		final Server server = (Server) getBehaviour().getServer();
 		final CloudFoundryServer cloudServer = getBehaviour().getCloudFoundryServer();
+		String contentDigest = null;
+		AsyncClientRequest<CloudApplication> applicationRequest = null;
+		ApplicationArchive applicationArchive = null;
+		existingApplication = null;
 
 		try {
 
@@ -143,8 +177,16 @@ public class StartOperation extends RestartOperation {
 
 				SubMonitor subMonitor = SubMonitor.convert(monitor, 100);
 
+				// Look up the application in the Cloud space while its archive
+				// is generated and hashed locally, so that the deployment
+				// waits for the longer of the two rather than both
+				if (isPipelinedDeployment()) {
+					applicationRequest = ClientRequestExecutor.submit(getBehaviour().getCloudApplicationRequest(
+							deploymentName));
+				}
+
 				subMonitor.subTask(generatingArchiveLabel);
-				ApplicationArchive applicationArchive = getBehaviour().generateApplicationArchiveFile(
+				applicationArchive = getBehaviour().generateApplicationArchiveFile(
 						appModule.getDeploymentInfo(), appModule, getModules(), server, incrementalPublish,
 						subMonitor.newChild(20));
 				if (applicationArchive == null) {
@@ -175,44 +217,235 @@ public class StartOperation extends RestartOperation {
 
 				subMonitor.worked(10);
 
-				final ApplicationArchive applicationArchiveFin = applicationArchive;
-				final CloudFoundryApplicationModule appModuleFin = appModule;
-				// Now push the application resources to the server
+				contentDigest = getContentDigest(applicationArchive);
+
+				if (applicationRequest != null) {
+					try {
+						existingApplication = applicationRequest.join(subMonitor);
+					}
+					catch (CoreException e) {
+						// A missing application is reported, or created, when
+						// it is pushed
+						if (!CloudErrorUtil.isNotFoundException(e)) {
+							throw e;
+						}
+					}
+				}
 
-				getBehaviour().new BehaviourRequest<Void>(getOperationName() + " - " + deploymentName) { //$NON-NLS-1$
-					@Override
-					protected Void doRun(final CloudFoundryOperations client, SubMonitor progress) throws CoreException, OperationCanceledException {
+				if (skipUnchangedUpload && applicationRequest == null) {
+					// The content is compared against the application as it
+					// currently is in the Cloud space, as it may have been
+					// deleted or replaced outside the IDE
+					existingApplication = lookUpApplication(deploymentName, subMonitor);
+				}
 
-						getBehaviour().printlnToConsole(appModuleFin, getRequestLabel());
+				if (skipUnchangedUpload && isContentUnchanged(appModule, existingApplication, contentDigest)) {
+					// Nothing to upload. Only restart the application.
+					getBehaviour().printlnToConsole(appModule, Messages.CONSOLE_APP_CONTENT_UNCHANGED);
+					closeArchive(applicationArchive);
+				}
+				else {
+					final ApplicationArchive applicationArchiveFin = applicationArchive;
+					final CloudFoundryApplicationModule appModuleFin = appModule;
+					// Now push the application resources to the server
 
-						// Check for cancel here prior to pushing the application
-						if (progress.isCanceled()) {
-						   throw new OperationCanceledException(Messages.bind(Messages.OPERATION_CANCELED, getRequestLabel()));
-						}
-						pushApplication(client, appModuleFin, applicationArchiveFin, progress);
+					getBehaviour().new BehaviourRequest<Void>(getOperationName() + " - " + deploymentName) { //$NON-NLS-1$
+						@Override
+						protected Void doRun(final CloudFoundryOperations client, SubMonitor progress) throws CoreException, OperationCanceledException {
 
-						CloudFoundryPlugin.trace("Application " + deploymentName //$NON-NLS-1$
-								+ " pushed to Cloud Foundry server."); //$NON-NLS-1$
+							getBehaviour().printlnToConsole(appModuleFin, getRequestLabel());
 
-						cloudServer.tagAsDeployed(getModule());
+							// Check for cancel here prior to pushing the application
+							if (progress.isCanceled()) {
+							   throw new OperationCanceledException(Messages.bind(Messages.OPERATION_CANCELED, getRequestLabel()));
+							}
+							pushApplication(client, appModuleFin, applicationArchiveFin, progress);
 
-						return null;
-					}
+							CloudFoundryPlugin.trace("Application " + deploymentName //$NON-NLS-1$
+									+ " pushed to Cloud Foundry server."); //$NON-NLS-1$
+
+							cloudServer.tagAsDeployed(getModule());
+
+							return null;
+						}
 
-				}.run(subMonitor.newChild(70));
+					}.run(subMonitor.newChild(70));
 
-				getBehaviour().printlnToConsole(appModule, Messages.CONSOLE_APP_PUSHED_MESSAGE);
+					// The upload changes the application in the Cloud space, so
+					// it is looked up again before it is started
+					existingApplication = null;
+
+					getBehaviour().printlnToConsole(appModule, Messages.CONSOLE_APP_PUSHED_MESSAGE);
+				}
 
 			}
 
 			super.performDeployment(appModule, monitor);
 
+			// Only record the content once the application was successfully
+			// restarted, as the upload itself may have failed. The content is
+			// recorded with the application as read back after the restart,
+			// so that a push to the same application outside the IDE, which
+			// updates it, is detected on the next update
+			CloudApplication restartedApplication = null;
+			if (contentDigest != null) {
+				restartedApplication = lookUpRestartedApplication(deploymentName, monitor);
+			}
+			recordContentDigest(appModule, restartedApplication, contentDigest);
+
 		}
 		catch (CoreException e) {
 			appModule.setErrorStatus(e);
 			server.setModulePublishState(getModules(), IServer.PUBLISH_STATE_UNKNOWN);
+			recordContentDigest(appModule, null, null);
 			throw e;
 		}
+		finally {
+			if (applicationRequest != null && !applicationRequest.isDone()) {
+				applicationRequest.cancel();
+			}
+			existingApplication = null;
+			// The archive is closed as soon as it is no longer needed, and at
+			// the latest here, so that its staging folder is released if the
+			// deployment failed or was cancelled before the upload
+			closeArchive(applicationArchive);
+		}
+	}
+
+	/**
+	 * 
+	 * @return true if applications are looked up in the Cloud space while
+	 * their archive is generated, as set in the plugin preferences, or by
+	 * default if the plugin is not available.
+	 */
+	public static boolean isPipelinedDeployment() {
+		CloudFoundryPlugin plugin = CloudFoundryPlugin.getDefault();
+		return plugin != null ? plugin.getPreferences().getBoolean(PIPELINED_DEPLOYMENT_PREFERENCE,
+				DEFAULT_PIPELINED_DEPLOYMENT) : DEFAULT_PIPELINED_DEPLOYMENT;
+	}
+
+	@Override
+	protected CloudFoundryApplicationModule updateCloudModule(CloudFoundryApplicationModule appModule,
+			IProgressMonitor monitor) throws CoreException {
+		if (existingApplication != null) {
+			// Only set if nothing was uploaded since the application was
+			// looked up, so the module is updated without looking up the
+			// application again
+			return getBehaviour().getCloudFoundryServer().updateModule(existingApplication,
+					appModule.getDeployedApplicationName(), monitor);
+		}
+		return super.updateCloudModule(appModule, monitor);
+	}
+
+	/**
+	 * 
+	 * @return application looked up in the Cloud space while the archive was
+	 * generated, or null if it was not looked up, or does not exist. Null once
+	 * the archive was uploaded.
+	 */
+	protected CloudApplication getExistingApplication() {
+		return existingApplication;
+	}
+
+	/**
+	 * 
+	 * @param archive
+	 * @return digest of the whole content of the archive, or null if not
+	 * available
+	 */
+	protected String getContentDigest(ApplicationArchive archive) {
+		if (CloudFoundryPlugin.getDefault() == null) {
+			return null;
+		}
+		return DeployedContentDigests.getDigest(archive);
+	}
+
+	/**
+	 * 
+	 * @param deploymentName
+	 * @param monitor
+	 * @return the application in the Cloud space, or null if it does not exist
+	 * @throws CoreException if the application failed to be looked up
+	 */
+	protected CloudApplication lookUpApplication(String deploymentName, IProgressMonitor monitor)
+			throws CoreException {
+		try {
+			return getBehaviour().getCloudApplication(deploymentName, monitor);
+		}
+		catch (CoreException e) {
+			if (CloudErrorUtil.isNotFoundException(e)) {
+				return null;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * 
+	 * @param appModule
+	 * @param application as currently found in the Cloud space, or null if it
+	 * does not exist
+	 * @param contentDigest
+	 * @return true if the given content was the last content successfully
+	 * pushed to the given application, and the application was not updated
+	 * since it was restarted with it. False if the application does not exist.
+	 */
+	protected boolean isContentUnchanged(CloudFoundryApplicationModule appModule, CloudApplication application,
+			String contentDigest) {
+		String appGuid = getAppGuid(application);
+		Date updated = getUpdated(application);
+		if (contentDigest == null || appGuid == null || updated == null || CloudFoundryPlugin.getDefault() == null) {
+			return false;
+		}
+		return CloudFoundryPlugin.getDefault().getDeployedContentDigests().isUnchanged(
+				getBehaviour().getServer().getId(), appModule.getDeployedApplicationName(), appGuid, updated,
+				contentDigest);
+	}
+
+	/**
+	 * 
+	 * @param deploymentName
+	 * @param monitor
+	 * @return the application as it is in the Cloud space after it was
+	 * restarted, or null if it failed to be looked up, in which case the
+	 * content is uploaded on the next update
+	 */
+	protected CloudApplication lookUpRestartedApplication(String deploymentName, IProgressMonitor monitor) {
+		try {
+			return lookUpApplication(deploymentName, monitor);
+		}
+		catch (CoreException e) {
+			CloudFoundryPlugin.logWarning(NLS.bind(Messages.StartOperation_RESTARTED_APP_LOOKUP_FAILED,
+					deploymentName, e.getMessage()));
+			return null;
+		}
+	}
+
+	/**
+	 * Records the content last pushed to the application. If the digest is
+	 * null, or the application is not known, the content of the application
+	 * is considered unknown, and the next push always uploads it.
+	 * @param appModule
+	 * @param application as read back after it was restarted with the
+	 * content. May be null.
+	 * @param contentDigest
+	 */
+	protected void recordContentDigest(CloudFoundryApplicationModule appModule, CloudApplication application,
+			String contentDigest) {
+		if (CloudFoundryPlugin.getDefault() != null) {
+			CloudFoundryPlugin.getDefault().getDeployedContentDigests().record(getBehaviour().getServer().getId(),
+					appModule.getDeployedApplicationName(), getAppGuid(application), getUpdated(application),
+					application != null ? contentDigest : null);
+		}
+	}
+
+	protected static Date getUpdated(CloudApplication application) {
+		return application != null && application.getMeta() != null ? application.getMeta().getUpdated() : null;
+	}
+
+	protected static String getAppGuid(CloudApplication application) {
+		return application != null && application.getMeta() != null && application.getMeta().getGuid() != null ? application
+				.getMeta().getGuid().toString() : null;
 	}
 
 	/**
@@ -240,17 +473,21 @@ public class StartOperation extends RestartOperation {
 
 		// [95636410] - verify that the application actually exists.
 		// Otherwise a cryptic error may be thrown and the user may not
-		// know that the upload failed because the application no longer exists
-		try {
-			getBehaviour().getCloudApplication(appName, monitor);
-		}
-		catch (CoreException e) {
-			if (CloudErrorUtil.isNotFoundException(e)) {
-				throw CloudErrorUtil.toCoreException(
-						NLS.bind(Messages.ERROR_FAILED_TO_PUSH_APP_DOES_NOT_EXIST, appName), e);
+		// know that the upload failed because the application no longer exists.
+		// Skipped if the application was already looked up while the
+		// archive was generated.
+		if (existingApplication == null) {
+			try {
+				getBehaviour().getCloudApplication(appName, monitor);
 			}
-			else {
-				throw e;
+			catch (CoreException e) {
+				if (CloudErrorUtil.isNotFoundException(e)) {
+					throw CloudErrorUtil.toCoreException(
+							NLS.bind(Messages.ERROR_FAILED_TO_PUSH_APP_DOES_NOT_EXIST, appName), e);
+				}
+				else {
+					throw e;
+				}
 			}
 		}
 
@@ -263,10 +500,11 @@ public class StartOperation extends RestartOperation {
 				// resources
 				// AFTER
 				// the server determines the list of missing file names.
+				PushStatisticsCallback statisticsCallback = null;
 				try {
 					if (applicationArchive instanceof CachingApplicationArchive) {
 						final CachingApplicationArchive cachingArchive = (CachingApplicationArchive) applicationArchive;
-						client.uploadApplication(appName, cachingArchive, new UploadStatusCallback() {
+						statisticsCallback = new PushStatisticsCallback(appName, cachingArchive, new UploadStatusCallback() {
 
 							public void onProcessMatchedResources(int length) {
 
@@ -283,15 +521,21 @@ public class StartOperation extends RestartOperation {
 							public boolean onProgress(String status) {
 								return false;
 							}
-						});
+						}, monitor);
+						client.uploadApplication(appName, cachingArchive, statisticsCallback);
 
 						// Once the application has run, do a clean up of the
 						// sha1
 						// cache for deleted resources
 
+						// Persist the sha1 entries computed for this push so
+						// they can be reused in later sessions
+						if (CloudFoundryPlugin.getDefault() != null) {
+							CloudFoundryPlugin.getDefault().getDeployedResourcesCache().save();
+						}
 					}
 					else {
-						client.uploadApplication(appName, applicationArchive, new UploadStatusCallback() {
+						statisticsCallback = new PushStatisticsCallback(appName, applicationArchive, new UploadStatusCallback() {
 
 							public void onProcessMatchedResources(int length) {
 
@@ -314,24 +558,20 @@ public class StartOperation extends RestartOperation {
 							public boolean onProgress(String status) {
 								return false;
 							}
-						});
+						}, monitor);
+						client.uploadApplication(appName, applicationArchive, statisticsCallback);
 					}
+
+					statisticsCallback.uploadCompleted();
+					reportPushStatistics(appModule, statisticsCallback.getStatistics());
+
 					// Check for cancel
 					if (monitor.isCanceled()) {
 						throw new OperationCanceledException(Messages.bind(Messages.OPERATION_CANCELED, getOperationName()));
 					}
 				}
 				finally {
-					if (applicationArchive instanceof CloudApplicationArchive) {
-						try {
-							((CloudApplicationArchive) applicationArchive).close();
-						}
-						catch (CoreException e) {
-							// Don't let errors in closing the archive stop the
-							// publish operation
-							CloudFoundryPlugin.logError(e);
-						}
-					}
+					closeArchive(applicationArchive);
 				}
 			}
 			else {
@@ -346,4 +586,35 @@ public class StartOperation extends RestartOperation {
 		}
 
 	}
+
+	protected void closeArchive(ApplicationArchive applicationArchive) {
+		if (applicationArchive instanceof CloudApplicationArchive) {
+			try {
+				((CloudApplicationArchive) applicationArchive).close();
+			}
+			catch (CoreException e) {
+				// Don't let errors in closing the archive stop the
+				// publish operation
+				CloudFoundryPlugin.logError(e);
+			}
+		}
+	}
+
+	/**
+	 * Records the statistics of a push in the application's push history, and
+	 * prints them to the application console.
+	 */
+	protected void reportPushStatistics(CloudFoundryApplicationModule appModule, PushStatistics statistics) {
+		try {
+			if (CloudFoundryPlugin.getDefault() != null) {
+				CloudFoundryPlugin.getDefault().getPushStatisticsHistory()
+						.add(getBehaviour().getCloudFoundryServer().getUrl(), statistics);
+			}
+			getBehaviour().printlnToConsole(appModule, statistics.getMessage());
+		}
+		catch (CoreException e) {
+			// Failing to report statistics should not fail the push
+			CloudFoundryPlugin.logError(e);
+		}
+	}
 }
@@ -37,6 +37,7 @@ import org.cloudfoundry.ide.eclipse.server.core.internal.Messages;
 import org.cloudfoundry.ide.eclipse.server.core.internal.application.ModuleChangeEvent;
 import org.cloudfoundry.ide.eclipse.server.core.internal.client.AppUrlChangeEvent;
 import org.cloudfoundry.ide.eclipse.server.core.internal.client.CloudFoundryApplicationModule;
+import org.cloudfoundry.ide.eclipse.server.core.internal.client.CancellableWait;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -97,11 +98,8 @@ public abstract class CloudRebelAppHandler implements CloudServerListener {
 				if (findRemotingAgent(appModule, server)) {
 					return true;
 				}
-				try {
-					Thread.sleep(3000);
-				}
-				catch (InterruptedException e) {
-					// Ignore. Proceed to get updated module anyway
+				if (!CancellableWait.waitFor(3000, subMonitor)) {
+					break;
 				}
 				appModule = server.getBehaviour().updateCloudModule(module, subMonitor.newChild(100));
 
@@ -31,8 +31,10 @@ import java.util.zip.ZipFile;
 
 import org.cloudfoundry.client.lib.archive.ApplicationArchive;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudErrorUtil;
+import org.cloudfoundry.ide.eclipse.server.core.internal.CloudFoundryPlugin;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudFoundryProjectUtil;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudFoundryServer;
+import org.cloudfoundry.ide.eclipse.server.core.internal.CloudUtil;
 import org.cloudfoundry.ide.eclipse.server.core.internal.application.CloudZipApplicationArchive;
 import org.cloudfoundry.ide.eclipse.server.core.internal.application.JavaWebApplicationDelegate;
 import org.cloudfoundry.ide.eclipse.server.core.internal.client.CloudFoundryApplicationModule;
@@ -84,6 +86,11 @@ public class JavaCloudFoundryArchiver {
 
 	private static final String MANIFEST_FILE = "MANIFEST.MF"; //$NON-NLS-1$
 
+	/**
+	 * Jar packaged for deployment in the archive staging area, if any
+	 */
+	private File tempJar;
+
 	public JavaCloudFoundryArchiver(CloudFoundryApplicationModule appModule,
 			CloudFoundryServer cloudServer) {
 		this.appModule = appModule;
@@ -92,6 +99,23 @@ public class JavaCloudFoundryArchiver {
 
 	public ApplicationArchive getApplicationArchive(IProgressMonitor monitor)
 			throws CoreException {
+		boolean created = false;
+		try {
+			ApplicationArchive archive = createApplicationArchive(monitor);
+			created = true;
+			return archive;
+		} finally {
+			// The staging folder of the jar is otherwise released when the
+			// archive is closed
+			if (!created) {
+				CloudUtil.releaseTemporaryFile(tempJar);
+			}
+			tempJar = null;
+		}
+	}
+
+	protected ApplicationArchive createApplicationArchive(
+			IProgressMonitor monitor) throws CoreException {
 
 		ApplicationArchive archive = JavaWebApplicationDelegate
 				.getArchiveFromManifest(appModule, cloudServer);
@@ -348,6 +372,7 @@ public class JavaCloudFoundryArchiver {
 		}
 
 		IPath location = new Path(filePath);
+		tempJar = new File(filePath);
 
 		// Note that if no jar builder is specified in the package data
 		// then a default one is used internally by the data that does NOT
@@ -438,12 +463,22 @@ public class JavaCloudFoundryArchiver {
 
 	public static String getTempJarPath(IModule module) throws CoreException {
 		try {
-			File tempFolder = File.createTempFile("tempFolderForJavaAppJar", //$NON-NLS-1$
-					null);
-			tempFolder.delete();
-			tempFolder.mkdirs();
+			File tempFolder;
+			CloudFoundryPlugin plugin = CloudFoundryPlugin.getDefault();
+			if (plugin != null) {
+				// Reuse the module's working folder in the staging area. It is
+				// cleaned up when the archive for the jar is closed.
+				tempFolder = plugin.getArchiveStagingArea().getWorkingFolder(
+						"javaAppJar-" + module.getId()); //$NON-NLS-1$
+			} else {
+				tempFolder = File.createTempFile("tempFolderForJavaAppJar", //$NON-NLS-1$
+						null);
+				tempFolder.delete();
+				tempFolder.mkdirs();
+			}
 
 			if (!tempFolder.exists()) {
+				CloudUtil.releaseTemporaryFile(tempFolder);
 				throw CloudErrorUtil
 						.toCoreException(NLS
 								.bind(Messages.JavaCloudFoundryArchiver_ERROR_CREATE_TEMP_DIR,
@@ -451,7 +486,9 @@ public class JavaCloudFoundryArchiver {
 			}
 
 			File targetFile = new File(tempFolder, module.getName() + ".jar"); //$NON-NLS-1$
-			targetFile.deleteOnExit();
+			if (plugin == null) {
+				targetFile.deleteOnExit();
+			}
 
 			String path = new Path(targetFile.getAbsolutePath()).toString();
 
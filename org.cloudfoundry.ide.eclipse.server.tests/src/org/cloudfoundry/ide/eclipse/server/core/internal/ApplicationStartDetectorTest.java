@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Date;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.client.lib.CloudFoundryOperations;
+import org.cloudfoundry.client.lib.domain.ApplicationLog;
+import org.cloudfoundry.client.lib.domain.ApplicationLog.MessageType;
+import org.cloudfoundry.client.lib.domain.CloudApplication;
+import org.cloudfoundry.client.lib.domain.CloudApplication.AppState;
+import org.cloudfoundry.ide.eclipse.server.core.internal.client.ApplicationStartDetector;
+
+public class ApplicationStartDetectorTest extends TestCase {
+
+	public void testStartedOnFirstPoll() throws Exception {
+		ApplicationStartDetector detector = new ApplicationStartDetector("app");
+		StateClient client = new StateClient(0);
+
+		long start = System.currentTimeMillis();
+		assertTrue(detector.waitForStart(client.proxy(), 10000, null));
+		assertEquals(1, client.polls);
+		assertTrue(System.currentTimeMillis() - start < 1000);
+	}
+
+	public void testStartedAfterPolls() throws Exception {
+		ApplicationStartDetector detector = new ApplicationStartDetector("app");
+		StateClient client = new StateClient(3);
+
+		assertTrue(detector.waitForStart(client.proxy(), 10000, null));
+		assertEquals(4, client.polls);
+
+		client = new StateClient(1000);
+		assertFalse(detector.waitForStart(client.proxy(), 300, null));
+	}
+
+	public void testStartedStateWithoutRunningInstances() throws Exception {
+		ApplicationStartDetector detector = new ApplicationStartDetector("app");
+		StateClient client = new StateClient(0, 3);
+
+		assertTrue(detector.waitForStart(client.proxy(), 10000, null));
+		assertEquals(4, client.polls);
+
+		client = new StateClient(0, 1000);
+		assertFalse(detector.waitForStart(client.proxy(), 300, null));
+		assertTrue(client.polls > 1);
+	}
+
+	public void testStartedInLogs() throws Exception {
+		final ApplicationStartDetector detector = new ApplicationStartDetector("app");
+
+		detector.onMessage(createLog("App", "Application started"));
+		detector.onMessage(createLog("API", "Updated app with state STARTED"));
+		detector.onMessage(createLog("DEA", "Starting app instance (index 0)"));
+		assertFalse(detector.isStartSignalled());
+
+		new Thread() {
+			public void run() {
+				try {
+					Thread.sleep(200);
+				}
+				catch (InterruptedException e) {
+					// Signal right away
+				}
+				detector.onMessage(createLog("CELL", "Container became healthy"));
+			}
+		}.start();
+
+		long start = System.currentTimeMillis();
+		assertTrue(detector.waitForStart(new StateClient(Integer.MAX_VALUE).proxy(), 10000, null));
+		assertTrue(detector.isStartSignalled());
+		assertTrue(System.currentTimeMillis() - start < 5000);
+	}
+
+	protected static ApplicationLog createLog(String source, String message) {
+		return new ApplicationLog("appId", message, new Date(), MessageType.STDOUT, source, "0");
+	}
+
+	/**
+	 * Client that reports the application as stopped for a given number of
+	 * polls, and then as started without running instances for a given number
+	 * of polls
+	 */
+	static class StateClient implements InvocationHandler {
+
+		private final int stoppedPolls;
+
+		private final int startingPolls;
+
+		int polls;
+
+		StateClient(int stoppedPolls) {
+			this(stoppedPolls, 0);
+		}
+
+		StateClient(int stoppedPolls, int startingPolls) {
+			this.stoppedPolls = stoppedPolls;
+			this.startingPolls = startingPolls;
+		}
+
+		CloudFoundryOperations proxy() {
+			return (CloudFoundryOperations) Proxy.newProxyInstance(ApplicationStartDetectorTest.class.getClassLoader(),
+					new Class<?>[] { CloudFoundryOperations.class }, this);
+		}
+
+		public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if ("getApplication".equals(method.getName())) {
+				int poll = polls++;
+				CloudApplication app = new CloudApplication((String) args[0], null, null, 512, 1, null, null,
+						poll < stoppedPolls ? AppState.STOPPED : AppState.STARTED);
+				app.setRunningInstances(poll < stoppedPolls + startingPolls ? 0 : 1);
+				return app;
+			}
+			return null;
+		}
+	}
+}
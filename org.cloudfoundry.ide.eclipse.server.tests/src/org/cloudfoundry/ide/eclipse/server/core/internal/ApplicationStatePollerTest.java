@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.server.core.internal.ApplicationStatePoller.RequestBudget;
+
+public class ApplicationStatePollerTest extends TestCase {
+
+	public void testStableIntervalBacksOff() throws Exception {
+		long interval = ApplicationStatePoller.MIN_STABLE_INTERVAL;
+		long next = ApplicationStatePoller.getNextStableInterval(interval);
+		assertEquals(interval * 2, next);
+		for (int i = 0; i < 20; i++) {
+			next = ApplicationStatePoller.getNextStableInterval(next);
+		}
+		assertEquals(ApplicationStatePoller.MAX_STABLE_INTERVAL, next);
+		assertEquals(ApplicationStatePoller.MIN_STABLE_INTERVAL * 2, ApplicationStatePoller.getNextStableInterval(0));
+	}
+
+	public void testBudgetLimitsRequestsInWindow() throws Exception {
+		RequestBudget budget = new RequestBudget(3, 1000);
+		assertTrue(budget.tryAcquire(0));
+		assertTrue(budget.tryAcquire(100));
+		assertTrue(budget.tryAcquire(200));
+		assertFalse(budget.tryAcquire(300));
+		assertEquals(700, budget.getWaitTime(300));
+
+		assertFalse(budget.tryAcquire(999));
+		assertTrue(budget.tryAcquire(1000));
+		assertFalse(budget.tryAcquire(1050));
+		assertTrue(budget.tryAcquire(1100));
+		assertEquals(0, budget.getWaitTime(1200));
+	}
+
+	public void testBudgetChargesEachRequest() throws Exception {
+		RequestBudget budget = new RequestBudget(5, 1000);
+		assertTrue(budget.tryAcquire(0, 3));
+		assertFalse(budget.tryAcquire(100, 3));
+		assertEquals(900, budget.getWaitTime(100, 3));
+		assertTrue(budget.tryAcquire(100, 2));
+		assertFalse(budget.tryAcquire(200));
+
+		// More requests than the budget wait for the whole budget
+		assertFalse(budget.tryAcquire(1000, 8));
+		assertEquals(100, budget.getWaitTime(1000, 8));
+		assertTrue(budget.tryAcquire(1100, 8));
+		assertFalse(budget.tryAcquire(1200));
+	}
+
+	public void testRefreshAllChargedPerStartedApplication() throws Exception {
+		assertEquals(ApplicationStatePoller.REFRESH_ALL_REQUESTS, ApplicationStatePoller.getRefreshAllRequests(0, 4));
+		assertEquals(ApplicationStatePoller.REFRESH_ALL_REQUESTS + 10 * ApplicationStatePoller.INSTANCES_REQUESTS,
+				ApplicationStatePoller.getRefreshAllRequests(10, 4));
+
+		// Instances are not refreshed
+		assertEquals(ApplicationStatePoller.REFRESH_ALL_REQUESTS, ApplicationStatePoller.getRefreshAllRequests(10, 0));
+	}
+
+	public void testEmptyBudget() throws Exception {
+		RequestBudget budget = new RequestBudget(0, 1000);
+		assertFalse(budget.tryAcquire(0));
+		assertEquals(1000, budget.getWaitTime(0));
+	}
+}
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import junit.framework.TestCase;
+
+public class ArchiveCompressionPolicyTest extends TestCase {
+
+	private File file;
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (file != null) {
+			file.delete();
+		}
+	}
+
+	public void testCompressedExtensionsStored() throws Exception {
+		ArchiveCompressionPolicy policy = new ArchiveCompressionPolicy(Deflater.DEFAULT_COMPRESSION, true);
+		assertTrue(policy.isStored("WEB-INF/lib/spring-core.jar", null));
+		assertTrue(policy.isStored("images/logo.PNG", null));
+		assertFalse(policy.isStored("WEB-INF/web.xml", null));
+		assertFalse(policy.isStored("WEB-INF/classes.jar/Foo", null));
+	}
+
+	public void testHighEntropyContentStored() throws Exception {
+		byte[] content = new byte[ArchiveCompressionPolicy.MIN_SAMPLE_SIZE * 2];
+		new Random(0).nextBytes(content);
+		file = createFile(content);
+
+		ArchiveCompressionPolicy policy = new ArchiveCompressionPolicy(Deflater.DEFAULT_COMPRESSION, true);
+		assertTrue(policy.isStored("data.bin", file));
+	}
+
+	public void testLowEntropyContentDeflated() throws Exception {
+		byte[] content = new byte[ArchiveCompressionPolicy.MIN_SAMPLE_SIZE * 2];
+		Arrays.fill(content, (byte) 'a');
+		file = createFile(content);
+
+		ArchiveCompressionPolicy policy = new ArchiveCompressionPolicy(Deflater.DEFAULT_COMPRESSION, true);
+		assertFalse(policy.isStored("data.bin", file));
+	}
+
+	public void testStoringDisabled() throws Exception {
+		ArchiveCompressionPolicy policy = new ArchiveCompressionPolicy(Deflater.BEST_SPEED, false);
+		assertFalse(policy.isStored("WEB-INF/lib/spring-core.jar", null));
+		assertEquals(Deflater.BEST_SPEED, policy.getDeflateLevel());
+	}
+
+	public void testInvalidLevelUsesDefault() throws Exception {
+		ArchiveCompressionPolicy policy = new ArchiveCompressionPolicy(42, true);
+		assertEquals(ArchiveCompressionPolicy.DEFAULT_DEFLATE_LEVEL, policy.getDeflateLevel());
+	}
+
+	protected File createFile(byte[] content) throws Exception {
+		File file = File.createTempFile("policy", ".bin");
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content);
+		}
+		finally {
+			out.close();
+		}
+		return file;
+	}
+}
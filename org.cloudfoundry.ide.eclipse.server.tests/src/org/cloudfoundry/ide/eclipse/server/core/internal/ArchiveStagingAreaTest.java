@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import junit.framework.TestCase;
+
+public class ArchiveStagingAreaTest extends TestCase {
+
+	private File root;
+
+	@Override
+	protected void setUp() throws Exception {
+		root = File.createTempFile("staging", null);
+		root.delete();
+		root.mkdirs();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		ArchiveStagingArea.delete(root);
+	}
+
+	public void testWorkingFolderReused() throws Exception {
+		ArchiveStagingArea stagingArea = new ArchiveStagingArea(root, ArchiveStagingArea.DEFAULT_QUOTA);
+		File folder = stagingArea.getWorkingFolder("module");
+		createFile(folder, "app.war", 10);
+		stagingArea.release(folder);
+
+		assertEquals(0, folder.list().length);
+		assertEquals(folder, stagingArea.getWorkingFolder("module"));
+	}
+
+	public void testFolderInUseNotShared() throws Exception {
+		ArchiveStagingArea stagingArea = new ArchiveStagingArea(root, ArchiveStagingArea.DEFAULT_QUOTA);
+		File folder1 = stagingArea.getWorkingFolder("module");
+		File file = createFile(folder1, "app.war", 10);
+		File folder2 = stagingArea.getWorkingFolder("module");
+
+		assertFalse(folder1.equals(folder2));
+		assertTrue(file.exists());
+	}
+
+	public void testReleaseByContainedFile() throws Exception {
+		ArchiveStagingArea stagingArea = new ArchiveStagingArea(root, ArchiveStagingArea.DEFAULT_QUOTA);
+		File folder = stagingArea.getWorkingFolder("module");
+		File file = createFile(folder, "app.war", 10);
+		stagingArea.release(file);
+		assertFalse(file.exists());
+
+		// Files outside the staging area are not touched
+		File outside = File.createTempFile("outside", ".war");
+		try {
+			stagingArea.release(outside);
+			assertTrue(outside.exists());
+			assertFalse(stagingArea.contains(outside));
+		}
+		finally {
+			outside.delete();
+		}
+	}
+
+	public void testLeastRecentlyUsedEvictedOverQuota() throws Exception {
+		ArchiveStagingArea stagingArea = new ArchiveStagingArea(root, 150);
+		File folder1 = stagingArea.getWorkingFolder("module1");
+		File folder2 = stagingArea.getWorkingFolder("module2");
+		createFile(folder1, "a.war", 100);
+		createFile(folder2, "b.war", 100);
+		folder1.setLastModified(System.currentTimeMillis() - 20000);
+		folder2.setLastModified(System.currentTimeMillis() - 10000);
+
+		// Folders in use are never evicted, but count against the quota
+		assertFalse(stagingArea.evict());
+		assertTrue(folder1.exists());
+		assertTrue(folder2.exists());
+
+		stagingArea = new ArchiveStagingArea(root, 150);
+		assertTrue(stagingArea.evict());
+		assertFalse(folder1.exists());
+		assertTrue(folder2.exists());
+	}
+
+	public void testFoldersInUseCountAgainstQuota() throws Exception {
+		// Left over from a previous session
+		File leftOver = new ArchiveStagingArea(root, 150).getWorkingFolder("module1");
+		createFile(leftOver, "a.war", 100);
+		leftOver.setLastModified(System.currentTimeMillis() - 10000);
+
+		ArchiveStagingArea stagingArea = new ArchiveStagingArea(root, 150);
+		File folder = stagingArea.getWorkingFolder("module2");
+		createFile(folder, "b.war", 100);
+
+		assertTrue(stagingArea.evict());
+		assertFalse(leftOver.exists());
+		assertTrue(folder.exists());
+	}
+
+	protected File createFile(File folder, String name, int size) throws Exception {
+		File file = new File(folder, name);
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(new byte[size]);
+		}
+		finally {
+			out.close();
+		}
+		return file;
+	}
+}
@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.ZipInputStream;
+
+import junit.framework.TestCase;
+
+public class ArchiveWriterTest extends TestCase {
+
+	private File file;
+
+	@Override
+	protected void setUp() throws Exception {
+		file = File.createTempFile("archive", ".txt");
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write("Hello Cloud Foundry".getBytes("UTF-8"));
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		file.delete();
+	}
+
+	public void testReproducibleArchivesIdentical() throws Exception {
+		ByteArrayOutputStream first = new ByteArrayOutputStream();
+		ArchiveWriter writer = createWriter(first, true);
+		writer.addFolder("WEB-INF/", 1000000000000L);
+		writer.addFile("WEB-INF/web.xml", file, file.lastModified());
+		writer.close();
+
+		file.setLastModified(file.lastModified() - 3600000);
+
+		ByteArrayOutputStream second = new ByteArrayOutputStream();
+		writer = createWriter(second, true);
+		writer.addFolder("WEB-INF/", 1200000000000L);
+		writer.addFile("WEB-INF/web.xml", file, file.lastModified());
+		writer.close();
+
+		assertTrue(Arrays.equals(first.toByteArray(), second.toByteArray()));
+	}
+
+	public void testReproducibleArchivesDifferWithContent() throws Exception {
+		ByteArrayOutputStream first = new ByteArrayOutputStream();
+		ArchiveWriter writer = createWriter(first, true);
+		writer.addFile("WEB-INF/web.xml", file, file.lastModified());
+		writer.close();
+
+		ByteArrayOutputStream second = new ByteArrayOutputStream();
+		writer = createWriter(second, true);
+		writer.addFile("WEB-INF/web2.xml", file, file.lastModified());
+		writer.close();
+
+		assertFalse(Arrays.equals(first.toByteArray(), second.toByteArray()));
+	}
+
+	public void testEntriesKeepTimesUnlessReproducible() throws Exception {
+		long time = 1200000000000L;
+		file.setLastModified(time);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ArchiveWriter writer = createWriter(out, false);
+		writer.addFile("WEB-INF/web.xml", file, file.lastModified());
+		writer.close();
+		// Zip entry times have a two second resolution
+		assertTrue(Math.abs(file.lastModified() - getFirstEntryTime(out)) <= 2000);
+
+		out = new ByteArrayOutputStream();
+		writer = createWriter(out, true);
+		writer.addFile("WEB-INF/web.xml", file, file.lastModified());
+		writer.close();
+		assertEquals(ArchiveWriter.NORMALISED_TIME_STAMP, getFirstEntryTime(out));
+	}
+
+	protected static long getFirstEntryTime(ByteArrayOutputStream out) throws Exception {
+		ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()));
+		try {
+			return in.getNextEntry().getTime();
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	protected ArchiveWriter createWriter(ByteArrayOutputStream out, boolean reproducible) {
+		return new ArchiveWriter(out, new ArchiveCompressionPolicy(Deflater.DEFAULT_COMPRESSION, true), reproducible);
+	}
+}
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.server.core.internal.client.BatchApplicationOperation;
+import org.cloudfoundry.ide.eclipse.server.core.internal.client.ICloudFoundryOperation;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+
+public class BatchApplicationOperationTest extends TestCase {
+
+	public void testOperationsRunInParallel() throws Exception {
+		ConcurrencyCounter counter = new ConcurrencyCounter();
+		BatchApplicationOperation batch = new BatchApplicationOperation("Pushing applications", 3); //$NON-NLS-1$
+		for (int i = 0; i < 6; i++) {
+			batch.add("app" + i, new TestOperation(counter, "app" + i, null)); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		batch.run(new NullProgressMonitor());
+
+		assertEquals(6, counter.runs.size());
+		assertTrue(counter.maxRunning.get() > 1);
+		assertTrue(counter.maxRunning.get() <= 3);
+	}
+
+	public void testOperationsOfSameApplicationRunInSequence() throws Exception {
+		ConcurrencyCounter counter = new ConcurrencyCounter();
+		BatchApplicationOperation batch = new BatchApplicationOperation("Restarting applications", 4); //$NON-NLS-1$
+		for (int i = 0; i < 4; i++) {
+			batch.add("app", new TestOperation(counter, "app" + i, null)); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		batch.run(new NullProgressMonitor());
+
+		assertEquals(1, counter.maxRunning.get());
+		assertEquals(4, counter.runs.size());
+		for (int i = 0; i < 4; i++) {
+			assertEquals("app" + i, counter.runs.get(i)); //$NON-NLS-1$
+		}
+	}
+
+	public void testErrorsAreCombined() throws Exception {
+		ConcurrencyCounter counter = new ConcurrencyCounter();
+		BatchApplicationOperation batch = new BatchApplicationOperation("Pushing applications", 2); //$NON-NLS-1$
+		batch.add("app1", new TestOperation(counter, "app1", "Failed app1")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		batch.add("app2", new TestOperation(counter, "app2", null)); //$NON-NLS-1$ //$NON-NLS-2$
+		batch.add("app3", new TestOperation(counter, "app3", "Failed app3")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		try {
+			batch.run(new NullProgressMonitor());
+			fail("Expected failed operations to be reported"); //$NON-NLS-1$
+		}
+		catch (CoreException e) {
+			IStatus[] children = e.getStatus().getChildren();
+			assertEquals(2, children.length);
+			assertEquals("Failed app1", children[0].getMessage()); //$NON-NLS-1$
+			assertEquals("Failed app3", children[1].getMessage()); //$NON-NLS-1$
+		}
+		// A failed operation does not stop the others
+		assertEquals(3, counter.runs.size());
+	}
+
+	public void testCombinedProgress() throws Exception {
+		final AtomicInteger totalWork = new AtomicInteger();
+		final AtomicInteger worked = new AtomicInteger();
+		IProgressMonitor monitor = new NullProgressMonitor() {
+
+			@Override
+			public void beginTask(String name, int work) {
+				totalWork.set(work);
+			}
+
+			@Override
+			public void worked(int work) {
+				worked.addAndGet(work);
+			}
+		};
+		ConcurrencyCounter counter = new ConcurrencyCounter();
+		BatchApplicationOperation batch = new BatchApplicationOperation("Pushing applications", 2); //$NON-NLS-1$
+		for (int i = 0; i < 3; i++) {
+			batch.add("app" + i, new TestOperation(counter, "app" + i, null)); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		batch.run(monitor);
+
+		assertTrue(totalWork.get() > 0);
+		assertEquals(totalWork.get(), worked.get());
+	}
+
+	static class ConcurrencyCounter {
+
+		final AtomicInteger running = new AtomicInteger();
+
+		final AtomicInteger maxRunning = new AtomicInteger();
+
+		final List<String> runs = Collections.synchronizedList(new ArrayList<String>());
+	}
+
+	static class TestOperation implements ICloudFoundryOperation {
+
+		private final ConcurrencyCounter counter;
+
+		private final String name;
+
+		private final String error;
+
+		TestOperation(ConcurrencyCounter counter, String name, String error) {
+			this.counter = counter;
+			this.name = name;
+			this.error = error;
+		}
+
+		public void run(IProgressMonitor monitor) throws CoreException {
+			int running = counter.running.incrementAndGet();
+			synchronized (counter.maxRunning) {
+				counter.maxRunning.set(Math.max(counter.maxRunning.get(), running));
+			}
+			try {
+				monitor.beginTask(name, 2);
+				Thread.sleep(100);
+				monitor.worked(1);
+				Thread.sleep(100);
+				monitor.worked(1);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			finally {
+				counter.runs.add(name);
+				counter.running.decrementAndGet();
+			}
+			if (error != null) {
+				throw new CoreException(new Status(IStatus.ERROR, CloudFoundryPlugin.PLUGIN_ID, error));
+			}
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.server.core.internal.client.CancellableWait;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+public class CancellableWaitTest extends TestCase {
+
+	public void testWaitFor() throws Exception {
+		long start = System.currentTimeMillis();
+		assertTrue(CancellableWait.waitFor(300, new NullProgressMonitor()));
+		assertTrue(System.currentTimeMillis() - start >= 300);
+		assertTrue(CancellableWait.waitFor(0, null));
+	}
+
+	public void testCancelWhileWaiting() throws Exception {
+		final NullProgressMonitor monitor = new NullProgressMonitor();
+		new Thread() {
+			public void run() {
+				try {
+					Thread.sleep(200);
+				}
+				catch (InterruptedException e) {
+					// Cancel right away
+				}
+				monitor.setCanceled(true);
+			}
+		}.start();
+
+		long start = System.currentTimeMillis();
+		assertFalse(CancellableWait.waitFor(60 * 1000, monitor));
+		assertTrue(System.currentTimeMillis() - start < 5000);
+
+		assertFalse(CancellableWait.waitFor(1000, monitor));
+	}
+
+	public void testAwait() throws Exception {
+		FutureTask<String> task = new FutureTask<String>(new Callable<String>() {
+			public String call() throws Exception {
+				return "result";
+			}
+		});
+		task.run();
+		assertEquals("result", CancellableWait.await(task, null));
+
+		task = new FutureTask<String>(new Callable<String>() {
+			public String call() throws Exception {
+				throw new IllegalStateException();
+			}
+		});
+		task.run();
+		try {
+			CancellableWait.await(task, null);
+			fail("Expected error of the task");
+		}
+		catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+
+		FutureTask<String> pending = new FutureTask<String>(new Callable<String>() {
+			public String call() throws Exception {
+				return null;
+			}
+		});
+		NullProgressMonitor monitor = new NullProgressMonitor();
+		monitor.setCanceled(true);
+		try {
+			CancellableWait.await(pending, monitor);
+			fail("Expected cancellation");
+		}
+		catch (OperationCanceledException e) {
+			assertTrue(pending.isCancelled());
+		}
+	}
+}
@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jst.server.core.IWebModule;
+import org.eclipse.wst.server.core.IModule;
+import org.eclipse.wst.server.core.model.IModuleFile;
+import org.eclipse.wst.server.core.model.IModuleResource;
+import org.eclipse.wst.server.core.util.ModuleFile;
+
+public class ChildModuleJarCacheTest extends TestCase {
+
+	private File file;
+
+	private File cacheFolder;
+
+	@Override
+	protected void setUp() throws Exception {
+		file = File.createTempFile("child", ".class");
+		write(file, "first");
+		cacheFolder = File.createTempFile("childJars", null);
+		cacheFolder.delete();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		file.delete();
+		ChildModuleJarCache.delete(cacheFolder);
+	}
+
+	public void testFingerprintChangesWithContent() throws Exception {
+		IModuleResource[] resources = new IModuleResource[] { new ModuleFile(file, "Child.class", Path.EMPTY) };
+		long lastModified = file.lastModified();
+		String fingerprint = ChildModuleJarCache.getFingerprint(resources);
+
+		// Same size and modification time
+		write(file, "other");
+		file.setLastModified(lastModified);
+		assertFalse(fingerprint.equals(ChildModuleJarCache.getFingerprint(resources)));
+	}
+
+	public void testFingerprintIgnoresModificationTime() throws Exception {
+		IModuleResource[] resources = new IModuleResource[] { new ModuleFile(file, "Child.class", Path.EMPTY) };
+		String fingerprint = ChildModuleJarCache.getFingerprint(resources);
+
+		file.setLastModified(file.lastModified() - 3600000);
+		assertEquals(fingerprint, ChildModuleJarCache.getFingerprint(resources));
+	}
+
+	public void testNoFingerprintWithoutContent() throws Exception {
+		IModuleResource[] resources = new IModuleResource[] { new ModuleFile(file, "Child.class", Path.EMPTY),
+				new ModuleFile((IFile) null, "Other.class", Path.EMPTY) };
+		assertNull(ChildModuleJarCache.getFingerprint(resources));
+	}
+
+	public void testSameJarBuiltOnce() throws Exception {
+		final CountDownLatch building = new CountDownLatch(1);
+		final CountDownLatch proceed = new CountDownLatch(1);
+		final AtomicInteger builds = new AtomicInteger();
+		final ChildModuleJarCache cache = new ChildModuleJarCache(cacheFolder) {
+
+			@Override
+			protected void buildJar(File jarFile, IModuleResource[] childResources) throws CoreException {
+				builds.incrementAndGet();
+				building.countDown();
+				await(proceed);
+				writeJar(jarFile);
+			}
+		};
+
+		GetChildJarThread first = new GetChildJarThread(cache);
+		first.start();
+		assertTrue(building.await(5, TimeUnit.SECONDS));
+		GetChildJarThread second = new GetChildJarThread(cache);
+		second.start();
+
+		// Not blocked by the build
+		cache.release(new ModuleFile(new File(cacheFolder, "other.jar"), "other.jar", Path.EMPTY));
+
+		Thread.sleep(100);
+		proceed.countDown();
+		first.join(5000);
+		second.join(5000);
+
+		assertEquals(1, builds.get());
+		assertNotNull(first.jar);
+		assertEquals(first.jar.getAdapter(File.class), second.jar.getAdapter(File.class));
+	}
+
+	public void testDifferentJarsBuiltConcurrently() throws Exception {
+		final CountDownLatch otherBuilt = new CountDownLatch(1);
+		final AtomicInteger builds = new AtomicInteger();
+		final ChildModuleJarCache cache = new ChildModuleJarCache(cacheFolder) {
+
+			@Override
+			protected void buildJar(File jarFile, IModuleResource[] childResources) throws CoreException {
+				if (builds.incrementAndGet() == 1) {
+					// Completes only once the other jar was built
+					await(otherBuilt);
+				}
+				writeJar(jarFile);
+				otherBuilt.countDown();
+			}
+		};
+
+		GetChildJarThread first = new GetChildJarThread(cache);
+		first.start();
+		while (builds.get() == 0) {
+			Thread.sleep(10);
+		}
+
+		File otherFile = File.createTempFile("other", ".class");
+		try {
+			write(otherFile, "other");
+			IModuleFile otherJar = cache.getChildJar(null, createWebModule(), createModule(),
+					new IModuleResource[] { new ModuleFile(otherFile, "Other.class", Path.EMPTY) }, true, null);
+			assertNotNull(otherJar);
+		}
+		finally {
+			otherFile.delete();
+		}
+
+		first.join(5000);
+		assertEquals(2, builds.get());
+		assertNotNull(first.jar);
+	}
+
+	protected static void await(CountDownLatch latch) {
+		try {
+			assertTrue(latch.await(5, TimeUnit.SECONDS));
+		}
+		catch (InterruptedException e) {
+			fail(e.getMessage());
+		}
+	}
+
+	protected static void writeJar(File jarFile) {
+		try {
+			FileOutputStream out = new FileOutputStream(jarFile);
+			out.close();
+		}
+		catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	protected static IWebModule createWebModule() {
+		return (IWebModule) Proxy.newProxyInstance(ChildModuleJarCacheTest.class.getClassLoader(),
+				new Class[] { IWebModule.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if ("getURI".equals(method.getName())) {
+							return "WEB-INF/lib/child.jar";
+						}
+						return null;
+					}
+				});
+	}
+
+	protected static IModule createModule() {
+		return (IModule) Proxy.newProxyInstance(ChildModuleJarCacheTest.class.getClassLoader(),
+				new Class[] { IModule.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if ("getName".equals(method.getName()) || "getId".equals(method.getName())) {
+							return "child";
+						}
+						return null;
+					}
+				});
+	}
+
+	class GetChildJarThread extends Thread {
+
+		private final ChildModuleJarCache cache;
+
+		private IModuleFile jar;
+
+		GetChildJarThread(ChildModuleJarCache cache) {
+			this.cache = cache;
+		}
+
+		@Override
+		public void run() {
+			try {
+				jar = cache.getChildJar(null, createWebModule(), createModule(),
+						new IModuleResource[] { new ModuleFile(file, "Child.class", Path.EMPTY) }, true, null);
+			}
+			catch (CoreException e) {
+				// Checked by the test
+			}
+		}
+	}
+
+	protected void write(File file, String content) throws Exception {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes("UTF-8"));
+		}
+		finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.client.lib.CloudFoundryOperations;
+import org.cloudfoundry.ide.eclipse.server.core.internal.client.BaseClientRequest;
+import org.cloudfoundry.ide.eclipse.server.core.internal.client.CloudMetadataCache;
+import org.cloudfoundry.ide.eclipse.server.core.internal.client.ConditionalRequestCache;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+
+public class CloudMetadataCacheTest extends TestCase {
+
+	public void testCachesUntilExpired() throws Exception {
+		TestCache cache = new TestCache();
+		CountingRequest request = new CountingRequest();
+
+		assertEquals(Integer.valueOf(1), cache.get("key", 1000, request, new NullProgressMonitor()));
+		cache.time = 500;
+		assertEquals(Integer.valueOf(1), cache.get("key", 1000, request, new NullProgressMonitor()));
+		assertEquals(0, cache.refreshes);
+
+		cache.time = 1000;
+		assertEquals(Integer.valueOf(2), cache.get("key", 1000, request, new NullProgressMonitor()));
+	}
+
+	public void testRefreshAhead() throws Exception {
+		TestCache cache = new TestCache();
+		CountingRequest request = new CountingRequest();
+
+		cache.get("key", 1000, request, new NullProgressMonitor());
+		cache.time = 800;
+		// The current value is returned while it is refreshed
+		assertEquals(Integer.valueOf(1), cache.get("key", 1000, request, new NullProgressMonitor()));
+		assertEquals(1, cache.refreshes);
+
+		// The refreshed value is valid for a full time to live
+		cache.time = 1500;
+		assertEquals(Integer.valueOf(2), cache.get("key", 1000, request, new NullProgressMonitor()));
+		assertEquals(2, request.count);
+	}
+
+	public void testInvalidate() throws Exception {
+		TestCache cache = new TestCache();
+		CountingRequest request = new CountingRequest();
+
+		cache.get("key", 1000, request, new NullProgressMonitor());
+		cache.get("other", 1000, request, new NullProgressMonitor());
+		cache.invalidate("key");
+		assertFalse(cache.contains("key"));
+		assertTrue(cache.contains("other"));
+		assertEquals(Integer.valueOf(3), cache.get("key", 1000, request, new NullProgressMonitor()));
+
+		cache.invalidateAll();
+		assertFalse(cache.contains("key"));
+		assertFalse(cache.contains("other"));
+	}
+
+	public void testRefreshAfterInvalidationIsDiscarded() throws Exception {
+		TestCache cache = new TestCache();
+		cache.deferRefresh = true;
+		CountingRequest request = new CountingRequest();
+
+		cache.get("key", 1000, request, new NullProgressMonitor());
+		cache.time = 800;
+		cache.get("key", 1000, request, new NullProgressMonitor());
+		cache.invalidate("key");
+		cache.runDeferredRefresh();
+		assertFalse(cache.contains("key"));
+	}
+
+	public void testInvalidateClearsResponseCache() throws Exception {
+		TestCache cache = new TestCache();
+		CountingResponseCache responseCache = new CountingResponseCache();
+		cache.setResponseCache(responseCache);
+
+		cache.invalidate("key");
+		assertEquals(1, responseCache.invalidations);
+		cache.invalidateAll();
+		assertEquals(2, responseCache.invalidations);
+
+		cache.setResponseCache(null);
+		cache.invalidateAll();
+		assertEquals(2, responseCache.invalidations);
+	}
+
+	static class CountingResponseCache extends ConditionalRequestCache {
+
+		int invalidations;
+
+		@Override
+		public synchronized void invalidate() {
+			invalidations++;
+			super.invalidate();
+		}
+	}
+
+	static class TestCache extends CloudMetadataCache {
+
+		long time;
+
+		int refreshes;
+
+		boolean deferRefresh;
+
+		Runnable deferred;
+
+		@Override
+		protected long currentTime() {
+			return time;
+		}
+
+		@Override
+		protected void refreshAhead(final String key, final long loadGeneration, final BaseClientRequest<?> request) {
+			refreshes++;
+			deferred = new Runnable() {
+				public void run() {
+					try {
+						put(key, loadGeneration, request.run(new NullProgressMonitor()));
+					}
+					catch (CoreException e) {
+						refreshFailed(key);
+					}
+				}
+			};
+			if (!deferRefresh) {
+				runDeferredRefresh();
+			}
+		}
+
+		void runDeferredRefresh() {
+			deferred.run();
+		}
+	}
+
+	static class CountingRequest extends BaseClientRequest<Integer> {
+
+		int count;
+
+		CountingRequest() {
+			super("Counting");
+		}
+
+		@Override
+		public Integer run(IProgressMonitor monitor) throws CoreException {
+			return ++count;
+		}
+
+		@Override
+		protected Integer doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
+			return null;
+		}
+
+		@Override
+		protected CloudFoundryOperations getClient(IProgressMonitor monitor) throws CoreException {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,244 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.server.core.internal.client.ConditionalRequestCache;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.StreamUtils;
+
+public class ConditionalRequestCacheTest extends TestCase {
+
+	public void testTimeToLive() throws Exception {
+		ConditionalRequestCache cache = new ConditionalRequestCache();
+		assertTrue(cache.getTimeToLive("/v2/shared_domains") > 0);
+		assertTrue(cache.getTimeToLive("/v2/organizations/guid/private_domains/") > 0);
+		assertTrue(cache.getTimeToLive("/v2/info") > 0);
+		assertEquals(0, cache.getTimeToLive("/v2/spaces/guid/summary"));
+		assertEquals(0, cache.getTimeToLive("/v2/apps/guid/stats"));
+
+		cache.setTimeToLive("/v2/apps/[^/]+/stats", 1000);
+		assertEquals(1000, cache.getTimeToLive("/v2/apps/guid/stats"));
+		cache.setTimeToLive("/v2/apps/[^/]+/stats", 0);
+		assertEquals(0, cache.getTimeToLive("/v2/apps/guid/stats"));
+	}
+
+	public void testRevalidatesWithETag() throws Exception {
+		ConditionalRequestCache cache = new ConditionalRequestCache();
+		TestExecution execution = new TestExecution();
+
+		execution.respond(HttpStatus.OK, "\"v1\"", "apps");
+		assertEquals("apps", getBody(cache.intercept(createRequest(HttpMethod.GET, "/v2/apps"), null, execution)));
+		assertEquals(1, cache.size());
+
+		execution.respond(HttpStatus.NOT_MODIFIED, "\"v1\"", "");
+		ClientHttpResponse response = cache.intercept(createRequest(HttpMethod.GET, "/v2/apps"), null, execution);
+		assertEquals("\"v1\"", execution.lastRequest.getHeaders().getFirst("If-None-Match"));
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertEquals("apps", getBody(response));
+		assertEquals(2, execution.requests);
+	}
+
+	public void testReusesFreshResponse() throws Exception {
+		ConditionalRequestCache cache = new ConditionalRequestCache();
+		TestExecution execution = new TestExecution();
+
+		execution.respond(HttpStatus.OK, null, "domains");
+		cache.intercept(createRequest(HttpMethod.GET, "/v2/shared_domains"), null, execution);
+		assertEquals("domains", getBody(cache.intercept(createRequest(HttpMethod.GET, "/v2/shared_domains"), null,
+				execution)));
+		assertEquals(1, execution.requests);
+
+		// Responses without validator or time to live are not cached
+		cache.intercept(createRequest(HttpMethod.GET, "/v2/apps"), null, execution);
+		assertEquals(1, cache.size());
+	}
+
+	public void testMutatingRequestInvalidates() throws Exception {
+		ConditionalRequestCache cache = new ConditionalRequestCache();
+		TestExecution execution = new TestExecution();
+
+		execution.respond(HttpStatus.OK, "\"v1\"", "apps");
+		cache.intercept(createRequest(HttpMethod.GET, "/v2/apps"), null, execution);
+		assertEquals(1, cache.size());
+
+		execution.respond(HttpStatus.CREATED, null, "");
+		cache.intercept(createRequest(HttpMethod.POST, "/v2/apps"), new byte[0], execution);
+		assertEquals(0, cache.size());
+
+		execution.respond(HttpStatus.OK, "\"v2\"", "apps2");
+		cache.intercept(createRequest(HttpMethod.GET, "/v2/apps"), null, execution);
+		assertNull(execution.lastRequest.getHeaders().getFirst("If-None-Match"));
+	}
+
+	public void testRangeRequestsAreNotCached() throws Exception {
+		ConditionalRequestCache cache = new ConditionalRequestCache();
+		TestExecution execution = new TestExecution();
+
+		execution.respond(HttpStatus.PARTIAL_CONTENT, "\"v1\"", "log");
+		HttpRequest request = createRequest(HttpMethod.GET, "/v2/apps/guid/instances/0/files/logs/stdout.log");
+		request.getHeaders().set("Range", "bytes=10-");
+		assertEquals("log", getBody(cache.intercept(request, null, execution)));
+		assertEquals(0, cache.size());
+		assertNull(execution.lastRequest.getHeaders().getFirst("If-None-Match"));
+	}
+
+	public void testInstanceFilesAreNotCached() throws Exception {
+		ConditionalRequestCache cache = new ConditionalRequestCache();
+		TestExecution execution = new TestExecution();
+
+		execution.respond(HttpStatus.OK, "\"v1\"", "log");
+		HttpRequest request = createRequest(HttpMethod.GET, "/v2/apps/guid/instances/0/files/logs/stdout.log");
+		assertEquals("log", getBody(cache.intercept(request, null, execution)));
+		assertEquals(0, cache.size());
+	}
+
+	public void testResponseReadBeforeInvalidationIsNotCached() throws Exception {
+		final ConditionalRequestCache cache = new ConditionalRequestCache();
+		TestExecution execution = new TestExecution() {
+
+			@Override
+			public ClientHttpResponse execute(HttpRequest request, byte[] requestBody) throws IOException {
+				ClientHttpResponse response = super.execute(request, requestBody);
+				// A change is made by another request while the response
+				// is received
+				cache.invalidate();
+				return response;
+			}
+		};
+
+		execution.respond(HttpStatus.OK, null, "domains");
+		assertEquals("domains", getBody(cache.intercept(createRequest(HttpMethod.GET, "/v2/shared_domains"), null,
+				execution)));
+		assertEquals(0, cache.size());
+
+		cache.intercept(createRequest(HttpMethod.GET, "/v2/shared_domains"), null, new TestExecution() {
+			{
+				respond(HttpStatus.OK, null, "domains2");
+			}
+		});
+		assertEquals(1, cache.size());
+	}
+
+	public void testLargeResponseIsPassedThrough() throws Exception {
+		ConditionalRequestCache cache = new ConditionalRequestCache();
+		TestExecution execution = new TestExecution();
+
+		StringBuilder body = new StringBuilder();
+		for (int i = 0; i < ConditionalRequestCache.MAX_ENTRY_SIZE + 10; i++) {
+			body.append('a');
+		}
+
+		// No content length
+		execution.respond(HttpStatus.OK, null, body.toString());
+		assertEquals(body.toString(), getBody(cache.intercept(createRequest(HttpMethod.GET, "/v2/shared_domains"),
+				null, execution)));
+		assertEquals(0, cache.size());
+	}
+
+	protected static String getBody(ClientHttpResponse response) throws IOException {
+		return new String(StreamUtils.copyToByteArray(response.getBody()), "UTF-8");
+	}
+
+	protected static HttpRequest createRequest(final HttpMethod method, String path) {
+		final URI uri = URI.create("https://api.example.com" + path);
+		final HttpHeaders headers = new HttpHeaders();
+		return new HttpRequest() {
+
+			public HttpHeaders getHeaders() {
+				return headers;
+			}
+
+			public HttpMethod getMethod() {
+				return method;
+			}
+
+			public URI getURI() {
+				return uri;
+			}
+		};
+	}
+
+	static class TestExecution implements ClientHttpRequestExecution {
+
+		HttpStatus status;
+
+		String etag;
+
+		String body;
+
+		HttpRequest lastRequest;
+
+		int requests;
+
+		void respond(HttpStatus status, String etag, String body) {
+			this.status = status;
+			this.etag = etag;
+			this.body = body;
+		}
+
+		public ClientHttpResponse execute(HttpRequest request, byte[] requestBody) throws IOException {
+			lastRequest = request;
+			requests++;
+			final HttpStatus responseStatus = status;
+			final HttpHeaders headers = new HttpHeaders();
+			if (etag != null) {
+				headers.setETag(etag);
+			}
+			final byte[] responseBody = body.getBytes("UTF-8");
+			return new ClientHttpResponse() {
+
+				public InputStream getBody() throws IOException {
+					return new ByteArrayInputStream(responseBody);
+				}
+
+				public HttpHeaders getHeaders() {
+					return headers;
+				}
+
+				public HttpStatus getStatusCode() throws IOException {
+					return responseStatus;
+				}
+
+				public int getRawStatusCode() throws IOException {
+					return responseStatus.value();
+				}
+
+				public String getStatusText() throws IOException {
+					return responseStatus.getReasonPhrase();
+				}
+
+				public void close() {
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.client.lib.archive.ApplicationArchive;
+import org.cloudfoundry.client.lib.archive.ApplicationArchive.Entry;
+import org.cloudfoundry.ide.eclipse.server.core.internal.client.DeployedContentDigests;
+
+public class DeployedContentDigestsTest extends TestCase {
+
+	public void testDigestIndependentOfEntryOrder() throws Exception {
+		String digest = DeployedContentDigests.getDigest(createArchive(createEntry("WEB-INF/", null),
+				createEntry("WEB-INF/web.xml", new byte[] { 1 }), createEntry("index.html", new byte[] { 2 })));
+		assertNotNull(digest);
+		assertEquals(digest, DeployedContentDigests.getDigest(createArchive(createEntry("index.html", new byte[] { 2 }),
+				createEntry("WEB-INF/web.xml", new byte[] { 1 }), createEntry("WEB-INF/", null))));
+	}
+
+	public void testDigestChangesWithContent() throws Exception {
+		String digest = DeployedContentDigests.getDigest(createArchive(createEntry("index.html", new byte[] { 2 })));
+		assertFalse(digest.equals(DeployedContentDigests.getDigest(createArchive(createEntry("index.html",
+				new byte[] { 3 })))));
+		assertFalse(digest.equals(DeployedContentDigests.getDigest(createArchive(createEntry("main.html",
+				new byte[] { 2 })))));
+	}
+
+	public void testUnchangedContent() throws Exception {
+		DeployedContentDigests digests = new DeployedContentDigests();
+		Date updated = new Date(1000);
+		assertFalse(digests.isUnchanged("server", "app", "guid1", updated, "digest1"));
+
+		digests.record("server", "app", "guid1", updated, "digest1");
+		assertTrue(digests.isUnchanged("server", "app", "guid1", new Date(1000), "digest1"));
+		assertFalse(digests.isUnchanged("server", "app", "guid1", updated, "digest2"));
+		assertFalse(digests.isUnchanged("server", "app2", "guid1", updated, "digest1"));
+		assertFalse(digests.isUnchanged("server2", "app", "guid1", updated, "digest1"));
+
+		// Application created again with the same name
+		assertFalse(digests.isUnchanged("server", "app", "guid2", updated, "digest1"));
+
+		digests.remove("server", "app");
+		assertFalse(digests.isUnchanged("server", "app", "guid1", updated, "digest1"));
+	}
+
+	public void testApplicationUpdatedOutsideNeverUnchanged() throws Exception {
+		DeployedContentDigests digests = new DeployedContentDigests();
+		digests.record("server", "app", "guid1", new Date(1000), "digest1");
+
+		// Same application pushed again outside the IDE
+		assertFalse(digests.isUnchanged("server", "app", "guid1", new Date(2000), "digest1"));
+		assertFalse(digests.isUnchanged("server", "app", "guid1", null, "digest1"));
+
+		digests.record("server", "app", "guid1", null, "digest1");
+		assertFalse(digests.isUnchanged("server", "app", "guid1", new Date(1000), "digest1"));
+	}
+
+	public void testUnknownApplicationNeverUnchanged() throws Exception {
+		DeployedContentDigests digests = new DeployedContentDigests();
+		Date updated = new Date(1000);
+		digests.record("server", "app", null, updated, "digest1");
+		assertFalse(digests.isUnchanged("server", "app", null, updated, "digest1"));
+
+		digests.record("server", "app", "guid1", updated, "digest1");
+		digests.record("server", "app", "guid1", updated, null);
+		assertFalse(digests.isUnchanged("server", "app", "guid1", updated, "digest1"));
+	}
+
+	protected ApplicationArchive createArchive(final Entry... entries) {
+		return new ApplicationArchive() {
+
+			public String getFilename() {
+				return "test.war";
+			}
+
+			public Iterable<Entry> getEntries() {
+				return new ArrayList<Entry>(Arrays.asList(entries));
+			}
+		};
+	}
+
+	protected Entry createEntry(final String name, final byte[] sha1) {
+		return new Entry() {
+
+			public boolean isDirectory() {
+				return sha1 == null;
+			}
+
+			public String getName() {
+				return name;
+			}
+
+			public long getSize() {
+				return sha1 != null ? sha1.length : 0;
+			}
+
+			public byte[] getSha1Digest() {
+				return sha1;
+			}
+
+			public InputStream getInputStream() {
+				return new ByteArrayInputStream(new byte[0]);
+			}
+		};
+	}
+}
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.server.core.internal.DeployedResourceCache.CachedDeployedApplication;
+import org.cloudfoundry.ide.eclipse.server.core.internal.DeployedResourceCache.DeployedResourceEntry;
+
+public class DeployedResourceCacheTest extends TestCase {
+
+	private File storeFile;
+
+	@Override
+	protected void setUp() throws Exception {
+		storeFile = File.createTempFile("deployedResources", ".cache");
+		storeFile.delete();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		storeFile.delete();
+	}
+
+	public void testEntriesPersistedAcrossSessions() throws Exception {
+		CachedDeployedApplication app = new CachedDeployedApplication("app");
+		DeployedResourceCache cache = new DeployedResourceCache(storeFile, 100);
+		cache.add(app, new DeployedResourceEntry(new byte[] { 1, 2, 3 }, 10, "WEB-INF/web.xml", 1000));
+		cache.save();
+
+		cache = new DeployedResourceCache(storeFile, 100);
+		DeployedResourceEntry entry = cache.getEntry(app, "WEB-INF/web.xml", 10, 1000);
+		assertNotNull(entry);
+		assertEquals(3, entry.getSha1().length);
+
+		// Changed size or timestamp must not reuse the entry
+		assertNull(cache.getEntry(app, "WEB-INF/web.xml", 11, 1000));
+		assertNull(cache.getEntry(app, "WEB-INF/web.xml", 10, 1001));
+	}
+
+	public void testAppendedEntriesOverridePreviousEntries() throws Exception {
+		CachedDeployedApplication app = new CachedDeployedApplication("app");
+		DeployedResourceCache cache = new DeployedResourceCache(storeFile, 100);
+		cache.add(app, new DeployedResourceEntry(new byte[] { 1 }, 1, "index.html", 1));
+		cache.save();
+		cache.add(app, new DeployedResourceEntry(new byte[] { 2 }, 2, "index.html", 2));
+		cache.save();
+
+		cache = new DeployedResourceCache(storeFile, 100);
+		assertNull(cache.getEntry(app, "index.html", 1, 1));
+		assertNotNull(cache.getEntry(app, "index.html", 2, 2));
+	}
+
+	public void testRemovedAppNotRestored() throws Exception {
+		CachedDeployedApplication app = new CachedDeployedApplication("app");
+		DeployedResourceCache cache = new DeployedResourceCache(storeFile, 100);
+		cache.add(app, new DeployedResourceEntry(new byte[] { 1 }, 1, "index.html", 1));
+		cache.save();
+		cache.remove(app);
+		cache.save();
+
+		cache = new DeployedResourceCache(storeFile, 100);
+		assertNull(cache.getEntry(app, "index.html"));
+	}
+
+	public void testLeastRecentlyUsedAppEvicted() throws Exception {
+		CachedDeployedApplication app1 = new CachedDeployedApplication("app1");
+		CachedDeployedApplication app2 = new CachedDeployedApplication("app2");
+		DeployedResourceCache cache = new DeployedResourceCache(storeFile, 2);
+		cache.add(app1, new DeployedResourceEntry(new byte[] { 1 }, 1, "a", 1));
+		cache.add(app1, new DeployedResourceEntry(new byte[] { 1 }, 1, "b", 1));
+		cache.add(app2, new DeployedResourceEntry(new byte[] { 1 }, 1, "a", 1));
+		cache.save();
+
+		assertNull(cache.getEntry(app1, "a"));
+		assertNotNull(cache.getEntry(app2, "a"));
+
+		cache = new DeployedResourceCache(storeFile, 2);
+		assertNull(cache.getEntry(app1, "a"));
+		assertNotNull(cache.getEntry(app2, "a"));
+	}
+
+	public void testCorruptStoreDiscarded() throws Exception {
+		FileOutputStream out = new FileOutputStream(storeFile);
+		out.write(new byte[] { 9, 9, 9, 9, 9, 9, 9, 9 });
+		out.close();
+
+		CachedDeployedApplication app = new CachedDeployedApplication("app");
+		DeployedResourceCache cache = new DeployedResourceCache(storeFile, 100);
+		assertNull(cache.getEntry(app, "index.html"));
+		cache.add(app, new DeployedResourceEntry(new byte[] { 1 }, 1, "index.html", 1));
+		cache.save();
+
+		cache = new DeployedResourceCache(storeFile, 100);
+		assertNotNull(cache.getEntry(app, "index.html", 1, 1));
+	}
+
+}
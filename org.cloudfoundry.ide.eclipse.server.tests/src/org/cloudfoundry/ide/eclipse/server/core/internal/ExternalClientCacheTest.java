@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.client.lib.CloudFoundryOperations;
+import org.cloudfoundry.ide.eclipse.server.core.internal.client.ExternalClientCache;
+
+public class ExternalClientCacheTest extends TestCase {
+
+	public void testReuseForSameCredentials() throws Exception {
+		TestCache cache = new TestCache(1000);
+		CloudFoundryOperations client = createClient();
+		cache.put("https://api.example.com", "user", "password", false, client);
+
+		assertSame(client, cache.get("https://api.example.com", "user", "password", false));
+		assertNull(cache.get("https://api.example.com", "user", "other", false));
+		assertNull(cache.get("https://api.example.com", "user", "password", true));
+		assertNull(cache.get("https://api.example.com", "user2", "password", false));
+		assertNull(cache.get("https://api2.example.com", "user", "password", false));
+	}
+
+	public void testExpiry() throws Exception {
+		TestCache cache = new TestCache(1000);
+		CloudFoundryOperations client = createClient();
+		cache.put("https://api.example.com", "user", "password", false, client);
+
+		cache.time = 999;
+		assertSame(client, cache.get("https://api.example.com", "user", "password", false));
+		cache.time = 1000;
+		assertNull(cache.get("https://api.example.com", "user", "password", false));
+	}
+
+	public void testInvalidate() throws Exception {
+		TestCache cache = new TestCache(1000);
+		cache.put("https://api.example.com", "user", "password", false, createClient());
+		cache.put("https://api.example.com", "user", "password", true, createClient());
+		cache.put("https://api.example.com", "user2", "password", false, createClient());
+
+		cache.invalidate("https://api.example.com", "user");
+		assertNull(cache.get("https://api.example.com", "user", "password", false));
+		assertNull(cache.get("https://api.example.com", "user", "password", true));
+		assertNotNull(cache.get("https://api.example.com", "user2", "password", false));
+	}
+
+	protected static CloudFoundryOperations createClient() {
+		return (CloudFoundryOperations) Proxy.newProxyInstance(ExternalClientCacheTest.class.getClassLoader(),
+				new Class<?>[] { CloudFoundryOperations.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						return null;
+					}
+				});
+	}
+
+	static class TestCache extends ExternalClientCache {
+
+		long time;
+
+		TestCache(long timeToLive) {
+			super(timeToLive);
+		}
+
+		@Override
+		protected long currentTime() {
+			return time;
+		}
+	}
+}
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.server.core.internal.client.FileTail;
+
+public class FileTailTest extends TestCase {
+
+	public void testOffsetCountsBytes() throws Exception {
+		FileTail tail = new FileTail();
+		StringWriter writer = new StringWriter();
+		byte[] content = "caf\u00e9 \u20ac\n".getBytes("UTF-8"); //$NON-NLS-1$ //$NON-NLS-2$
+
+		assertEquals(content.length, tail.read(new ByteArrayInputStream(content), 0, writer));
+		assertEquals(content.length, tail.getOffset());
+		assertEquals("caf\u00e9 \u20ac\n", writer.toString()); //$NON-NLS-1$
+		assertTrue(tail.getOffset() > writer.toString().length());
+	}
+
+	public void testCharacterSplitBetweenReads() throws Exception {
+		FileTail tail = new FileTail();
+		StringWriter writer = new StringWriter();
+		byte[] content = "a\u20acb".getBytes("UTF-8"); //$NON-NLS-1$ //$NON-NLS-2$
+
+		// Ends in the middle of the euro sign
+		tail.read(new ByteArrayInputStream(Arrays.copyOfRange(content, 0, 3)), 0, writer);
+		assertEquals(3, tail.getOffset());
+		assertEquals("a", writer.toString()); //$NON-NLS-1$
+
+		tail.read(new ByteArrayInputStream(Arrays.copyOfRange(content, 3, content.length)), tail.getOffset(), writer);
+		assertEquals(content.length, tail.getOffset());
+		assertEquals("a\u20acb", writer.toString()); //$NON-NLS-1$
+	}
+
+	public void testContentBeforeOffsetIsSkipped() throws Exception {
+		FileTail tail = new FileTail();
+		StringWriter writer = new StringWriter();
+		tail.read(new ByteArrayInputStream("first\n".getBytes("UTF-8")), 0, writer); //$NON-NLS-1$ //$NON-NLS-2$
+
+		// Whole file sent again, with new content
+		byte[] content = "first\nsecond\n".getBytes("UTF-8"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(7, tail.read(new ByteArrayInputStream(content), 0, writer));
+		assertEquals(content.length, tail.getOffset());
+		assertEquals("first\nsecond\n", writer.toString()); //$NON-NLS-1$
+
+		// No new content
+		assertEquals(0, tail.read(new ByteArrayInputStream(content), 0, writer));
+		assertEquals("first\nsecond\n", writer.toString()); //$NON-NLS-1$
+	}
+
+	public void testLargeContent() throws Exception {
+		FileTail tail = new FileTail();
+		StringWriter writer = new StringWriter();
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			expected.append("\u00e9\u20ac"); //$NON-NLS-1$
+		}
+		byte[] content = expected.toString().getBytes("UTF-8"); //$NON-NLS-1$
+
+		tail.read(new ByteArrayInputStream(content), 0, writer);
+		assertEquals(content.length, tail.getOffset());
+		assertEquals(expected.toString(), writer.toString());
+	}
+}
@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal;
+
+import junit.framework.TestCase;
+
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+public class HttpConnectionPoolTest extends TestCase {
+
+	public void testKeepAliveDuration() throws Exception {
+		assertEquals(1000, HttpConnectionPool.getKeepAliveDuration(-1, 1000));
+		assertEquals(500, HttpConnectionPool.getKeepAliveDuration(500, 1000));
+		assertEquals(1000, HttpConnectionPool.getKeepAliveDuration(5000, 1000));
+	}
+
+	public void testLimits() throws Exception {
+		HttpConnectionPool pool = new HttpConnectionPool(4, 10, 1000, 0);
+		assertEquals(4, pool.getMaxTotal());
+		assertEquals(4, pool.getMaxPerRoute());
+		try {
+			PoolingHttpClientConnectionManager manager = pool.getConnectionManager(false);
+			assertEquals(4, manager.getMaxTotal());
+			assertEquals(4, manager.getDefaultMaxPerRoute());
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	public void testConnectionManagerSharedByClients() throws Exception {
+		HttpConnectionPool pool = new HttpConnectionPool(10, 5, 1000, 0);
+		try {
+			assertSame(pool.getConnectionManager(false), pool.getConnectionManager(false));
+			assertNotSame(pool.getConnectionManager(false), pool.getConnectionManager(true));
+			assertNotNull(pool.createHttpClient(null, false));
+			assertNotNull(pool.createHttpClient(null, true));
+		}
+		finally {
+			pool.shutdown();
+		}
+		try {
+			pool.getConnectionManager(false);
+			fail("Expected pool to be shut down");
+		}
+		catch (IllegalStateException e) {
+			// Expected
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.server.core.internal.application.ModuleResourceDigester;
+import org.cloudfoundry.ide.eclipse.server.core.internal.application.ModuleResourceDigester.Digest;
+import org.cloudfoundry.ide.eclipse.server.core.internal.application.ModuleResourceDigester.DigestTarget;
+
+public class ModuleResourceDigesterTest extends TestCase {
+
+	private final List<File> files = new ArrayList<File>();
+
+	@Override
+	protected void tearDown() throws Exception {
+		for (File file : files) {
+			file.delete();
+		}
+	}
+
+	public void testParallelDigestsMatchSequentialDigests() throws Exception {
+		List<TestTarget> targets = new ArrayList<TestTarget>();
+		for (int i = 0; i < ModuleResourceDigester.MIN_PARALLEL_BATCH * 4; i++) {
+			byte[] content = new byte[i * 1000];
+			Arrays.fill(content, (byte) i);
+			targets.add(new TestTarget(createFile(content), content));
+		}
+
+		ModuleResourceDigester.digest(targets);
+
+		for (TestTarget target : targets) {
+			assertNotNull(target.digest);
+			assertEquals(target.expectedContent.length, target.digest.getSize());
+			assertTrue(Arrays.equals(MessageDigest.getInstance("SHA-1").digest(target.expectedContent),
+					target.digest.getSha1()));
+		}
+	}
+
+	public void testMissingFileSkipped() throws Exception {
+		TestTarget target = new TestTarget(new File("doesNotExist" + System.nanoTime()), new byte[0]);
+		ModuleResourceDigester.digest(Arrays.asList(target));
+		assertNull(target.digest);
+	}
+
+	protected File createFile(byte[] content) throws Exception {
+		File file = File.createTempFile("digest", ".bin");
+		files.add(file);
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content);
+		}
+		finally {
+			out.close();
+		}
+		return file;
+	}
+
+	static class TestTarget implements DigestTarget {
+
+		private final File file;
+
+		private final byte[] expectedContent;
+
+		private Digest digest;
+
+		TestTarget(File file, byte[] expectedContent) {
+			this.file = file;
+			this.expectedContent = expectedContent;
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		public void setDigest(Digest digest) {
+			this.digest = digest;
+		}
+	}
+}
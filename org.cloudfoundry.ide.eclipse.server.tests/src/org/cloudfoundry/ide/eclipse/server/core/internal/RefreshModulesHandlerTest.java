@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.server.core.internal.client.BehaviourOperation;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.wst.server.core.IModule;
+
+public class RefreshModulesHandlerTest extends TestCase {
+
+	private static final long TIMEOUT = 10000;
+
+	public void testApplicationRefreshesCoalesced() throws Exception {
+		TestRefreshHandler handler = new TestRefreshHandler();
+		IModule app1 = createModule("app1");
+		IModule app2 = createModule("app2");
+
+		handler.schedulesRefreshApplication(app1);
+		handler.schedulesRefreshApplication(app2);
+		handler.schedulesRefreshApplication(app1);
+		handler.scheduleRefreshForDeploymentChange(app2);
+		waitForRefreshes(handler, 2);
+
+		assertEquals(Arrays.asList("deploymentChange app2", "application app1"), handler.getPerformed());
+	}
+
+	public void testBurstDebounced() throws Exception {
+		TestRefreshHandler handler = new TestRefreshHandler();
+		IModule app1 = createModule("app1");
+
+		for (int i = 0; i < 10; i++) {
+			handler.scheduleRefreshAll();
+		}
+		handler.scheduleRefreshAll(app1);
+		waitForRefreshes(handler, 1);
+
+		assertEquals(Arrays.asList("all [app1]"), handler.getPerformed());
+	}
+
+	public void testManyApplicationRefreshesUpgraded() throws Exception {
+		TestRefreshHandler handler = new TestRefreshHandler();
+		List<String> names = new ArrayList<String>();
+		for (int i = 0; i <= RefreshModulesHandler.FULL_REFRESH_THRESHOLD; i++) {
+			names.add("app" + i);
+			handler.schedulesRefreshApplication(createModule("app" + i));
+		}
+		waitForRefreshes(handler, 2);
+
+		assertEquals(Arrays.asList("all " + names, "events " + names), handler.getPerformed());
+	}
+
+	public void testNoEventsWhenRefreshAllFails() throws Exception {
+		TestRefreshHandler handler = new TestRefreshHandler();
+		handler.failRefreshAll = true;
+		for (int i = 0; i <= RefreshModulesHandler.FULL_REFRESH_THRESHOLD; i++) {
+			handler.schedulesRefreshApplication(createModule("app" + i));
+		}
+		waitForRefreshes(handler, 1);
+
+		assertEquals(1, handler.getPerformed().size());
+		assertTrue(handler.getPerformed().get(0).startsWith("all "));
+	}
+
+	public void testRequestWhileRunningPerformedAfter() throws Exception {
+		TestRefreshHandler handler = new TestRefreshHandler();
+		IModule app1 = createModule("app1");
+		handler.blockRefreshAll = new CountDownLatch(1);
+
+		handler.scheduleRefreshAll();
+		assertTrue(handler.refreshAllStarted.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		handler.schedulesRefreshApplication(app1);
+		handler.blockRefreshAll.countDown();
+		waitForRefreshes(handler, 2);
+
+		assertEquals(Arrays.asList("all []", "application app1"), handler.getPerformed());
+	}
+
+	public void testCanceledRefreshesRequeued() throws Exception {
+		TestRefreshHandler handler = new TestRefreshHandler();
+		IModule app1 = createModule("app1");
+		IModule app2 = createModule("app2");
+		handler.cancelOnce = true;
+
+		handler.schedulesRefreshApplication(app1);
+		handler.schedulesRefreshApplication(app2);
+		waitForRefreshes(handler, 1);
+		assertEquals(Arrays.asList("application app1"), handler.getPerformed());
+		assertTrue(handler.isScheduled());
+
+		// Refreshes left by the canceled run are performed with the next
+		// request
+		IModule app3 = createModule("app3");
+		handler.schedulesRefreshApplication(app3);
+		waitForRefreshes(handler, 3);
+		assertEquals(Arrays.asList("application app1", "application app2", "application app3"),
+				handler.getPerformed());
+	}
+
+	/**
+	 * Waits until the given number of refreshes were performed, and for any
+	 * further refresh that would follow them.
+	 */
+	protected void waitForRefreshes(TestRefreshHandler handler, int count) throws Exception {
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		while (handler.getPerformed().size() < count && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		Thread.sleep(RefreshModulesHandler.DEBOUNCE_DELAY * 3);
+	}
+
+	protected static IModule createModule(final String name) {
+		return (IModule) Proxy.newProxyInstance(RefreshModulesHandlerTest.class.getClassLoader(),
+				new Class[] { IModule.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if ("equals".equals(method.getName())) {
+							return proxy == args[0];
+						}
+						if ("hashCode".equals(method.getName())) {
+							return System.identityHashCode(proxy);
+						}
+						if ("getName".equals(method.getName()) || "toString".equals(method.getName())) {
+							return name;
+						}
+						return null;
+					}
+				});
+	}
+
+	protected static class TestRefreshHandler extends RefreshModulesHandler {
+
+		private final List<String> performed = Collections.synchronizedList(new ArrayList<String>());
+
+		final CountDownLatch refreshAllStarted = new CountDownLatch(1);
+
+		volatile CountDownLatch blockRefreshAll;
+
+		volatile boolean failRefreshAll;
+
+		volatile boolean cancelOnce;
+
+		public TestRefreshHandler() {
+			super(new CloudFoundryServer(), "Test refresh");
+		}
+
+		public List<String> getPerformed() {
+			synchronized (performed) {
+				return new ArrayList<String>(performed);
+			}
+		}
+
+		@Override
+		protected BehaviourOperation getRefreshAllOperation(final List<IModule> modules) {
+			return new BehaviourOperation(null, null) {
+				public void run(IProgressMonitor monitor) throws CoreException {
+					refreshAllStarted.countDown();
+					if (blockRefreshAll != null) {
+						try {
+							blockRefreshAll.await(TIMEOUT, TimeUnit.MILLISECONDS);
+						}
+						catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					}
+					performed.add("all " + modules);
+					if (failRefreshAll) {
+						throw new CoreException(new Status(IStatus.ERROR, "test", "Refresh failed"));
+					}
+				}
+			};
+		}
+
+		@Override
+		protected BehaviourOperation getRefreshForDeploymentChangeOperation(final IModule module) {
+			return new BehaviourOperation(null, module) {
+				public void run(IProgressMonitor monitor) throws CoreException {
+					performed.add("deploymentChange " + module.getName());
+				}
+			};
+		}
+
+		@Override
+		protected BehaviourOperation getRefreshApplicationOperation(final IModule module) {
+			return new BehaviourOperation(null, module) {
+				public void run(IProgressMonitor monitor) throws CoreException {
+					performed.add("application " + module.getName());
+					if (cancelOnce) {
+						cancelOnce = false;
+						monitor.setCanceled(true);
+					}
+				}
+			};
+		}
+
+		@Override
+		protected void fireRefreshedEvents(Set<IModule> deploymentChangeModules, Set<IModule> applicationModules) {
+			List<IModule> modules = new ArrayList<IModule>(deploymentChangeModules);
+			modules.addAll(applicationModules);
+			if (!modules.isEmpty()) {
+				performed.add("events " + modules);
+			}
+		}
+	}
+}
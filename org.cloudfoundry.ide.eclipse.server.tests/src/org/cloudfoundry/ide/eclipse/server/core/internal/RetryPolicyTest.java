@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Pivotal Software, Inc. 
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except in compliance 
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *  
+ *  Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ ********************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.core.internal;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.client.lib.NotFinishedStagingException;
+import org.cloudfoundry.ide.eclipse.server.core.internal.client.BackoffRetryPolicy;
+import org.cloudfoundry.ide.eclipse.server.core.internal.client.ErrorClassRetryPolicy;
+import org.cloudfoundry.ide.eclipse.server.core.internal.client.ErrorClassRetryPolicy.ErrorClass;
+import org.cloudfoundry.ide.eclipse.server.core.internal.client.RetryPolicy;
+import org.springframework.http.HttpStatus;
+
+public class RetryPolicyTest extends TestCase {
+
+	public void testExponentialBackoff() throws Exception {
+		TestBackoffPolicy policy = new TestBackoffPolicy(1000, 5000, 0, 0, 0);
+
+		Exception error = new Exception();
+		assertEquals(1000, policy.getDelay(error, 1, 0));
+		assertEquals(2000, policy.getDelay(error, 2, 1000));
+		assertEquals(4000, policy.getDelay(error, 3, 3000));
+		assertEquals(5000, policy.getDelay(error, 4, 7000));
+		assertEquals(5000, policy.getDelay(error, 20, 100000));
+	}
+
+	public void testJitter() throws Exception {
+		TestBackoffPolicy policy = new TestBackoffPolicy(1000, 5000, 0, 0, 0.5);
+
+		Exception error = new Exception();
+		policy.random = 0;
+		assertEquals(2000, policy.getDelay(error, 2, 0));
+		policy.random = 0.5;
+		assertEquals(1500, policy.getDelay(error, 2, 0));
+		policy.random = 0.999;
+		assertTrue(policy.getDelay(error, 2, 0) > 1000);
+	}
+
+	public void testAttemptsAndTimeBudget() throws Exception {
+		TestBackoffPolicy policy = new TestBackoffPolicy(1000, 5000, 3, 0, 0);
+
+		Exception error = new Exception();
+		assertTrue(policy.getDelay(error, 2, 0) > 0);
+		assertTrue(policy.getDelay(error, 3, 0) <= 0);
+
+		policy = new TestBackoffPolicy(1000, 5000, 0, 2500, 0);
+		assertEquals(1000, policy.getDelay(error, 1, 0));
+		// The last delay is shortened to the remaining budget
+		assertEquals(1500, policy.getDelay(error, 2, 1000));
+		assertTrue(policy.getDelay(error, 3, 2500) <= 0);
+	}
+
+	public void testErrorClasses() throws Exception {
+		BackoffRetryPolicy stagingPolicy = new BackoffRetryPolicy(2000, 2000, 0, 0,
+				BackoffRetryPolicy.DEFAULT_MULTIPLIER, 0);
+		ErrorClassRetryPolicy noRetry = new ErrorClassRetryPolicy();
+		RetryPolicy policy = noRetry.withPolicy(ErrorClass.STAGING_NOT_FINISHED, stagingPolicy);
+
+		NotFinishedStagingException stagingError = new NotFinishedStagingException(HttpStatus.BAD_REQUEST,
+				"Staging not finished");
+		assertEquals(2000, policy.getDelay(stagingError, 1, 0));
+		assertEquals(2000, policy.getDelay(CloudErrorUtil.toCoreException(stagingError), 1, 0));
+		assertTrue(policy.getDelay(new Exception(), 1, 0) <= 0);
+		assertTrue(RetryPolicy.NO_RETRY.getDelay(stagingError, 1, 0) <= 0);
+
+		// Adding a policy does not change the original one
+		assertTrue(noRetry.getDelay(stagingError, 1, 0) <= 0);
+	}
+
+	public void testMultiplier() throws Exception {
+		TestBackoffPolicy policy = new TestBackoffPolicy(1000, 10000, 0, 0, 3, 0);
+
+		Exception error = new Exception();
+		assertEquals(1000, policy.getDelay(error, 1, 0));
+		assertEquals(3000, policy.getDelay(error, 2, 1000));
+		assertEquals(9000, policy.getDelay(error, 3, 4000));
+	}
+
+	static class TestBackoffPolicy extends BackoffRetryPolicy {
+
+		double random;
+
+		TestBackoffPolicy(long initialDelay, long maxDelay, int maxAttempts, long timeBudget, double jitter) {
+			this(initialDelay, maxDelay, maxAttempts, timeBudget, DEFAULT_MULTIPLIER, jitter);
+		}
+
+		TestBackoffPolicy(long initialDelay, long maxDelay, int maxAttempts, long timeBudget, double multiplier,
+				double jitter) {
+			super(initialDelay, maxDelay, maxAttempts, timeBudget, multiplier, jitter);
+		}
+
+		@Override
+		protected double nextRandom() {
+			return random;
+		}
+	}
+}
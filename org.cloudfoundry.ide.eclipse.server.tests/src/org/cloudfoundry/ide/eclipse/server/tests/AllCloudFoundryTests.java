@@ -22,15 +22,33 @@ package org.cloudfoundry.ide.eclipse.server.tests;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
+import org.cloudfoundry.ide.eclipse.server.core.internal.ApplicationStartDetectorTest;
+import org.cloudfoundry.ide.eclipse.server.core.internal.ApplicationStatePollerTest;
+import org.cloudfoundry.ide.eclipse.server.core.internal.ArchiveCompressionPolicyTest;
+import org.cloudfoundry.ide.eclipse.server.core.internal.ArchiveStagingAreaTest;
+import org.cloudfoundry.ide.eclipse.server.core.internal.ArchiveWriterTest;
+import org.cloudfoundry.ide.eclipse.server.core.internal.BatchApplicationOperationTest;
 import org.cloudfoundry.ide.eclipse.server.core.internal.BehaviourOperationsTest;
+import org.cloudfoundry.ide.eclipse.server.core.internal.CancellableWaitTest;
+import org.cloudfoundry.ide.eclipse.server.core.internal.ChildModuleJarCacheTest;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudFoundryClientConnectionTest;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudFoundryProxyTest;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudFoundryServerBehaviourTest;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudFoundryServerTest;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudFoundryServicesTest;
+import org.cloudfoundry.ide.eclipse.server.core.internal.CloudMetadataCacheTest;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudUtilTest;
+import org.cloudfoundry.ide.eclipse.server.core.internal.ConditionalRequestCacheTest;
+import org.cloudfoundry.ide.eclipse.server.core.internal.DeployedContentDigestsTest;
+import org.cloudfoundry.ide.eclipse.server.core.internal.DeployedResourceCacheTest;
 import org.cloudfoundry.ide.eclipse.server.core.internal.DeploymentURLTest;
+import org.cloudfoundry.ide.eclipse.server.core.internal.ExternalClientCacheTest;
+import org.cloudfoundry.ide.eclipse.server.core.internal.FileTailTest;
+import org.cloudfoundry.ide.eclipse.server.core.internal.HttpConnectionPoolTest;
 import org.cloudfoundry.ide.eclipse.server.core.internal.ModuleRefreshTest;
+import org.cloudfoundry.ide.eclipse.server.core.internal.ModuleResourceDigesterTest;
+import org.cloudfoundry.ide.eclipse.server.core.internal.RefreshModulesHandlerTest;
+import org.cloudfoundry.ide.eclipse.server.core.internal.RetryPolicyTest;
 import org.cloudfoundry.ide.eclipse.server.core.internal.ServerCredentialsStoreTest;
 import org.cloudfoundry.ide.eclipse.server.tests.sts.util.ManagedTestSuite;
 
@@ -56,6 +74,24 @@ public class AllCloudFoundryTests {
 		suite.addTestSuite(ServerCredentialsStoreTest.class);
 		suite.addTestSuite(CloudFoundryServerTest.class);
 		suite.addTestSuite(CloudUtilTest.class);
+		suite.addTestSuite(DeployedResourceCacheTest.class);
+		suite.addTestSuite(ModuleResourceDigesterTest.class);
+		suite.addTestSuite(ArchiveCompressionPolicyTest.class);
+		suite.addTestSuite(ArchiveWriterTest.class);
+		suite.addTestSuite(ChildModuleJarCacheTest.class);
+		suite.addTestSuite(DeployedContentDigestsTest.class);
+		suite.addTestSuite(ApplicationStatePollerTest.class);
+		suite.addTestSuite(RefreshModulesHandlerTest.class);
+		suite.addTestSuite(ConditionalRequestCacheTest.class);
+		suite.addTestSuite(CloudMetadataCacheTest.class);
+		suite.addTestSuite(HttpConnectionPoolTest.class);
+		suite.addTestSuite(ExternalClientCacheTest.class);
+		suite.addTestSuite(RetryPolicyTest.class);
+		suite.addTestSuite(ApplicationStartDetectorTest.class);
+		suite.addTestSuite(CancellableWaitTest.class);
+		suite.addTestSuite(BatchApplicationOperationTest.class);
+		suite.addTestSuite(FileTailTest.class);
+		suite.addTestSuite(ArchiveStagingAreaTest.class);
 
 		suite.addTestSuite(DeploymentURLTest.class);
 		suite.addTestSuite(CloudFoundryServicesTest.class);
@@ -52,7 +52,7 @@ public abstract class AbstractConsoleMonitorAppStateTracker extends AbstractAppS
 	public class ConsolePatternMatchListener implements IPatternMatchListener {
 
 	    private String appName;
-		private int appState = IServer.STATE_STARTING;
+		private volatile int appState = IServer.STATE_STARTING;
 	    
 	    public ConsolePatternMatchListener(String curAppName) {
 	    	appName = curAppName;
@@ -80,6 +80,7 @@ public abstract class AbstractConsoleMonitorAppStateTracker extends AbstractAppS
 	    		Logger.println(Logger.INFO_LEVEL, this, "matchFound", "Application start detected: " + appName); //$NON-NLS-1$ //$NON-NLS-2$
 	    	}
 	    	appState = IServer.STATE_STARTED;
+	    	applicationStateChanged();
 	    }
 	    
 	    /* (non-Javadoc)
@@ -105,6 +105,12 @@ public class CloudFoundryPropertyTester extends PropertyTester {
 			toCheck = ((EvaluationContext) toCheck).getDefaultVariable();
 		}
 
+		// Elements of a selection that is iterated, like a selection of
+		// several modules
+		if (toCheck instanceof IServerModule) {
+			return (IServerModule) toCheck;
+		}
+
 		if (toCheck instanceof List<?>) {
 			List<?> content = (List<?>) toCheck;
 			if (!content.isEmpty()) {
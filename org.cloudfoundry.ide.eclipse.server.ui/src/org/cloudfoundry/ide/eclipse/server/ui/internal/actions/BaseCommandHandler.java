@@ -19,11 +19,24 @@
  ********************************************************************************/
 package org.cloudfoundry.ide.eclipse.server.ui.internal.actions;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudfoundry.ide.eclipse.server.core.internal.ApplicationAction;
+import org.cloudfoundry.ide.eclipse.server.core.internal.CloudFoundryPlugin;
+import org.cloudfoundry.ide.eclipse.server.core.internal.CloudFoundryServer;
 import org.cloudfoundry.ide.eclipse.server.ui.internal.Logger;
 import org.eclipse.core.commands.AbstractHandler;
 import org.eclipse.core.commands.ExecutionEvent;
 import org.eclipse.core.commands.ExecutionException;
 import org.eclipse.core.commands.IHandler;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.viewers.ISelection;
 import org.eclipse.jface.viewers.ISelectionProvider;
 import org.eclipse.jface.viewers.IStructuredSelection;
@@ -40,10 +53,16 @@ public abstract class BaseCommandHandler extends AbstractHandler implements IHan
 
 	protected IModule selectedModule;
 
+	/**
+	 * All modules in the selection, by the server they are deployed to
+	 */
+	protected final Map<IServer, List<IModule>> selectedModules = new LinkedHashMap<IServer, List<IModule>>();
+
 	protected IWorkbenchPartSite partSite;
 
 	// Must first init selected server or module. Or just override execute
 	protected void initializeSelection(ExecutionEvent event) throws ExecutionException {
+		selectedModules.clear();
 		IWorkbenchPart activePart = HandlerUtil.getActivePart(event);
 		if (activePart != null) {
 			partSite = activePart.getSite();
@@ -64,6 +83,11 @@ public abstract class BaseCommandHandler extends AbstractHandler implements IHan
 								this.selectedServer = sm.getServer();
 							}
 						}
+						for (Object element : ((IStructuredSelection) selection).toArray()) {
+							if (element instanceof IServerModule) {
+								addSelectedModule((IServerModule) element);
+							}
+						}
 					}
 				}
 				else {
@@ -79,6 +103,68 @@ public abstract class BaseCommandHandler extends AbstractHandler implements IHan
 		}
 	}
 
+	private void addSelectedModule(IServerModule serverModule) {
+		IModule[] module = serverModule.getModule();
+		if (module.length == 0 || serverModule.getServer() == null) {
+			return;
+		}
+		List<IModule> modules = selectedModules.get(serverModule.getServer());
+		if (modules == null) {
+			modules = new ArrayList<IModule>();
+			selectedModules.put(serverModule.getServer(), modules);
+		}
+		modules.add(module[module.length - 1]);
+	}
+
+	/**
+	 * 
+	 * @return true if more than one module is selected
+	 */
+	protected boolean isMultipleModulesSelected() {
+		int count = 0;
+		for (List<IModule> modules : selectedModules.values()) {
+			count += modules.size();
+		}
+		return count > 1;
+	}
+
+	/**
+	 * Performs the given action on all selected modules in a job for each
+	 * server. Applications on the same server are deployed at the same time.
+	 * @param action
+	 * @param jobName
+	 * @param failureMessage logged if the action failed for any of the
+	 * modules
+	 */
+	protected void runForSelectedModules(final ApplicationAction action, String jobName, final String failureMessage) {
+		for (Map.Entry<IServer, List<IModule>> entry : selectedModules.entrySet()) {
+			final CloudFoundryServer cloudServer = (CloudFoundryServer) entry.getKey().loadAdapter(
+					CloudFoundryServer.class, null);
+			if (cloudServer == null) {
+				continue;
+			}
+			final List<IModule[]> modules = new ArrayList<IModule[]>();
+			for (IModule module : entry.getValue()) {
+				modules.add(new IModule[] { module });
+			}
+			Job job = new Job(jobName) {
+
+				protected IStatus run(IProgressMonitor monitor) {
+					try {
+						cloudServer.getBehaviour().operations().applicationDeployment(modules, action).run(monitor);
+					}
+					catch (CoreException e) {
+						CloudFoundryPlugin.getDefault().getLog()
+								.log(new Status(IStatus.ERROR, CloudFoundryPlugin.PLUGIN_ID, failureMessage, e));
+						return Status.CANCEL_STATUS;
+					}
+					return Status.OK_STATUS;
+				}
+			};
+			job.schedule();
+		}
+	}
+
 	private void logSelectionDetectionFailure() {
 		if (Logger.WARNING) {
 			Logger.println(Logger.WARNING_LEVEL, this,
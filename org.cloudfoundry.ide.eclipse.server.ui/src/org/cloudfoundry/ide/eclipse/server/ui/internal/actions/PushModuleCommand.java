@@ -53,7 +53,13 @@ public class PushModuleCommand extends BaseCommandHandler {
 		}
 
 		if (error == null) {
-			doRun(cloudServer, appModule);
+			if (isMultipleModulesSelected()) {
+				runForSelectedModules(ApplicationAction.START, Messages.PushApplicationOperation_PUSH_MESSAGE,
+						getFailureMessage());
+			}
+			else {
+				doRun(cloudServer, appModule);
+			}
 		}
 		else {
 			CloudFoundryPlugin.logError(error);
@@ -53,7 +53,13 @@ public class UpdateRestartModuleCommand extends BaseCommandHandler {
 		}
 
 		if (error == null) {
-			doRun(cloudServer, appModule);
+			if (isMultipleModulesSelected()) {
+				runForSelectedModules(ApplicationAction.UPDATE_RESTART,
+						Messages.PushApplicationOperation_UPDATE_APP_MESSAGE, getFailureMessage());
+			}
+			else {
+				doRun(cloudServer, appModule);
+			}
 		}
 		else {
 			CloudFoundryPlugin.logError(error);
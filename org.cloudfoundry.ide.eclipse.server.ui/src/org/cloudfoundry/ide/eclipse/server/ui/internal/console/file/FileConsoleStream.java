@@ -19,15 +19,21 @@
  ********************************************************************************/
 package org.cloudfoundry.ide.eclipse.server.ui.internal.console.file;
 
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.List;
 
 import org.cloudfoundry.client.lib.CloudFoundryException;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudErrorUtil;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudFoundryPlugin;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudFoundryServer;
+import org.cloudfoundry.ide.eclipse.server.core.internal.client.FileTail;
 import org.cloudfoundry.ide.eclipse.server.ui.internal.Messages;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.ui.console.IOConsoleOutputStream;
 
 /**
  * Streams file content to the Cloud Foundry console. It continues to check for
@@ -37,7 +43,7 @@ import org.eclipse.core.runtime.IProgressMonitor;
  */
 public class FileConsoleStream extends CloudFoundryConsoleStream {
 
-	protected int tailingOffset = 0;
+	protected final FileTail tail = new FileTail();
 
 	private final String path;
 
@@ -95,13 +101,15 @@ public class FileConsoleStream extends CloudFoundryConsoleStream {
 		}
 
 		try {
-			String content = getContentFromFile(monitor);
+			writeContentFromFile(monitor);
 
 			// Note that if no error was thrown, reset the error count. The
 			// stream should only terminate if N number of errors are met in
 			// a row.
 			attemptsRemaining = getMaximumErrorCount();
-			return content;
+
+			// Content is written directly to the console
+			return null;
 		}
 		catch (CoreException ce) {
 			CloudFoundryException cfe = ce.getCause() instanceof CloudFoundryException ? (CloudFoundryException) ce
@@ -125,25 +133,45 @@ public class FileConsoleStream extends CloudFoundryConsoleStream {
 	}
 
 	/**
-	 * Get content from the file from the client starting from the current
-	 * offset.
+	 * Streams the content of the file from the client, starting from the byte
+	 * offset of the content already written, to the console.
 	 * @param monitor
-	 * @return content from the file starting from the current offset. It may be
-	 * null if there is no more content available.
+	 * @return number of bytes of new content. It may be 0 if there is no more
+	 * content available.
 	 * @throws CoreException if client or server error occurred while fetching
 	 * content for the file.
 	 */
-	protected String getContentFromFile(IProgressMonitor monitor) throws CoreException {
+	protected long writeContentFromFile(IProgressMonitor monitor) throws CoreException {
+		IOConsoleOutputStream outStream = getActiveOutputStream();
+		if (outStream == null) {
+			return 0;
+		}
+		ContentWriter writer = new ContentWriter(outStream);
 		try {
-			String content = server.getBehaviour().getFile(appName, instanceIndex, path, tailingOffset, monitor);
-			if (content != null) {
-				tailingOffset += content.length();
-			}
-			return content;
+			return server.getBehaviour().tailFile(appName, instanceIndex, path, tail, writer, monitor);
 		}
 		catch (CloudFoundryException cfex) {
 			throw new CoreException(CloudFoundryPlugin.getErrorStatus(cfex));
 		}
+		finally {
+			try {
+				// Write the content received before any error
+				writer.flush();
+			}
+			catch (IOException e) {
+				CloudFoundryPlugin.logError(e);
+			}
+		}
+	}
+
+	/**
+	 * Invoked once for each request that receives new content, before the
+	 * content is written to the console.
+	 * @param writer of the console
+	 * @throws IOException if failed to write to the console
+	 */
+	protected void beforeContent(Writer writer) throws IOException {
+		// Nothing by default
 	}
 
 	/**
@@ -257,4 +285,44 @@ public class FileConsoleStream extends CloudFoundryConsoleStream {
 	public IContentType getContentType() {
 		return FILE_CONTENT_TYPE;
 	}
+
+	/**
+	 * Encodes content for the console in the console encoding. Only whole
+	 * characters are written to the console, which decodes each write
+	 * separately. The console stream is not closed by this writer.
+	 */
+	private class ContentWriter extends Writer {
+
+		private final Writer out;
+
+		private boolean started;
+
+		ContentWriter(IOConsoleOutputStream outStream) {
+			String encoding = outStream.getEncoding();
+			this.out = new OutputStreamWriter(outStream, encoding != null ? Charset.forName(encoding)
+					: Charset.defaultCharset());
+		}
+
+		@Override
+		public void write(char[] chars, int offset, int length) throws IOException {
+			if (length == 0) {
+				return;
+			}
+			if (!started) {
+				started = true;
+				beforeContent(out);
+			}
+			out.write(chars, offset, length);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.flush();
+		}
+	}
 }
@@ -20,12 +20,13 @@
 
 package org.cloudfoundry.ide.eclipse.server.ui.internal.console.file;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.List;
 
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudFoundryServer;
 import org.cloudfoundry.ide.eclipse.server.core.internal.Messages;
 import org.eclipse.core.runtime.CoreException;
-import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.swt.SWT;
 
 /**
@@ -44,7 +45,7 @@ public class StagingFileConsoleStream extends FileConsoleStream {
 	// duplicate requests
 	private boolean alreadyRequestedNextContent = false;
 
-	private String initialContent = null;
+	private boolean receivedContent = false;
 
 	public StagingFileConsoleStream(CloudFoundryServer cloudServer, String appName, int instanceIndex) {
 		super(STAGING_LOG, SWT.COLOR_DARK_GREEN, cloudServer, appName, instanceIndex);
@@ -64,19 +65,16 @@ public class StagingFileConsoleStream extends FileConsoleStream {
 		return null;
 	}
 
-	protected String getContentFromFile(IProgressMonitor monitor) throws CoreException {
-		String content = super.getContentFromFile(monitor);
-		if (content != null) {
-			if (initialContent == null) {
-				// Prepend new line if receiving first content to ensure staging
-				// information always appears
-				// on a new line
-				content = '\n' + content;
-			}
-			initialContent = content;
-			scheduleNextContent = true;
+	@Override
+	protected void beforeContent(Writer writer) throws IOException {
+		if (!receivedContent) {
+			// Prepend new line if receiving first content to ensure staging
+			// information always appears
+			// on a new line
+			writer.write('\n');
+			receivedContent = true;
 		}
-		return content;
+		scheduleNextContent = true;
 	}
 
 	protected String reachedMaximumErrors(CoreException ce) {
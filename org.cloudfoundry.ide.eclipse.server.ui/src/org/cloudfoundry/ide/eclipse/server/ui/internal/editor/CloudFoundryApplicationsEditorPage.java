@@ -24,6 +24,7 @@ import java.util.Collections;
 import java.util.List;
 
 import org.cloudfoundry.client.lib.domain.CloudService;
+import org.cloudfoundry.ide.eclipse.server.core.internal.ApplicationStatePoller;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudFoundryPlugin;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudFoundryServer;
 import org.cloudfoundry.ide.eclipse.server.core.internal.CloudServerEvent;
@@ -36,6 +37,7 @@ import org.cloudfoundry.ide.eclipse.server.ui.internal.Messages;
 import org.cloudfoundry.ide.eclipse.server.ui.internal.actions.EditorAction.EditorCloudEvent;
 import org.cloudfoundry.ide.eclipse.server.ui.internal.actions.EditorAction.RefreshArea;
 import org.cloudfoundry.ide.eclipse.server.ui.internal.actions.RefreshEditorAction;
+import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
@@ -104,6 +106,11 @@ public class CloudFoundryApplicationsEditorPage extends ServerEditorPart {
 		serverListener = new ServerListener();
 		addCloudServerListener(serverListener);
 		getServer().getOriginal().addServerListener(serverListener);
+
+		ApplicationStatePoller poller = getStatePoller();
+		if (poller != null) {
+			poller.addViewer();
+		}
 	}
 
 	/**
@@ -127,6 +134,11 @@ public class CloudFoundryApplicationsEditorPage extends ServerEditorPart {
 
 		getServer().getOriginal().removeServerListener(serverListener);
 
+		ApplicationStatePoller poller = getStatePoller();
+		if (poller != null) {
+			poller.removeViewer();
+		}
+
 		if (mform != null) {
 			mform.dispose();
 			mform = null;
@@ -176,6 +188,28 @@ public class CloudFoundryApplicationsEditorPage extends ServerEditorPart {
 
 	@Override
 	public void setFocus() {
+		ApplicationStatePoller poller = getStatePoller();
+		if (poller != null) {
+			poller.activity();
+		}
+	}
+
+	/**
+	 * 
+	 * @return poller of the application states of the editor's server, or
+	 * null if not available.
+	 */
+	protected ApplicationStatePoller getStatePoller() {
+		if (cloudServer == null || cloudServer.getBehaviour() == null) {
+			return null;
+		}
+		try {
+			return cloudServer.getBehaviour().getStatePoller();
+		}
+		catch (CoreException e) {
+			CloudFoundryPlugin.logError(e);
+			return null;
+		}
 	}
 
 	public void setMessage(String message, int messageType) {